@@ -0,0 +1,73 @@
+package com.example.benchmarks;
+
+import com.example.mcp.service.DatabaseService;
+import com.example.mcp.service.QueryAdmission;
+import com.example.mcp.service.QueryResultCache;
+import com.example.mcp.service.SchemaCatalog;
+import com.example.mcp.service.StatementWatchdog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基准测试用的 H2 内存库：表结构与 mcp-server 相同（schema.sql），orders 表填充指定行数
+ * 直接 new 出 DatabaseService，不启动 Spring 上下文；QueryResultCache 的 enabled 未注入（false），每次都真正执行查询
+ * StatementWatchdog 的超时未注入，不设超时
+ */
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    final JdbcTemplate jdbcTemplate;
+    final ObjectMapper objectMapper;
+    final DatabaseService databaseService;
+
+    private final SingleConnectionDataSource dataSource;
+
+    private BenchmarkDatabase(int orderRows) {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:bench" + SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;QUERY_CACHE_SIZE=64",
+                "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("RUNSCRIPT FROM 'classpath:schema.sql'");
+        jdbcTemplate.update("""
+                INSERT INTO customers (name, email, phone, city)
+                SELECT '客户' || X, 'customer' || X || '@example.com', '1380000' || LPAD(X, 4, '0'), '城市' || MOD(X, 20) || '市'
+                FROM SYSTEM_RANGE(1, 1000)
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO orders (customer_id, order_date, total_amount, status)
+                SELECT MOD(X, 1000) + 1, DATEADD('DAY', -MOD(X, 365), DATE '2024-12-31'), MOD(X * 37, 10000) / 10.0,
+                       CASEWHEN(MOD(X, 4) = 0, 'pending', CASEWHEN(MOD(X, 4) = 1, 'paid', CASEWHEN(MOD(X, 4) = 2, 'shipped', 'completed')))
+                FROM SYSTEM_RANGE(1, ?)
+                """, orderRows);
+
+        // 与 Spring Boot 默认的 ObjectMapper 一致：日期按 ISO 字符串输出
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        SchemaCatalog schemaCatalog = new SchemaCatalog(jdbcTemplate, event -> { });
+        QueryResultCache queryResultCache = new QueryResultCache(jdbcTemplate, schemaCatalog, new SimpleMeterRegistry());
+        // 准入控制按 application.yml 的默认值启用（含预估代价缓存），与线上的 sql.run 路径一致
+        QueryAdmission queryAdmission = new QueryAdmission(jdbcTemplate, new SimpleMeterRegistry(), true,
+                1e8, 1e11, 2, 10000, Duration.ofSeconds(2), 1024, Duration.ofMinutes(1));
+        StatementWatchdog statementWatchdog = new StatementWatchdog(new SimpleMeterRegistry());
+        databaseService = new DatabaseService(jdbcTemplate, objectMapper, schemaCatalog, queryResultCache, queryAdmission,
+                statementWatchdog);
+    }
+
+    static BenchmarkDatabase create(int orderRows) {
+        return new BenchmarkDatabase(orderRows);
+    }
+
+    void close() {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.destroy();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.benchmarks;
+
+import com.example.mcp.dto.ColumnarSqlResponse;
+import com.example.mcp.dto.SqlResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql.run 的结果物化：DatabaseService 执行查询并把结果集转换为响应对象
+ *
+ * - rowLists：executeSql，直接从 ResultSet 逐行构建 List<List<Object>>（当前 sql.run 默认格式）
+ * - columnar：executeSqlColumnar，直接从 ResultSet 按列编码
+ * 两者都经过准入控制（预估代价命中缓存后不再解析和规划），与线上 sql.run 的开销一致
+ *
+ * 用 -prof gc 对比 gc.alloc.rate.norm（每次查询分配的字节数）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseServiceBenchmark {
+
+    private static final String SQL = "SELECT ID, CUSTOMER_ID, ORDER_DATE, TOTAL_AMOUNT, STATUS FROM orders WHERE ID <= ?";
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+
+    @Setup
+    public void setup() {
+        database = BenchmarkDatabase.create(rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public SqlResponse rowLists() {
+        return database.databaseService.executeSql(SQL, List.of(rows));
+    }
+
+    @Benchmark
+    public ColumnarSqlResponse columnar() {
+        return database.databaseService.executeSqlColumnar(SQL, List.of(rows));
+    }
+}
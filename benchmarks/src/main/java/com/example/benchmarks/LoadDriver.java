@@ -0,0 +1,264 @@
+package com.example.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 端到端压测：以固定并发向 text2sql 接口发请求，输出吞吐量、延迟分位数和每个请求的耗时拆分
+ *
+ * 被测应用以 stub-llm profile 启动（StubChatModel 模拟模型延迟），MCP Server 正常启动。
+ * 压测前后各读一次 /actuator/metrics，用差值算出每个请求平均花在模拟模型、MCP 调用和 Graph 节点上的时间，
+ * 端到端延迟减去这些部分即框架（HTTP、序列化、线程切换）的开销。
+ *
+ * 用法（参数均可省略）：
+ *   java -cp benchmarks/target/benchmarks.jar com.example.benchmarks.LoadDriver \
+ *     --url=http://127.0.0.1:8082 --path=/agent/text2sql-graph --concurrency=16 --requests=500 --warmup=50
+ *
+ * - demo-saia Graph：--url=http://127.0.0.1:8082 --path=/agent/text2sql-graph
+ * - demo-saia 单 Agent：--url=http://127.0.0.1:8082 --path=/agent/text2sql
+ * - demo-sai 工具调用循环：--url=http://127.0.0.1:8081 --path=/agent/text2sql
+ * - --questions=文件：每行一个问题，默认使用内置问题（覆盖列表、单值、趋势、对比、占比几类）
+ */
+public class LoadDriver {
+
+    private static final List<String> DEFAULT_QUESTIONS = List.of(
+            "列出所有客户",
+            "查询所有订单",
+            "订单总金额是多少",
+            "统计每月订单金额的趋势",
+            "各城市的客户数量对比",
+            "各订单状态的占比",
+            "销量最高的商品排行");
+
+    private static final String MODEL_METRIC = "text2sql.stub-llm.simulated";
+    private static final String MCP_METRIC = "mcp.client.requests";
+    private static final String HTTP_CLIENT_METRIC = "http.client.requests";
+    private static final String GRAPH_NODE_METRIC = "text2sql.graph.node";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 一个计时指标在某一时刻的累计值（次数和总耗时，毫秒）
+     */
+    record TimerSnapshot(double count, double totalMs) {
+
+        TimerSnapshot minus(TimerSnapshot before) {
+            return new TimerSnapshot(count - before.count, totalMs - before.totalMs);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        String url = options.getOrDefault("url", "http://127.0.0.1:8082");
+        String path = options.getOrDefault("path", "/agent/text2sql-graph");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "200"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "20"));
+        Duration timeout = Duration.parse("PT" + options.getOrDefault("timeout", "120s").toUpperCase());
+        List<String> questions = options.containsKey("questions")
+                ? Files.readAllLines(Path.of(options.get("questions")), StandardCharsets.UTF_8).stream()
+                        .filter(line -> !line.isBlank()).toList()
+                : DEFAULT_QUESTIONS;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .build();
+
+        System.out.printf("目标: %s%s, 并发: %d, 请求数: %d, 预热: %d%n", url, path, concurrency, requests, warmup);
+        if (warmup > 0) {
+            run(client, url + path, questions, concurrency, warmup, timeout);
+        }
+
+        Map<String, TimerSnapshot> before = snapshot(client, url);
+        Result result = run(client, url + path, questions, concurrency, requests, timeout);
+        Map<String, TimerSnapshot> after = snapshot(client, url);
+
+        report(result, concurrency, delta(before, after));
+        System.exit(0);
+    }
+
+    // === 压测 ===
+
+    record Result(long[] latenciesNanos, int errors, long elapsedNanos) {}
+
+    static Result run(HttpClient client, String endpoint, List<String> questions, int concurrency, int requests,
+                      Duration timeout) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int w = 0; w < concurrency; w++) {
+            workers.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    String question = questions.get(i % questions.size());
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request(endpoint, question, timeout),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencies[i] = System.nanoTime() - begin;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.DAYS);
+        return new Result(latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private static HttpRequest request(String endpoint, String question, Duration timeout) {
+        String body;
+        try {
+            body = MAPPER.writeValueAsString(Map.of("question", question));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return HttpRequest.newBuilder(URI.create(endpoint))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    // === 指标 ===
+
+    private static Map<String, TimerSnapshot> snapshot(HttpClient client, String url) {
+        Map<String, TimerSnapshot> snapshot = new HashMap<>();
+        for (String metric : List.of(MODEL_METRIC, MCP_METRIC, HTTP_CLIENT_METRIC, GRAPH_NODE_METRIC)) {
+            TimerSnapshot value = readTimer(client, url, metric);
+            if (value != null) {
+                snapshot.put(metric, value);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 读取 /actuator/metrics/{name} 的 COUNT 和 TOTAL_TIME（秒），指标不存在或未暴露时返回 null
+     */
+    static TimerSnapshot readTimer(HttpClient client, String url, String metric) {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(url + "/actuator/metrics/" + metric)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            double count = 0;
+            double totalSeconds = 0;
+            for (JsonNode measurement : MAPPER.readTree(response.body()).path("measurements")) {
+                switch (measurement.path("statistic").asText()) {
+                    case "COUNT" -> count = measurement.path("value").asDouble();
+                    case "TOTAL_TIME" -> totalSeconds = measurement.path("value").asDouble();
+                    default -> { }
+                }
+            }
+            return new TimerSnapshot(count, totalSeconds * 1000);
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Map<String, TimerSnapshot> delta(Map<String, TimerSnapshot> before, Map<String, TimerSnapshot> after) {
+        Map<String, TimerSnapshot> delta = new LinkedHashMap<>();
+        after.forEach((metric, value) ->
+                delta.put(metric, value.minus(before.getOrDefault(metric, new TimerSnapshot(0, 0)))));
+        return delta;
+    }
+
+    // === 报告 ===
+
+    static void report(Result result, int concurrency, Map<String, TimerSnapshot> metrics) {
+        long[] sorted = result.latenciesNanos().clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double seconds = result.elapsedNanos() / 1e9;
+        double meanMs = Arrays.stream(sorted).average().orElse(0) / 1e6;
+
+        System.out.printf("%n请求: %d（失败 %d），并发: %d，耗时: %.1f s，吞吐量: %.1f req/s%n",
+                n, result.errors(), concurrency, seconds, n / seconds);
+        System.out.printf("延迟 (ms): p50 %.1f  p95 %.1f  p99 %.1f  max %.1f  mean %.1f%n",
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                n > 0 ? sorted[n - 1] / 1e6 : 0, meanMs);
+
+        // 每个请求的平均耗时拆分：指标总耗时 / 请求数
+        TimerSnapshot model = metrics.get(MODEL_METRIC);
+        TimerSnapshot mcp = metrics.containsKey(MCP_METRIC) ? metrics.get(MCP_METRIC) : metrics.get(HTTP_CLIENT_METRIC);
+        TimerSnapshot nodes = metrics.get(GRAPH_NODE_METRIC);
+        double modelMs = model != null ? model.totalMs() / n : 0;
+        double mcpMs = mcp != null ? mcp.totalMs() / n : 0;
+
+        System.out.printf("%n每个请求的平均耗时拆分 (ms)：%n");
+        System.out.printf("  端到端                %8.1f%n", meanMs);
+        System.out.printf("  模拟模型耗时          %8s%n", model != null
+                ? String.format("%.1f（%.1f 次调用）", modelMs, model.count() / n) : "n/a（未使用 stub-llm profile？）");
+        System.out.printf("  MCP 调用              %8s%n", mcp != null
+                ? String.format("%.1f（%.1f 次调用）", mcpMs, mcp.count() / n) : "n/a");
+        if (nodes != null && nodes.count() > 0) {
+            // Graph 节点耗时包含节点内的模型和 MCP 调用；节点内并行分支（如校验与渲染）会让各部分之和略大于实际耗时
+            double graphMs = Math.max(0, nodes.totalMs() / n - modelMs - mcpMs);
+            System.out.printf("  Graph 节点自身        %8.1f%n", graphMs);
+            System.out.printf("  框架开销（其余部分）  %8.1f%n", Math.max(0, meanMs - nodes.totalMs() / n));
+        } else {
+            System.out.printf("  框架开销（其余部分）  %8.1f%n", Math.max(0, meanMs - modelMs - mcpMs));
+        }
+    }
+
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1e6;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                unknown.add(arg);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("参数格式应为 --name=value: " + unknown);
+        }
+        return options;
+    }
+}
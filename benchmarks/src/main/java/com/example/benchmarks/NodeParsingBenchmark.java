@@ -0,0 +1,85 @@
+package com.example.benchmarks;
+
+import com.example.demosaia.graph.nodes.NodeParsing;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph 节点中与模型无关的文本处理（NodeParsing，每个请求都会执行）
+ *
+ * - inferTableNames：SchemaRetrievalNode 按问题关键词推断表名（每次处理一组问题）
+ * - cleanSqlOutput：Simple / Complex 生成节点清理模型输出的 SQL
+ * - extractRendererOutput：RendererNode 从模型回答中提取说明、脚本和组件类型
+ *
+ * 用 -prof gc 对比 gc.alloc.rate.norm（每次操作分配的字节数）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeParsingBenchmark {
+
+    private static final List<String> QUESTIONS = List.of(
+            "列出所有客户",
+            "统计每月订单金额的趋势",
+            "每个客户的订单数量和消费总额",
+            "销量最高的 10 个商品",
+            "Show the top customers by order count");
+
+    private static final String SQL_OUTPUT = """
+            ```sql
+            SELECT c.CITY, COUNT(DISTINCT c.ID) AS CUSTOMER_COUNT, SUM(o.TOTAL_AMOUNT) AS TOTAL
+            FROM customers c JOIN orders o ON o.CUSTOMER_ID = c.ID
+            GROUP BY c.CITY ORDER BY TOTAL DESC LIMIT 20
+            ```""";
+
+    private static final String RENDERER_OUTPUT = """
+            统计各城市的客户数量和订单总金额，以柱状图对比展示。
+
+            ```javascript
+            async function generateData(mcpClient) {
+                const sql = "SELECT c.CITY, SUM(o.TOTAL_AMOUNT) AS TOTAL FROM customers c JOIN orders o ON o.CUSTOMER_ID = c.ID GROUP BY c.CITY ORDER BY TOTAL DESC LIMIT 20";
+                const result = await mcpClient.executeSql(sql);
+
+                // 转换为柱状图数据格式
+                const chartData = result.rows.map(row => ({
+                    name: row.CITY || row.city || '未知',
+                    value: row.TOTAL || row.total || 0
+                }));
+
+                return {
+                    componentType: 'BarChart',
+                    propertyData: {
+                        title: '各城市订单总金额',
+                        xAxisName: '城市',
+                        yAxisName: '金额(元)',
+                        data: chartData
+                    }
+                };
+            }
+            ```""";
+
+    @Benchmark
+    public void inferTableNames(Blackhole bh) {
+        for (String question : QUESTIONS) {
+            bh.consume(NodeParsing.inferTableNames(question));
+        }
+    }
+
+    @Benchmark
+    public String cleanSqlOutput() {
+        return NodeParsing.cleanSqlOutput(SQL_OUTPUT);
+    }
+
+    @Benchmark
+    public void extractRendererOutput(Blackhole bh) {
+        bh.consume(NodeParsing.extractExplanation(RENDERER_OUTPUT));
+        String scriptCode = NodeParsing.extractScriptCode(RENDERER_OUTPUT);
+        bh.consume(NodeParsing.extractComponentType(scriptCode));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.benchmarks;
+
+import com.example.mcp.dto.ColumnarSqlResponse;
+import com.example.mcp.dto.SqlResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql.run 响应的 JSON 序列化（查询结果在 setup 中准备好，只测序列化）
+ *
+ * - rowsJson：SqlResponse（rows 为 List<List<Object>>）
+ * - columnarJson：ColumnarSqlResponse（按列的原始类型数组和字典编码）
+ *
+ * 用 -prof gc 对比 gc.alloc.rate.norm（每次序列化分配的字节数）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlResponseSerializationBenchmark {
+
+    private static final String SQL = "SELECT ID, CUSTOMER_ID, ORDER_DATE, TOTAL_AMOUNT, STATUS FROM orders WHERE ID <= ?";
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+
+    private SqlResponse rowResponse;
+
+    private ColumnarSqlResponse columnarResponse;
+
+    @Setup
+    public void setup() {
+        database = BenchmarkDatabase.create(rows);
+        rowResponse = database.databaseService.executeSql(SQL, List.of(rows));
+        columnarResponse = database.databaseService.executeSqlColumnar(SQL, List.of(rows));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public byte[] rowsJson() throws JsonProcessingException {
+        return database.objectMapper.writeValueAsBytes(rowResponse);
+    }
+
+    @Benchmark
+    public byte[] columnarJson() throws JsonProcessingException {
+        return database.objectMapper.writeValueAsBytes(columnarResponse);
+    }
+}
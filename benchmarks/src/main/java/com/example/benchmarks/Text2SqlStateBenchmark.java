@@ -0,0 +1,157 @@
+package com.example.benchmarks;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.AppendStrategy;
+import com.example.demosaia.graph.state.StateStrategyFactory;
+import com.example.demosaia.graph.state.Text2SqlState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph 状态在节点间传递的开销：模拟一次 complex 请求经过的 5 个节点
+ * （router → schemaRetrieval → complexSqlGen → sqlValidator → renderer），
+ * 每个节点读取状态、写入自己的输出和一条日志，再由 OverAllState 合并
+ *
+ * - delta：Text2SqlState 包装 OverAllState 数据，节点只返回写入的字段和新增的轨迹事件
+ * - fullCopy：每个节点把全部字段复制进新对象、拼出完整的日志字符串，再整体返回并由 AppendStrategy 追加（改为增量之前的做法）
+ * - fromMap / toMap：单个节点读取状态（包装 + 读取常用字段）和写出增量（写入字段 + 一条日志）的开销
+ *
+ * 用 -prof gc 对比 gc.alloc.rate.norm（每次请求分配的字节数）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Text2SqlStateBenchmark {
+
+    private static final List<String> KEYS = List.of("question", "paginationParam", "streamId", "queryType",
+            "schema", "sql", "validatedSql", "isValid", "validationError", "resultColumns", "resultColumnTypes",
+            "retryCount", "scriptCode", "explanation", "componentType", "errorNode", "errorType", "errorDetail",
+            "errorSuggestion", "errorRetryable");
+
+    private Map<String, Object> schema;
+
+    private String script;
+
+    /**
+     * 走到 RendererNode 时的状态（fromMap 的输入）
+     */
+    private Map<String, Object> rendererInput;
+
+    @Setup
+    public void setup() {
+        StringBuilder schemaText = new StringBuilder();
+        for (String table : List.of("customers", "orders", "order_items")) {
+            schemaText.append("CREATE TABLE ").append(table).append(" (\n");
+            for (int i = 0; i < 8; i++) {
+                schemaText.append("  column_").append(i).append(" VARCHAR(255) NOT NULL, -- 字段说明 ").append(i).append('\n');
+            }
+            schemaText.append(");\n");
+        }
+        schema = Map.of("tableName", "customers, orders, order_items", "schemaText", schemaText.toString());
+        script = "async function generateData(mcpClient) {\n" + "  // chart\n".repeat(60) + "}";
+
+        OverAllState overAllState = newRequest();
+        hop(overAllState, "RouterNode", "queryType", "complex");
+        hop(overAllState, "SchemaRetrievalNode", "schema", schema);
+        hop(overAllState, "ComplexSqlGeneratorNode", "sql", "SELECT c.city, COUNT(*) FROM customers c GROUP BY c.city");
+        hop(overAllState, "SqlValidatorNode", "isValid", Boolean.TRUE);
+        rendererInput = overAllState.data();
+    }
+
+    @Benchmark
+    public void fromMap(Blackhole bh) {
+        Text2SqlState state = Text2SqlState.fromMap(rendererInput);
+        bh.consume(state.getQuestion());
+        bh.consume(state.getQueryType());
+        bh.consume(state.getSchema());
+        bh.consume(state.getSql());
+        bh.consume(state.getIsValid());
+        bh.consume(state.getRetryCount());
+    }
+
+    @Benchmark
+    public Map<String, Object> toMap() {
+        Text2SqlState state = Text2SqlState.fromMap(rendererInput);
+        state.addLog("RendererNode", "开始生成脚本");
+        state.setScriptCode(script);
+        state.setExplanation("统计每个城市的客户数量，以柱状图展示。");
+        state.setComponentType("BarChart");
+        return state.toMap();
+    }
+
+    @Benchmark
+    public void delta(Blackhole bh) {
+        OverAllState overAllState = newRequest();
+        hop(overAllState, "RouterNode", "queryType", "complex");
+        hop(overAllState, "SchemaRetrievalNode", "schema", schema);
+        hop(overAllState, "ComplexSqlGeneratorNode", "sql", "SELECT c.city, COUNT(*) FROM customers c GROUP BY c.city");
+        hop(overAllState, "SqlValidatorNode", "isValid", Boolean.TRUE);
+        hop(overAllState, "RendererNode", "scriptCode", script);
+        bh.consume(Text2SqlState.fromMap(overAllState.data()).getExecutionLog());
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void fullCopy(Blackhole bh) {
+        OverAllState overAllState = newRequest();
+        overAllState.registerKeyAndStrategy("executionLog", new AppendStrategy());
+        fullCopyHop(overAllState, "RouterNode", "queryType", "complex");
+        fullCopyHop(overAllState, "SchemaRetrievalNode", "schema", schema);
+        fullCopyHop(overAllState, "ComplexSqlGeneratorNode", "sql", "SELECT c.city, COUNT(*) FROM customers c GROUP BY c.city");
+        fullCopyHop(overAllState, "SqlValidatorNode", "isValid", Boolean.TRUE);
+        fullCopyHop(overAllState, "RendererNode", "scriptCode", script);
+        bh.consume(String.join("", (List<String>) overAllState.data().get("executionLog")));
+    }
+
+    private OverAllState newRequest() {
+        OverAllState overAllState = StateStrategyFactory.createText2SqlStateFactory().create();
+        Text2SqlState input = new Text2SqlState();
+        input.setQuestion("统计每个城市的客户数量和订单总金额");
+        input.addLog("Controller", "开始 Graph 执行");
+        overAllState.updateState(input.toMap());
+        return overAllState;
+    }
+
+    private void hop(OverAllState overAllState, String node, String key, Object value) {
+        Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
+        state.addLog(node, "开始, 问题: " + state.getQuestion());
+        Map<String, Object> output = state.toMap();
+        output.put(key, value);
+        overAllState.updateState(output);
+    }
+
+    /**
+     * 旧的 fromMap/toMap：复制全部字段，把累积的日志拼成一个字符串，追加本节点日志后整体返回
+     */
+    private void fullCopyHop(OverAllState overAllState, String node, String key, Object value) {
+        Map<String, Object> data = overAllState.data();
+        Map<String, Object> copy = new HashMap<>();
+        for (String k : KEYS) {
+            copy.put(k, data.get(k));
+        }
+        StringBuilder log = new StringBuilder();
+        if (data.get("executionLog") instanceof List<?> entries) {
+            for (Object entry : entries) {
+                log.append(entry);
+            }
+        }
+        log.append("[").append(System.currentTimeMillis()).append("] ")
+                .append("[").append(node).append("] 开始, 问题: ").append(copy.get("question")).append("\n");
+
+        Map<String, Object> output = new HashMap<>();
+        for (String k : KEYS) {
+            output.put(k, copy.get(k));
+        }
+        output.put("executionLog", log.toString());
+        output.put(key, value);
+        overAllState.updateState(output);
+    }
+}
@@ -13,12 +13,15 @@ public class McpClientConfig {
     @Value("${mcp.server.base-url}")
     private String mcpServerBaseUrl;
 
+    /**
+     * 使用 Spring 管理的 WebClient.Builder，MCP 调用会记录到 http.client.requests 指标
+     */
     @Bean
-    public WebClient mcpWebClient() {
+    public WebClient mcpWebClient(WebClient.Builder webClientBuilder) {
         log.info("=== 初始化 MCP WebClient ===");
         log.info("MCP Server Base URL: {}", mcpServerBaseUrl);
         
-        return WebClient.builder()
+        return webClientBuilder
                 .baseUrl(mcpServerBaseUrl)
                 .defaultHeader("Content-Type", "application/json")
                 .build();
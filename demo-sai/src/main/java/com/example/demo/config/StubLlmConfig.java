@@ -0,0 +1,38 @@
+package com.example.demo.config;
+
+import com.example.stubllm.StubChatModel;
+import com.example.stubllm.StubLatency;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 离线压测配置（stub-llm profile）
+ * - 用 StubChatModel 替换 OpenAI 兼容模型，工具调用循环和 MCP 调用保持不变
+ * - 依次调用 schemaGet、sqlRun 后以中文解释作为最终回答（与 SYSTEM_PROMPT 要求的输出一致）
+ * - 延迟参数见 application-stub-llm.yml 的 text2sql.stub-llm
+ */
+@Configuration
+@Profile("stub-llm")
+public class StubLlmConfig {
+
+    @Bean
+    @Primary
+    public ChatModel stubChatModel(ToolCallingManager toolCallingManager, MeterRegistry meterRegistry,
+                                   @Value("${text2sql.stub-llm.latency.distribution:lognormal}") String distribution,
+                                   @Value("${text2sql.stub-llm.latency.mean:800ms}") Duration mean,
+                                   @Value("${text2sql.stub-llm.latency.jitter:300ms}") Duration jitter,
+                                   @Value("${text2sql.stub-llm.latency.per-output-token:0ms}") Duration perOutputToken) {
+        return new StubChatModel(toolCallingManager, meterRegistry,
+                StubLatency.of(distribution, mean, jitter, perOutputToken),
+                List.of(), scripted -> scripted.explanation());
+    }
+}
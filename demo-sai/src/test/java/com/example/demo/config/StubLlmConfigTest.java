@@ -0,0 +1,64 @@
+package com.example.demo.config;
+
+import com.example.stubllm.StubChatModel;
+import com.example.stubllm.StubScripts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StubLlmConfig 单元测试：工具调用循环走完 schemaGet、sqlRun 后返回中文解释（固定 0 延迟）
+ */
+class StubLlmConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ChatClient chatClient = ChatClient.create(new StubLlmConfig().stubChatModel(
+            ToolCallingManager.builder().build(), registry, "fixed", Duration.ZERO, Duration.ZERO, Duration.ZERO));
+
+    @Test
+    void toolCallingLoopEndsWithExplanation() {
+        List<String> calls = new ArrayList<>();
+        FunctionToolCallback<McpFunctionConfig.SchemaGetRequest, String> schemaGet = FunctionToolCallback
+                .builder("schemaGet", (McpFunctionConfig.SchemaGetRequest request) -> {
+                    calls.add("schemaGet:" + request.table());
+                    return "CREATE TABLE " + request.table() + " (...)";
+                })
+                .description("获取表结构")
+                .inputType(McpFunctionConfig.SchemaGetRequest.class)
+                .build();
+        FunctionToolCallback<McpFunctionConfig.SqlRunRequest, String> sqlRun = FunctionToolCallback
+                .builder("sqlRun", (McpFunctionConfig.SqlRunRequest request) -> {
+                    calls.add("sqlRun:" + request.sql());
+                    return "{\"columns\":[\"TOTAL\"],\"rows\":[[100]]}";
+                })
+                .description("执行 SQL")
+                .inputType(McpFunctionConfig.SqlRunRequest.class)
+                .build();
+
+        String answer = chatClient.prompt()
+                .system("你是一个专业的数据库查询助手。")
+                .user("订单总金额是多少")
+                .toolCallbacks(schemaGet, sqlRun)
+                .call().content();
+
+        StubScripts.Scripted scripted = StubScripts.script("订单总金额是多少");
+        assertEquals(List.of("schemaGet:orders", "sqlRun:" + scripted.sql()), calls);
+        assertEquals(scripted.explanation(), answer);
+        assertEquals(3, registry.get(StubChatModel.SIMULATED_METRIC).tag("kind", "agent").timer().count());
+    }
+
+    @Test
+    void unknownDistributionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StubLlmConfig().stubChatModel(
+                ToolCallingManager.builder().build(), registry, "bimodal", Duration.ZERO, Duration.ZERO, Duration.ZERO));
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demosaia.config;
 
+import com.example.demosaia.service.LlmResponseCacheAdvisor;
+import com.example.demosaia.service.LlmUsageMetricsAdvisor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
@@ -10,6 +12,7 @@ import org.springframework.context.annotation.Configuration;
  * ChatClient 配置类
  * - 统一创建 ChatClient Bean
  * - Spring AI Alibaba 会自动使用 application.yml 中配置的 options
+ * - 默认挂载 LLM 响应缓存（相同提示词不重复调用模型）和调用指标（耗时、token 用量）
  */
 @Slf4j
 @Configuration
@@ -20,8 +23,11 @@ public class ChatClientConfig {
      * 注意：默认 options 由 Spring AI Alibaba Auto-configuration 从 application.yml 读取
      */
     @Bean
-    public ChatClient chatClient(ChatModel chatModel) {
+    public ChatClient chatClient(ChatModel chatModel, LlmResponseCacheAdvisor llmResponseCacheAdvisor,
+                                 LlmUsageMetricsAdvisor llmUsageMetricsAdvisor) {
         log.info("初始化 ChatClient (Spring AI Alibaba)");
-        return ChatClient.builder(chatModel).build();
+        return ChatClient.builder(chatModel)
+                .defaultAdvisors(llmResponseCacheAdvisor, llmUsageMetricsAdvisor)
+                .build();
     }
 }
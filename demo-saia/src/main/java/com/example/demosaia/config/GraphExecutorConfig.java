@@ -0,0 +1,59 @@
+package com.example.demosaia.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Graph 执行线程池
+ * Graph 节点以阻塞方式等待 LLM 和 MCP Server 响应，每个执行中的 Graph 占用一个线程，线程数就是 Graph 的并发上限：
+ * - 核心线程数与最大线程数相同（默认 200，与 Tomcat 默认工作线程数一致），有任务就直接起线程，
+ *   不会像核心线程数小于最大线程数时那样先把请求堆进队列、只用核心线程执行
+ * - 线程全忙时才进入队列，队列满时拒绝；空闲线程超时后回收
+ * 请求线程只是把执行交给该线程池（异步 Servlet），等待时长受 spring.mvc.async.request-timeout 限制
+ */
+@Configuration
+public class GraphExecutorConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor graphExecutor(
+            @Value("${text2sql.graph.executor.size:200}") int size,
+            @Value("${text2sql.graph.executor.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("graph-");
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(queueCapacity);
+        // 队列满时拒绝，由控制器返回"服务繁忙"，而不是无限堆积请求
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Graph 节点内部的并行分支线程池（例如 SQL 校验与脚本渲染同时执行）
+     * 与 graphExecutor 分开，避免 Graph 线程等待提交到同一个池里的分支任务而互相占满；
+     * 没有空闲线程时由调用线程自己执行，退化为顺序执行而不是拒绝
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService graphNodeExecutor(@Value("${text2sql.graph.node-executor.max-size:32}") int maxSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxSize, maxSize, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "graph-node-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demosaia.config;
+
+import com.example.demosaia.graph.nodes.ComplexSqlGeneratorNode;
+import com.example.demosaia.graph.nodes.RendererNode;
+import com.example.demosaia.graph.nodes.RouterNode;
+import com.example.demosaia.graph.nodes.SimpleSqlGeneratorNode;
+import com.example.stubllm.PromptReply;
+import com.example.stubllm.StubChatModel;
+import com.example.stubllm.StubLatency;
+import com.example.stubllm.StubScripts;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 离线压测配置（stub-llm profile）
+ * - 用 StubChatModel 替换 DashScope 模型，Graph、MCP 调用和 HTTP 链路保持不变
+ * - Graph 节点的回答按各节点的提示词常量匹配，单 Agent 模式调用工具后返回说明和脚本
+ * - 延迟参数见 application-stub-llm.yml 的 text2sql.stub-llm
+ */
+@Configuration
+@Profile("stub-llm")
+public class StubLlmConfig {
+
+    /**
+     * Graph 节点提示词对应的脚本化回答
+     */
+    static final List<PromptReply> GRAPH_REPLIES = List.of(
+            PromptReply.forTemplate("router", RouterNode.ROUTER_PROMPT,
+                    vars -> StubScripts.isComplex(vars.get("question")) ? "complex" : "simple"),
+            PromptReply.forTemplate("simple-sql", SimpleSqlGeneratorNode.SIMPLE_SQL_PROMPT,
+                    vars -> StubScripts.script(vars.get("question")).sql()),
+            PromptReply.forTemplate("complex-sql", ComplexSqlGeneratorNode.COMPLEX_SQL_PROMPT,
+                    vars -> StubScripts.script(vars.get("question")).sql()),
+            PromptReply.forTemplate("renderer", RendererNode.RENDERER_PROMPT,
+                    vars -> StubScripts.javascriptAnswer(StubScripts.script(vars.get("question")), vars.get("sql"))));
+
+    @Bean
+    @Primary
+    public ChatModel stubChatModel(ToolCallingManager toolCallingManager, MeterRegistry meterRegistry,
+                                   @Value("${text2sql.stub-llm.latency.distribution:lognormal}") String distribution,
+                                   @Value("${text2sql.stub-llm.latency.mean:800ms}") Duration mean,
+                                   @Value("${text2sql.stub-llm.latency.jitter:300ms}") Duration jitter,
+                                   @Value("${text2sql.stub-llm.latency.per-output-token:0ms}") Duration perOutputToken) {
+        return new StubChatModel(toolCallingManager, meterRegistry,
+                StubLatency.of(distribution, mean, jitter, perOutputToken),
+                GRAPH_REPLIES, scripted -> StubScripts.javascriptAnswer(scripted, scripted.sql()));
+    }
+}
@@ -1,23 +1,38 @@
 package com.example.demosaia.controller;
 
-import com.alibaba.cloud.ai.graph.CompiledGraph;
-import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.StateGraph;
 import com.example.demosaia.dto.ScriptResponse;
 import com.example.demosaia.dto.Text2SqlRequest;
+import com.example.demosaia.graph.config.CompiledGraphPool;
 import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.SemanticQueryCache;
 import com.example.demosaia.service.Text2SqlService;
+import com.example.demosaia.service.TokenStreamRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Agent 控制器 - Text-to-SQL 功能
  * 提供两个版本的 Text-to-SQL 接口：
  * 1. /text2sql - 单 Agent 版本（原有实现）
  * 2. /text2sql-graph - Graph 多 Agent 版本（新增实现）
+ * 3. /text2sql-graph/stream - Graph 版本的 SSE 流式接口
  */
 @Slf4j
 @RestController
@@ -27,7 +42,14 @@ import org.springframework.web.bind.annotation.*;
 public class AgentController {
 
     private final Text2SqlService text2SqlService;
-    private final StateGraph text2SqlGraph;
+    private final CompiledGraphPool compiledGraphPool;
+    private final SemanticQueryCache semanticQueryCache;
+    private final ThreadPoolTaskExecutor graphExecutor;
+    private final TokenStreamRegistry tokenStreamRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${text2sql.graph.stream-timeout:120s}")
+    private Duration streamTimeout;
 
     /**
      * POST /agent/text2sql - 单 Agent 版本（原有实现）
@@ -51,69 +73,247 @@ public class AgentController {
 
     /**
      * POST /agent/text2sql-graph - Graph 多 Agent 版本
+     * Graph 在 graphExecutor 线程池中执行（节点仍阻塞等待 LLM / MCP），请求线程交出后释放（异步 Servlet），
+     * 最长等待 spring.mvc.async.request-timeout
      */
     @PostMapping("/text2sql-graph")
     @Operation(summary = "Text-to-SQL 查询（Graph 版本）",
                description = "使用多 Agent Graph 编排处理自然语言到 SQL 的转换")
-    public ScriptResponse text2SqlGraph(@RequestBody Text2SqlRequest request) {
+    public CompletableFuture<ScriptResponse> text2SqlGraph(@RequestBody Text2SqlRequest request) {
         log.info("[Graph] 收到查询: {}", request.getQuestion());
 
+        try {
+            return CompletableFuture.supplyAsync(() -> runGraph(request), graphExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("[Graph] 执行线程池已满，拒绝请求");
+            return CompletableFuture.completedFuture(overloadedResponse(e));
+        }
+    }
+
+    /**
+     * GET /agent/text2sql-graph/stream - Graph 版本（SSE 流式）
+     * 每个节点完成后推送 node 事件（分类结果、生成的 SQL、校验结论等），
+     * RendererNode 生成脚本时逐个推送 LLM token，最后推送与同步接口相同的 result 事件
+     */
+    @GetMapping(value = "/text2sql-graph/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Text-to-SQL 查询（Graph 流式版本）",
+               description = "以 Server-Sent Events 推送 Graph 各节点的执行进度和部分结果")
+    public SseEmitter text2SqlGraphStream(@RequestParam String question) {
+        log.info("[Graph-SSE] 收到查询: {}", question);
+
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+
+        try {
+            graphExecutor.execute(() -> streamGraph(question, emitter, closed));
+        } catch (RejectedExecutionException e) {
+            log.warn("[Graph-SSE] 执行线程池已满，拒绝请求");
+            sendEvent(emitter, closed, "result", overloadedResponse(e));
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void streamGraph(String question, SseEmitter emitter, AtomicBoolean closed) {
+        ScriptResponse response;
+        SemanticQueryCache.Hit hit = lookupSemanticCache(question);
+        if (hit != null) {
+            response = cachedResponse(hit);
+        } else {
+            String streamId = tokenStreamRegistry.register(
+                    token -> sendEvent(emitter, closed, "token", Map.of("text", token)));
+            try {
+                Text2SqlState initialState = new Text2SqlState();
+                initialState.setQuestion(question);
+                initialState.setStreamId(streamId);
+                initialState.addLog("Controller", "开始 Graph 流式执行");
+
+                Map<String, Object> finalState = compiledGraphPool.stream(initialState.toMap(), output -> {
+                    if (!StateGraph.START.equals(output.node()) && !StateGraph.END.equals(output.node())) {
+                        sendEvent(emitter, closed, "node", nodeEvent(output.node(), output.state().data()));
+                    }
+                });
+
+                log.info("[Graph-SSE] 执行完成");
+                response = buildResponse(question, Text2SqlState.fromMap(finalState));
+            } catch (Exception e) {
+                if (closed.get()) {
+                    log.info("[Graph-SSE] 客户端已断开，停止执行");
+                    return;
+                }
+                log.error("[Graph-SSE] 执行失败", e);
+                response = failedResponse(e);
+            } finally {
+                tokenStreamRegistry.remove(streamId);
+            }
+        }
+
+        try {
+            sendEvent(emitter, closed, "result", response);
+            emitter.complete();
+        } catch (IllegalStateException e) {
+            log.info("[Graph-SSE] 客户端已断开，结果未送达");
+        }
+    }
+
+    /**
+     * 节点完成事件：只携带该节点的产出，完整结果在 result 事件中
+     */
+    private Map<String, Object> nodeEvent(String node, Map<String, Object> data) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("node", node);
+        switch (node) {
+            case "router" -> event.put("queryType", data.get("queryType"));
+            case "simpleSqlGen", "complexSqlGen" -> event.put("sql", data.get("sql"));
+            case "validateAndRender" -> {
+                event.put("isValid", data.get("isValid"));
+                event.put("sql", data.get("validatedSql"));
+                event.put("validationError", data.get("validationError"));
+                event.put("explanation", data.get("explanation"));
+            }
+            default -> { }
+        }
+        if (data.get("errorNode") != null) {
+            event.put("errorNode", data.get("errorNode"));
+        }
+        return event;
+    }
+
+    /**
+     * 发送 SSE 事件；客户端断开后抛出异常以中止 Graph 执行
+     */
+    private void sendEvent(SseEmitter emitter, AtomicBoolean closed, String name, Object data) {
+        if (closed.get()) {
+            throw new IllegalStateException("SSE 连接已关闭");
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            closed.set(true);
+            throw new IllegalStateException("SSE 连接已关闭", e);
+        }
+    }
+
+    private ScriptResponse runGraph(Text2SqlRequest request) {
+        // 0. 语义缓存：相似问题直接返回已验证的 SQL 和脚本，不执行 Graph
+        SemanticQueryCache.Hit hit = lookupSemanticCache(request.getQuestion());
+        if (hit != null) {
+            return cachedResponse(hit);
+        }
+
         try {
             // 1. 准备初始状态
             Text2SqlState initialState = new Text2SqlState();
             initialState.setQuestion(request.getQuestion());
-            initialState.addLog("[Controller] 开始 Graph 执行");
-
-            // 2. 编译并执行 Graph
-            log.info("[Graph] 开始编译 Graph...");
-            CompiledGraph compiledGraph = text2SqlGraph.compile();
+            initialState.addLog("Controller", "开始 Graph 执行");
 
+            // 2. 借用预编译的 Graph 执行（启动时已编译，请求路径上不再编译）
             log.info("[Graph] 开始执行 Graph...");
-            OverAllState finalState = compiledGraph.invoke(initialState.toMap())
-                    .orElseThrow(() -> new RuntimeException("Graph 执行返回空结果"));
-
-            // 4. 提取结果
-            Text2SqlState resultState = Text2SqlState.fromMap(finalState.data());
+            Map<String, Object> finalState = compiledGraphPool.invoke(initialState.toMap());
 
             log.info("[Graph] 执行完成");
-            log.debug("[Graph] 执行日志:\n{}", resultState.getExecutionLog());
-
-            // 5. 构建响应
-            ScriptResponse.ScriptResponseBuilder builder = ScriptResponse.builder()
-                    .scriptCode(resultState.getScriptCode())
-                    .explanation(resultState.getExplanation())
-                    .sql(resultState.getValidatedSql() != null ? resultState.getValidatedSql() : resultState.getSql())
-                    .queryType(resultState.getQueryType())
-                    .executionLog(resultState.getExecutionLog().toString());
-
-            // 如果有错误信息，附加到响应
-            if (resultState.getErrorNode() != null) {
-                builder.errorInfo(ScriptResponse.ErrorInfo.builder()
-                        .failedNode(resultState.getErrorNode())
-                        .errorType(resultState.getErrorType())
-                        .errorDetail(resultState.getErrorDetail())
-                        .suggestion(resultState.getErrorSuggestion())
-                        .retryable(Boolean.TRUE.equals(resultState.getErrorRetryable()))
-                        .build());
-            }
 
-            return builder.build();
+            // 3. 提取结果并构建响应
+            return buildResponse(request.getQuestion(), Text2SqlState.fromMap(finalState));
 
         } catch (Exception e) {
             log.error("[Graph] 执行失败", e);
+            return failedResponse(e);
+        }
+    }
 
-            return ScriptResponse.builder()
-                    .scriptCode(generateErrorScript(e.getMessage()))
-                    .explanation("Graph 执行失败: " + e.getMessage())
-                    .errorInfo(ScriptResponse.ErrorInfo.builder()
-                            .failedNode("GraphEngine")
-                            .errorType(classifyTopLevelError(e))
-                            .errorDetail(e.getMessage())
-                            .suggestion("服务暂时不可用，请稍后重试。")
-                            .retryable(true)
-                            .build())
-                    .build();
+    private ScriptResponse buildResponse(String question, Text2SqlState resultState) {
+        log.debug("[Graph] 执行日志:\n{}", resultState.getExecutionLog());
+
+        // SQL 校验失败时 Graph 不经过 RendererNode 直接结束，这里补上错误提示脚本
+        String scriptCode = resultState.getScriptCode();
+        String explanation = resultState.getExplanation();
+        if (scriptCode == null) {
+            String detail = resultState.getValidationError() != null
+                    ? resultState.getValidationError() : resultState.getErrorDetail();
+            scriptCode = generateErrorScript(detail != null ? detail : "未生成可视化脚本");
+            explanation = "SQL 校验未通过：" + (detail != null ? detail : "未知原因");
         }
+
+        ScriptResponse.ScriptResponseBuilder builder = ScriptResponse.builder()
+                .scriptCode(scriptCode)
+                .explanation(explanation)
+                .sql(resultState.getValidatedSql() != null ? resultState.getValidatedSql() : resultState.getSql())
+                .queryType(resultState.getQueryType())
+                .executionLog(resultState.getExecutionLog());
+
+        // 只缓存完整成功的结果
+        if (resultState.getErrorNode() == null && Boolean.TRUE.equals(resultState.getIsValid())
+                && resultState.getScriptCode() != null) {
+            semanticQueryCache.put(new SemanticQueryCache.CachedAnswer(question,
+                    resultState.getValidatedSql(), resultState.getScriptCode(),
+                    resultState.getExplanation(), resultState.getQueryType()));
+        }
+
+        // 如果有错误信息，附加到响应
+        if (resultState.getErrorNode() != null) {
+            builder.errorInfo(ScriptResponse.ErrorInfo.builder()
+                    .failedNode(resultState.getErrorNode())
+                    .errorType(resultState.getErrorType())
+                    .errorDetail(resultState.getErrorDetail())
+                    .suggestion(resultState.getErrorSuggestion())
+                    .retryable(Boolean.TRUE.equals(resultState.getErrorRetryable()))
+                    .build());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * 查语义缓存，命中率记录在 text2sql.semantic-cache.requests{result=hit|miss}
+     */
+    private SemanticQueryCache.Hit lookupSemanticCache(String question) {
+        SemanticQueryCache.Hit hit = semanticQueryCache.lookup(question);
+        meterRegistry.counter("text2sql.semantic-cache.requests", "result", hit != null ? "hit" : "miss").increment();
+        return hit;
+    }
+
+    private ScriptResponse cachedResponse(SemanticQueryCache.Hit hit) {
+        SemanticQueryCache.CachedAnswer answer = hit.answer();
+        return ScriptResponse.builder()
+                .scriptCode(answer.scriptCode())
+                .explanation(answer.explanation())
+                .sql(answer.sql())
+                .queryType(answer.queryType())
+                .executionLog("[SemanticCache] 命中缓存（相似问题: " + answer.question()
+                        + "，相似度 " + String.format("%.3f", hit.similarity()) + "），跳过 Graph 执行")
+                .build();
+    }
+
+    private ScriptResponse failedResponse(Exception e) {
+        return ScriptResponse.builder()
+                .scriptCode(generateErrorScript(e.getMessage()))
+                .explanation("Graph 执行失败: " + e.getMessage())
+                .errorInfo(ScriptResponse.ErrorInfo.builder()
+                        .failedNode("GraphEngine")
+                        .errorType(classifyTopLevelError(e))
+                        .errorDetail(e.getMessage())
+                        .suggestion("服务暂时不可用，请稍后重试。")
+                        .retryable(true)
+                        .build())
+                .build();
+    }
+
+    private ScriptResponse overloadedResponse(RejectedExecutionException e) {
+        return ScriptResponse.builder()
+                .scriptCode(generateErrorScript("服务繁忙"))
+                .explanation("服务繁忙，请稍后重试")
+                .errorInfo(ScriptResponse.ErrorInfo.builder()
+                        .failedNode("GraphEngine")
+                        .errorType("OVERLOADED")
+                        .errorDetail(e.getMessage())
+                        .suggestion("当前并发请求过多，请稍后重试。")
+                        .retryable(true)
+                        .build())
+                .build();
     }
 
     private String classifyTopLevelError(Exception e) {
@@ -133,6 +333,7 @@ public class AgentController {
                         }
                     };
                 }
-                """.formatted(errorMessage.replace("'", "\\'"));
+                """.formatted(errorMessage.replace("\\", "\\\\").replace("'", "\\'")
+                        .replace("\n", "\\n").replace("\r", ""));
     }
 }
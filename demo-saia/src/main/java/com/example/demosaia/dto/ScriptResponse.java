@@ -60,7 +60,7 @@ public class ScriptResponse {
     public static class ErrorInfo {
         /** 失败的节点名称 */
         private String failedNode;
-        /** 错误类型: LLM_ERROR, SQL_SYNTAX, TABLE_NOT_FOUND, FIELD_NOT_FOUND, NETWORK_ERROR, UNKNOWN */
+        /** 错误类型: LLM_ERROR, SQL_SYNTAX, TABLE_NOT_FOUND, FIELD_NOT_FOUND, QUERY_TOO_EXPENSIVE, NETWORK_ERROR, UNKNOWN */
         private String errorType;
         /** 错误详情 */
         private String errorDetail;
@@ -0,0 +1,144 @@
+package com.example.demosaia.graph.config;
+
+import com.alibaba.cloud.ai.graph.CompileConfig;
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.checkpoint.config.SaverConfig;
+import com.alibaba.cloud.ai.graph.exception.GraphStateException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 预编译 Graph 池
+ * CompiledGraph 内部持有一个可变的 OverAllState，执行过程中直接在上面读写，
+ * 同一实例不能被并发请求共享，因此按需编译多个实例复用：
+ * - 启动时编译 warm-size 个实例（同时校验 Graph 结构，配置错误在启动时即暴露）
+ * - 请求时借出空闲实例，没有空闲且未达到 max-size 时再编译一个，否则等待归还
+ * - 归还前清空实例的状态；每次请求的差异通过 RunnableConfig 传入，不需要重新编译
+ * 不注册 checkpoint saver：默认的 MemorySaver 会在复用的实例上不断累积检查点，
+ * 并把上一次执行的最终状态合并进下一次的初始状态
+ */
+@Slf4j
+@Component
+public class CompiledGraphPool {
+
+	private static final CompileConfig COMPILE_CONFIG = CompileConfig.builder()
+		.saverConfig(SaverConfig.builder().build())
+		.build();
+
+	private final StateGraph text2SqlGraph;
+
+	private final int maxSize;
+
+	private final BlockingQueue<CompiledGraph> idle = new LinkedBlockingQueue<>();
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	public CompiledGraphPool(StateGraph text2SqlGraph,
+			@Value("${text2sql.graph.pool.warm-size:2}") int warmSize,
+			@Value("${text2sql.graph.pool.max-size:200}") int maxSize) throws GraphStateException {
+		this.text2SqlGraph = text2SqlGraph;
+		this.maxSize = maxSize;
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < Math.min(warmSize, maxSize); i++) {
+			created.incrementAndGet();
+			idle.add(text2SqlGraph.compile(COMPILE_CONFIG));
+		}
+		log.info("预编译 {} 个 Graph 实例，耗时 {} ms", idle.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 执行 Graph，返回最终状态数据的副本
+	 */
+	public Map<String, Object> invoke(Map<String, Object> inputs, RunnableConfig config) throws Exception {
+		CompiledGraph graph = borrow();
+		try {
+			OverAllState finalState = graph.invoke(inputs, config)
+					.orElseThrow(() -> new RuntimeException("Graph 执行返回空结果"));
+			// 最终状态就是实例内部的 OverAllState，归还时会被清空，必须先复制
+			return new HashMap<>(finalState.data());
+		}
+		finally {
+			release(graph);
+		}
+	}
+
+	public Map<String, Object> invoke(Map<String, Object> inputs) throws Exception {
+		return invoke(inputs, RunnableConfig.builder().build());
+	}
+
+	/**
+	 * 以流式方式执行 Graph：每个节点完成后回调 listener，返回最终状态数据的副本
+	 * listener 在执行线程上同步调用，拿到的状态随后会被下一个节点修改，需要的数据应立即读取；
+	 * listener 抛出异常会中止执行（例如 SSE 客户端已断开）
+	 */
+	public Map<String, Object> stream(Map<String, Object> inputs, Consumer<NodeOutput> listener) throws Exception {
+		CompiledGraph graph = borrow();
+		try {
+			Map<String, Object> finalData = null;
+			for (NodeOutput output : graph.stream(inputs, RunnableConfig.builder().build())) {
+				listener.accept(output);
+				finalData = output.state().data();
+			}
+			if (finalData == null) {
+				throw new RuntimeException("Graph 执行返回空结果");
+			}
+			return new HashMap<>(finalData);
+		}
+		finally {
+			release(graph);
+		}
+	}
+
+	CompiledGraph borrow() throws GraphStateException, InterruptedException {
+		CompiledGraph graph = idle.poll();
+		if (graph != null) {
+			return graph;
+		}
+		if (created.incrementAndGet() <= maxSize) {
+			log.info("Graph 池无空闲实例，编译第 {} 个", created.get());
+			try {
+				return text2SqlGraph.compile(COMPILE_CONFIG);
+			}
+			catch (GraphStateException | RuntimeException e) {
+				created.decrementAndGet();
+				throw e;
+			}
+		}
+		created.decrementAndGet();
+		return idle.take();
+	}
+
+	void release(CompiledGraph graph) {
+		// 清空上次执行的数据，否则 Append 策略的字段会把上次的内容带到下一次
+		graph.overAllState().reset();
+		idle.offer(graph);
+	}
+
+	/**
+	 * 当前空闲实例数
+	 */
+	public int idleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * 已编译的实例总数
+	 */
+	public int size() {
+		return created.get();
+	}
+
+}
@@ -3,17 +3,18 @@ package com.example.demosaia.graph.config;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.StateGraph;
 import com.alibaba.cloud.ai.graph.action.AsyncEdgeAction;
-import com.alibaba.cloud.ai.graph.action.AsyncNodeAction;
 import com.example.demosaia.graph.nodes.*;
 import com.example.demosaia.graph.state.StateStrategyFactory;
 import com.example.demosaia.graph.state.Text2SqlState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Graph 配置类
@@ -24,7 +25,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class GraphConfig {
 
-	private final RouterNode routerNode;
+	private final RouteAndPrefetchNode routeAndPrefetchNode;
 
 	private final SchemaRetrievalNode schemaRetrievalNode;
 
@@ -32,9 +33,24 @@ public class GraphConfig {
 
 	private final ComplexSqlGeneratorNode complexSqlGeneratorNode;
 
-	private final SqlValidatorNode sqlValidatorNode;
+	private final ValidateAndRenderNode validateAndRenderNode;
 
-	private final RendererNode rendererNode;
+	private final NodeTracer nodeTracer;
+
+	/**
+	 * SQL 校验失败后最多重新生成几次，0 表示不重试
+	 */
+	@Value("${text2sql.graph.max-sql-retries:1}")
+	private int maxSqlRetries = 1;
+
+	/**
+	 * 单次请求执行轨迹最多保留的事件数
+	 */
+	@Value("${text2sql.graph.trace.max-events:200}")
+	private int maxTraceEvents = StateStrategyFactory.DEFAULT_MAX_TRACE_EVENTS;
+
+	private static final Set<String> RETRYABLE_SQL_ERRORS = Set.of("SQL_SYNTAX", "TABLE_NOT_FOUND", "FIELD_NOT_FOUND",
+			"QUERY_TOO_EXPENSIVE");
 
 	/**
 	 * 创建 Text2SQL StateGraph Bean
@@ -43,51 +59,91 @@ public class GraphConfig {
 	public StateGraph text2SqlGraph() throws Exception {
 		log.info("初始化 Text2SQL StateGraph...");
 
-		StateGraph graph = new StateGraph("Text2SQL-Graph", StateStrategyFactory.createText2SqlStateFactory());
+		StateGraph graph = new StateGraph("Text2SQL-Graph", StateStrategyFactory.createText2SqlStateFactory(maxTraceEvents));
 
-		// === 添加节点 ===
-		graph.addNode("router", AsyncNodeAction.node_async(routerNode::apply));
-		graph.addNode("schemaRetrieval", AsyncNodeAction.node_async(schemaRetrievalNode::apply));
-		graph.addNode("simpleSqlGen", AsyncNodeAction.node_async(simpleSqlGeneratorNode::apply));
-		graph.addNode("complexSqlGen", AsyncNodeAction.node_async(complexSqlGeneratorNode::apply));
-		graph.addNode("validator", AsyncNodeAction.node_async(sqlValidatorNode::apply));
-		graph.addNode("renderer", AsyncNodeAction.node_async(rendererNode::apply));
+		// === 添加节点（每个节点完成时在执行轨迹中记录耗时） ===
+		// 路由分类的同时预取表结构（见 RouteAndPrefetchNode），节点名保持 router
+		graph.addNode("router", nodeTracer.traced("router", routeAndPrefetchNode));
+		graph.addNode("schemaRetrieval", nodeTracer.traced("schemaRetrieval", schemaRetrievalNode));
+		graph.addNode("simpleSqlGen", nodeTracer.traced("simpleSqlGen", simpleSqlGeneratorNode));
+		graph.addNode("complexSqlGen", nodeTracer.traced("complexSqlGen", complexSqlGeneratorNode));
+		// SQL 校验与脚本渲染在同一个节点内并行执行（见 ValidateAndRenderNode）
+		graph.addNode("validateAndRender", nodeTracer.traced("validateAndRender", validateAndRenderNode));
 
 		// === 定义边 ===
 
 		// START -> router
 		graph.addEdge(StateGraph.START, "router");
 
-		// 条件路由：router -> simple/complex 路径
+		// 条件路由：router -> simple/complex 路径（complex 已预取到表结构时直接进入 complexSqlGen）
 		graph.addConditionalEdges("router", AsyncEdgeAction.edge_async(this::routeByQueryType),
 				createRouterEdges());
 
-		// simple 路径：simpleSqlGen -> validator
-		graph.addEdge("simpleSqlGen", "validator");
+		// simple 路径：simpleSqlGen -> validateAndRender
+		graph.addEdge("simpleSqlGen", "validateAndRender");
 
-		// complex 路径：schemaRetrieval -> complexSqlGen -> validator
+		// complex 路径：schemaRetrieval -> complexSqlGen -> validateAndRender
 		graph.addEdge("schemaRetrieval", "complexSqlGen");
-		graph.addEdge("complexSqlGen", "validator");
+		graph.addEdge("complexSqlGen", "validateAndRender");
 
-		// 汇合：validator -> renderer -> END
-		graph.addEdge("validator", "renderer");
-		graph.addEdge("renderer", StateGraph.END);
+		// 条件路由：validateAndRender -> END / 重新生成 SQL / 失败结束（校验未通过时渲染结果已丢弃）
+		graph.addConditionalEdges("validateAndRender", AsyncEdgeAction.edge_async(this::routeAfterValidation),
+				createValidatorEdges());
 
 		log.info("Text2SQL StateGraph 初始化完成");
 		return graph;
 	}
 
 	/**
-	 * 路由分发：根据 queryType 决定走 simple 还是 complex 路径
+	 * 路由分发：根据 queryType 决定走 simple 还是 complex 路径，
+	 * complex 路径上 router 节点已预取到表结构时跳过 schemaRetrieval
 	 */
-	private String routeByQueryType(OverAllState state) {
+	String routeByQueryType(OverAllState state) {
 		Text2SqlState text2SqlState = Text2SqlState.fromMap(state.data());
-		String queryType = text2SqlState.getQueryType();
+		String queryType = text2SqlState.getQueryType() != null ? text2SqlState.getQueryType() : "complex";
+		if ("complex".equals(queryType) && text2SqlState.getSchema() != null && !text2SqlState.getSchema().isEmpty()) {
+			queryType = "complexPrefetched";
+		}
+
+		log.info("[RouterDispatcher] 查询类型: {}, 路由分支: {}", text2SqlState.getQueryType(), queryType);
+
+		return queryType;
+	}
 
-		log.info("[RouterDispatcher] 查询类型: {}, 路由到: {}", queryType,
-				"simple".equals(queryType) ? "simpleSqlGen" : "schemaRetrieval");
+	/**
+	 * 校验后的路由：
+	 * - 通过 → END（脚本已在同一节点内渲染完成）
+	 * - 语法/表/字段错误且未用完重试次数 → 回到对应的 SQL 生成节点（生成节点会带上错误反馈）
+	 * - 其他情况 → END，由 Controller 根据错误信息构建响应
+	 */
+	String routeAfterValidation(OverAllState state) {
+		Text2SqlState text2SqlState = Text2SqlState.fromMap(state.data());
+		if (Boolean.TRUE.equals(text2SqlState.getIsValid())) {
+			return "done";
+		}
+
+		int retryCount = text2SqlState.getRetryCount() != null ? text2SqlState.getRetryCount() : 0;
+		if (retryCount < maxSqlRetries && RETRYABLE_SQL_ERRORS.contains(text2SqlState.getErrorType())) {
+			log.info("[ValidatorDispatcher] SQL 校验失败（{}），重新生成，已重试 {} 次", text2SqlState.getErrorType(),
+					retryCount);
+			return "simple".equals(text2SqlState.getQueryType()) ? "retrySimple" : "retryComplex";
+		}
+
+		log.info("[ValidatorDispatcher] SQL 校验失败（{}），结束执行，已重试 {} 次", text2SqlState.getErrorType(),
+				retryCount);
+		return "fail";
+	}
 
-		return queryType != null ? queryType : "complex";
+	/**
+	 * 校验边映射：校验结论 -> 目标节点名
+	 */
+	private Map<String, String> createValidatorEdges() {
+		Map<String, String> edges = new HashMap<>();
+		edges.put("done", StateGraph.END);
+		edges.put("retrySimple", "simpleSqlGen");
+		edges.put("retryComplex", "complexSqlGen");
+		edges.put("fail", StateGraph.END);
+		return edges;
 	}
 
 	/**
@@ -97,6 +153,7 @@ public class GraphConfig {
 		Map<String, String> edges = new HashMap<>();
 		edges.put("simple", "simpleSqlGen");
 		edges.put("complex", "schemaRetrieval");
+		edges.put("complexPrefetched", "complexSqlGen");
 		return edges;
 	}
 
@@ -0,0 +1,80 @@
+package com.example.demosaia.graph.config;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.AsyncNodeAction;
+import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.graph.state.TraceEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Graph 节点包装：节点执行完成后在执行轨迹中追加一条带耗时的完成事件，
+ * 附带节点输出中的关键字段（分类结果、校验结论、错误类型等），同时记录指标：
+ * - text2sql.graph.node{node, outcome}：节点耗时，outcome 为 success 或本节点记录的错误类型（exception 表示节点抛出异常）
+ * - text2sql.graph.errors{node, type}：各节点通过 recordError 记录的错误次数，node 为记录错误的节点类名
+ */
+@Component
+@RequiredArgsConstructor
+public class NodeTracer {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 完成事件中附带的字段（只取节点本次写入的）
+     */
+    private static final List<String> ATTRIBUTE_KEYS =
+            List.of("queryType", "isValid", "componentType", "retryCount", "errorType");
+
+    public AsyncNodeAction traced(String node, Function<OverAllState, Map<String, Object>> action) {
+        return AsyncNodeAction.node_async(overAllState -> {
+            long startedAt = System.currentTimeMillis();
+            long start = System.nanoTime();
+            Map<String, Object> output;
+            try {
+                output = action.apply(overAllState);
+            } catch (RuntimeException e) {
+                timer(node, "exception").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            long durationMs = elapsedNanos / 1_000_000;
+
+            Object errorType = output.get("errorType");
+            timer(node, errorType != null ? errorType.toString() : "success").record(elapsedNanos, TimeUnit.NANOSECONDS);
+            if (errorType != null) {
+                Counter.builder("text2sql.graph.errors")
+                        .description("Graph 节点记录的错误次数")
+                        .tag("node", String.valueOf(output.get("errorNode"))).tag("type", errorType.toString())
+                        .register(meterRegistry)
+                        .increment();
+            }
+
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (String key : ATTRIBUTE_KEYS) {
+                if (output.get(key) != null) {
+                    attributes.put(key, output.get(key));
+                }
+            }
+
+            Text2SqlState completed = new Text2SqlState();
+            completed.addEvent(new TraceEvent(node, startedAt, durationMs, "节点完成", attributes));
+            return Text2SqlState.merge(output, completed.toMap());
+        });
+    }
+
+    private Timer timer(String node, String outcome) {
+        return Timer.builder("text2sql.graph.node")
+                .description("Graph 节点耗时")
+                .tag("node", node).tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demosaia.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.LlmResponseCacheAdvisor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -21,7 +22,7 @@ public class ComplexSqlGeneratorNode implements Function<OverAllState, Map<Strin
 
     private final ChatClient chatClient;
 
-    private static final String COMPLEX_SQL_PROMPT = """
+    public static final String COMPLEX_SQL_PROMPT = """
             你是 SQL 专家。根据用户问题和表结构生成复杂 SQL。
 
             【数据库信息】
@@ -63,7 +64,16 @@ public class ComplexSqlGeneratorNode implements Function<OverAllState, Map<Strin
         Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
         log.info("[ComplexSqlGeneratorNode] 开始生成复杂 SQL");
-        state.addLog("[ComplexSqlGeneratorNode] 开始生成 SQL");
+        state.addLog("ComplexSqlGeneratorNode", "开始生成 SQL");
+
+        // 校验失败后回到本节点重新生成：把上一次的 SQL 和错误反馈给 LLM
+        String retryFeedback = SqlValidatorNode.retryFeedback(state);
+        if (!retryFeedback.isEmpty()) {
+            int retryCount = state.getRetryCount() != null ? state.getRetryCount() + 1 : 1;
+            state.setRetryCount(retryCount);
+            log.info("[ComplexSqlGeneratorNode] 第 {} 次重新生成，上次错误: {}", retryCount, state.getValidationError());
+            state.addLog("ComplexSqlGeneratorNode", "第 " + retryCount + " 次重新生成");
+        }
 
         try {
             // 获取 schema
@@ -80,20 +90,21 @@ public class ComplexSqlGeneratorNode implements Function<OverAllState, Map<Strin
 
             // 生成 SQL
             String sql = chatClient.prompt()
+                    .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "ComplexSqlGeneratorNode"))
                     .user(userSpec -> userSpec.text(
                             COMPLEX_SQL_PROMPT
                                     .replace("{schema}", finalSchemaStr)
-                                    .replace("{question}", state.getQuestion())
+                                    .replace("{question}", state.getQuestion()) + retryFeedback
                     ))
                     .call()
                     .content()
                     .trim();
 
             // 清理输出
-            sql = cleanSqlOutput(sql);
+            sql = NodeParsing.cleanSqlOutput(sql);
 
             state.setSql(sql);
-            state.addLog("[ComplexSqlGeneratorNode] 生成的 SQL: " + sql);
+            state.addLog("ComplexSqlGeneratorNode", "生成的 SQL: " + sql);
 
             log.info("[ComplexSqlGeneratorNode] SQL 生成完成");
 
@@ -101,7 +112,7 @@ public class ComplexSqlGeneratorNode implements Function<OverAllState, Map<Strin
 
         } catch (Exception e) {
             log.error("[ComplexSqlGeneratorNode] SQL 生成失败", e);
-            state.addLog("[ComplexSqlGeneratorNode] 失败: " + e.getMessage());
+            state.addLog("ComplexSqlGeneratorNode", "失败: " + e.getMessage());
             state.recordError("ComplexSqlGeneratorNode", classifyError(e), e.getMessage(),
                     "复杂 SQL 生成失败，请尝试简化问题描述或稍后重试。", true);
 
@@ -115,11 +126,4 @@ public class ComplexSqlGeneratorNode implements Function<OverAllState, Map<Strin
         if (msg.contains("timeout") || msg.contains("connect")) return "NETWORK_ERROR";
         return "LLM_ERROR";
     }
-
-    private String cleanSqlOutput(String sql) {
-        return sql.replace("```sql", "")
-                .replace("```", "")
-                .replace("SQL:", "")
-                .trim();
-    }
 }
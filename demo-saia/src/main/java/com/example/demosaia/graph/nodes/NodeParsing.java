@@ -0,0 +1,149 @@
+package com.example.demosaia.graph.nodes;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Graph 节点中与模型无关的文本处理
+ * - inferTableNames：SchemaRetrievalNode 按问题关键词推断表名
+ * - cleanSqlOutput：Simple / Complex 生成节点清理模型输出的 SQL
+ * - extractExplanation / extractScriptCode / extractComponentType：RendererNode 解析模型回答
+ */
+@Slf4j
+public final class NodeParsing {
+
+    private static final Pattern COMPONENT_TYPE = Pattern.compile("componentType:\\s*['\"](\\w+)['\"]");
+    private static final Pattern SCRIPT_BLOCK = Pattern.compile("```javascript\\s*([\\s\\S]*?)```");
+    private static final Pattern GENERIC_BLOCK = Pattern.compile("```\\s*([\\s\\S]*?)```");
+
+    private static final String DEFAULT_EXPLANATION = "基于 Graph 编排生成的可视化脚本（LIMIT 200）";
+
+    private NodeParsing() {
+    }
+
+    /**
+     * 根据问题推断需要的表名（支持多表）
+     * 复杂查询通常涉及多张表的 JOIN
+     */
+    public static List<String> inferTableNames(String question) {
+        String q = question.toLowerCase();
+        Set<String> tables = new LinkedHashSet<>();
+
+        // 产品/销售/商品相关 → order_items（注意：没有独立的 products 表）
+        if (q.contains("产品") || q.contains("商品") || q.contains("销售") || q.contains("销量")
+                || q.contains("product") || q.contains("sale")) {
+            tables.add("order_items");
+            tables.add("orders");  // 销售分析通常需要订单信息
+        }
+
+        // 客户相关
+        if (q.contains("客户") || q.contains("customer") || q.contains("用户")) {
+            tables.add("customers");
+        }
+
+        // 订单相关
+        if (q.contains("订单") || q.contains("order") || q.contains("月") || q.contains("趋势")) {
+            tables.add("orders");
+        }
+
+        // 订单明细相关
+        if (q.contains("订单项") || q.contains("订单明细") || q.contains("item")) {
+            tables.add("order_items");
+        }
+
+        // 如果涉及多个维度（如客户+订单），确保关联表都在
+        if (tables.contains("customers") && (q.contains("订单") || q.contains("消费") || q.contains("购买"))) {
+            tables.add("orders");
+        }
+
+        // 默认：如果没匹配到任何关键词，返回所有表
+        if (tables.isEmpty()) {
+            return List.of("customers", "orders", "order_items");
+        }
+
+        return new ArrayList<>(tables);
+    }
+
+    /**
+     * 去掉模型输出中的代码块标记和 "SQL:" 前缀
+     */
+    public static String cleanSqlOutput(String sql) {
+        return sql.replace("```sql", "")
+                .replace("```", "")
+                .replace("SQL:", "")
+                .trim();
+    }
+
+    /**
+     * 从 LLM 响应中提取说明文本（```javascript 之前的部分）
+     */
+    public static String extractExplanation(String llmResponse) {
+        if (llmResponse == null || llmResponse.isEmpty()) {
+            return DEFAULT_EXPLANATION;
+        }
+
+        int codeBlockIndex = llmResponse.indexOf("```javascript");
+        if (codeBlockIndex == -1) {
+            codeBlockIndex = llmResponse.indexOf("```");
+        }
+
+        if (codeBlockIndex > 0) {
+            String explanation = llmResponse.substring(0, codeBlockIndex).trim();
+            if (!explanation.isEmpty()) {
+                log.info("[RendererNode] 提取到说明，长度: {}", explanation.length());
+                return explanation;
+            }
+        }
+
+        return DEFAULT_EXPLANATION;
+    }
+
+    /**
+     * 从 LLM 响应中提取 JavaScript 代码
+     */
+    public static String extractScriptCode(String llmResponse) {
+        // 尝试提取 ```javascript ... ``` 代码块
+        Matcher matcher = SCRIPT_BLOCK.matcher(llmResponse);
+
+        if (matcher.find()) {
+            String code = matcher.group(1).trim();
+            log.info("[RendererNode] 成功提取脚本代码，长度: {}", code.length());
+            return code;
+        }
+
+        // 尝试提取 ``` ... ``` 代码块（没有语言标记）
+        Matcher genericMatcher = GENERIC_BLOCK.matcher(llmResponse);
+
+        if (genericMatcher.find()) {
+            String code = genericMatcher.group(1).trim();
+            if (code.contains("async function")) {
+                log.info("[RendererNode] 从通用代码块中提取脚本，长度: {}", code.length());
+                return code;
+            }
+        }
+
+        // 如果没有代码块但有 async function，返回全部内容
+        if (llmResponse.contains("async function")) {
+            log.warn("[RendererNode] 未找到代码块标记，但发现 async function，返回全部内容");
+            return llmResponse;
+        }
+
+        // 兜底：返回整个响应
+        log.warn("[RendererNode] 未找到 JavaScript 代码块，返回原始响应");
+        return llmResponse;
+    }
+
+    /**
+     * 从脚本中提取组件类型（componentType: 'BarChart'），找不到时返回 null
+     */
+    public static String extractComponentType(String scriptCode) {
+        Matcher matcher = COMPONENT_TYPE.matcher(scriptCode);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
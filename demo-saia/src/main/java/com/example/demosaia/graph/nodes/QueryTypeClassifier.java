@@ -0,0 +1,252 @@
+package com.example.demosaia.graph.nodes;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 本地查询分类器 - RouterNode 的快速路径
+ * 1. 关键词 / 模式规则：命中明显特征时直接给出结果
+ * 2. 朴素贝叶斯模型（可选）：用 LLM 历史分类结果训练（字符 bigram 特征），后验概率足够高时采用
+ * 两者都不确定时返回 null，由 RouterNode 调用 LLM 分类
+ */
+@Slf4j
+@Component
+public class QueryTypeClassifier {
+
+	/**
+	 * 明显需要 GROUP BY / JOIN 的表达（权重 2）
+	 */
+	private static final List<Pattern> STRONG_COMPLEX = List.of(
+			Pattern.compile("每个|每位|每种|每类|各个|各[\\u4e00-\\u9fa5]{1,4}(的|之间)?"),
+			Pattern.compile("按.{1,8}(统计|分组|汇总|划分|计算|排序)"),
+			Pattern.compile("分布|占比|比例|排行|排名|趋势|走势|变化"),
+			Pattern.compile("每月|每年|每天|每周|每季度|月度|年度"),
+			Pattern.compile("group\\s+by|join|top\\s*\\d+"));
+
+	/**
+	 * 倾向聚合但不一定跨表的表达（权重 1）
+	 */
+	private static final List<Pattern> WEAK_COMPLEX = List.of(
+			Pattern.compile("统计|汇总|平均|对比|比较|前\\s*\\d+|最多的|最少的"));
+
+	/**
+	 * 单表列表 / 单值统计的表达（权重 1）
+	 */
+	private static final List<Pattern> SIMPLE = List.of(
+			Pattern.compile("^(列出|显示|查看|查询|展示|给我)"),
+			Pattern.compile("所有|全部|列表|明细"),
+			Pattern.compile("总数|总金额|总额|一共|多少|数量是"),
+			Pattern.compile("id\\s*[=为是]|编号"));
+
+	/**
+	 * 实体词 → 表，同时提到两张及以上的表视为多表查询（权重 2）
+	 */
+	private static final Map<String, Pattern> ENTITIES = Map.of(
+			"customers", Pattern.compile("客户|顾客|用户|customer"),
+			"orders", Pattern.compile("订单|下单|order(?!_item)"),
+			"order_items", Pattern.compile("商品|产品|订单项|销量|product|order_item"));
+
+	@Value("${text2sql.router.model.enabled:true}")
+	private boolean modelEnabled;
+
+	@Value("${text2sql.router.model.min-samples:50}")
+	private int modelMinSamples;
+
+	@Value("${text2sql.router.model.confidence:0.9}")
+	private double modelConfidence;
+
+	/**
+	 * 分类历史文件（每行 "queryType\tquestion"），为空时只在内存中累积
+	 */
+	@Value("${text2sql.router.history-file:}")
+	private String historyFile;
+
+	private final NaiveBayes model = new NaiveBayes();
+
+	/**
+	 * 分类结果及来源（rule / model）
+	 */
+	public record Classification(String queryType, String source) {
+	}
+
+	@PostConstruct
+	void loadHistory() {
+		if (historyFile.isBlank() || !Files.exists(Path.of(historyFile))) {
+			return;
+		}
+		try {
+			for (String line : Files.readAllLines(Path.of(historyFile), StandardCharsets.UTF_8)) {
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					model.train(line.substring(tab + 1), line.substring(0, tab));
+				}
+			}
+			log.info("[QueryTypeClassifier] 从 {} 加载 {} 条分类历史", historyFile, model.samples());
+		}
+		catch (IOException e) {
+			log.warn("[QueryTypeClassifier] 读取分类历史失败: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * 本地分类；不确定时返回 null
+	 */
+	public Classification classify(String question) {
+		if (question == null || question.isBlank()) {
+			return null;
+		}
+		String text = question.trim().toLowerCase(Locale.ROOT);
+
+		int complex = 2 * count(STRONG_COMPLEX, text) + count(WEAK_COMPLEX, text);
+		int simple = count(SIMPLE, text);
+		long entities = ENTITIES.values().stream().filter(p -> p.matcher(text).find()).count();
+		if (entities >= 2) {
+			complex += 2;
+		}
+
+		if (complex >= 2 && complex - simple >= 2) {
+			return new Classification("complex", "rule");
+		}
+		if (complex == 0 && simple >= 1) {
+			return new Classification("simple", "rule");
+		}
+
+		if (modelEnabled && model.samples() >= modelMinSamples) {
+			NaiveBayes.Prediction prediction = model.predict(text);
+			if (prediction != null && prediction.probability() >= modelConfidence) {
+				return new Classification(prediction.label(), "model");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 记录 LLM 给出的分类结果，作为本地模型的训练数据
+	 */
+	public void record(String question, String queryType) {
+		if (question == null || question.isBlank()) {
+			return;
+		}
+		String text = question.trim().toLowerCase(Locale.ROOT);
+		model.train(text, queryType);
+
+		if (!historyFile.isBlank()) {
+			String line = queryType + "\t" + text.replaceAll("\\s+", " ") + "\n";
+			try {
+				Path path = Path.of(historyFile);
+				if (path.getParent() != null) {
+					Files.createDirectories(path.getParent());
+				}
+				Files.writeString(path, line, StandardCharsets.UTF_8,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			}
+			catch (IOException e) {
+				log.warn("[QueryTypeClassifier] 写入分类历史失败: {}", e.getMessage());
+			}
+		}
+	}
+
+	private static int count(List<Pattern> patterns, String text) {
+		int n = 0;
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(text).find()) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * 多项式朴素贝叶斯（字符 bigram，拉普拉斯平滑）
+	 */
+	static class NaiveBayes {
+
+		record Prediction(String label, double probability) {
+		}
+
+		private final Map<String, Integer> docCounts = new HashMap<>();
+
+		private final Map<String, Map<String, Integer>> featureCounts = new HashMap<>();
+
+		private final Map<String, Integer> totalFeatures = new HashMap<>();
+
+		private final Set<String> vocabulary = new HashSet<>();
+
+		private int samples;
+
+		synchronized void train(String text, String label) {
+			docCounts.merge(label, 1, Integer::sum);
+			Map<String, Integer> counts = featureCounts.computeIfAbsent(label, k -> new HashMap<>());
+			for (String feature : features(text)) {
+				counts.merge(feature, 1, Integer::sum);
+				totalFeatures.merge(label, 1, Integer::sum);
+				vocabulary.add(feature);
+			}
+			samples++;
+		}
+
+		synchronized int samples() {
+			return samples;
+		}
+
+		synchronized Prediction predict(String text) {
+			if (docCounts.size() < 2) {
+				return null;
+			}
+			List<String> features = features(text);
+			Map<String, Double> logScores = new HashMap<>();
+			for (Map.Entry<String, Integer> entry : docCounts.entrySet()) {
+				String label = entry.getKey();
+				Map<String, Integer> counts = featureCounts.get(label);
+				double denominator = totalFeatures.getOrDefault(label, 0) + vocabulary.size();
+				double score = Math.log((double) entry.getValue() / samples);
+				for (String feature : features) {
+					score += Math.log((counts.getOrDefault(feature, 0) + 1) / denominator);
+				}
+				logScores.put(label, score);
+			}
+
+			// log-sum-exp 归一化为后验概率
+			double max = logScores.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+			double sum = logScores.values().stream().mapToDouble(s -> Math.exp(s - max)).sum();
+			String best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (Map.Entry<String, Double> entry : logScores.entrySet()) {
+				if (entry.getValue() > bestScore) {
+					best = entry.getKey();
+					bestScore = entry.getValue();
+				}
+			}
+			return new Prediction(best, Math.exp(bestScore - max) / sum);
+		}
+
+		private static List<String> features(String text) {
+			String compact = text.replaceAll("\\s+", "");
+			if (compact.length() < 2) {
+				return List.of(compact);
+			}
+			String[] bigrams = new String[compact.length() - 1];
+			for (int i = 0; i < bigrams.length; i++) {
+				bigrams[i] = compact.substring(i, i + 2);
+			}
+			return List.of(bigrams);
+		}
+
+	}
+
+}
@@ -2,15 +2,20 @@ package com.example.demosaia.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.LlmResponseCacheAdvisor;
+import com.example.demosaia.service.TokenStreamRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Renderer Node - 脚本渲染节点
@@ -22,8 +27,11 @@ import java.util.regex.Pattern;
 public class RendererNode implements Function<OverAllState, Map<String, Object>> {
 
     private final ChatClient chatClient;
+    private final TokenStreamRegistry tokenStreamRegistry;
+    private final ScriptTemplateRenderer scriptTemplateRenderer;
+    private final MeterRegistry meterRegistry;
 
-    private static final String RENDERER_PROMPT = """
+    public static final String RENDERER_PROMPT = """
             你是数据可视化专家。根据用户问题和已生成的 SQL，先生成中文说明，再生成 JavaScript 脚本。
 
             【已生成的 SQL】
@@ -40,6 +48,7 @@ public class RendererNode implements Function<OverAllState, Map<String, Object>>
                - 示例：「查询所有客户的姓名和城市，以表格形式展示，最多显示200条。」
             2. 然后，生成一个 async function generateData(mcpClient) 函数。
             函数必须调用 mcpClient.executeSql(sql) 执行 SQL，然后返回 { componentType, propertyData }。
+            如 SQL 中有 ? 占位符，参数按顺序作为第二个参数传入：mcpClient.executeSql(sql, [参数...])。
 
             【mcpClient.executeSql 返回值说明】
             返回一个增强数组，同时支持：
@@ -172,119 +181,145 @@ public class RendererNode implements Function<OverAllState, Map<String, Object>>
         Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
         log.info("[RendererNode] 开始生成脚本");
-        state.addLog("[RendererNode] 开始生成脚本");
+        state.addLog("RendererNode", "开始生成脚本");
 
         try {
-            String sql = state.getValidatedSql() != null ? state.getValidatedSql() : state.getSql();
-
-            // 调用 LLM 生成脚本
-            String llmResponse = chatClient.prompt()
-                    .user(userSpec -> userSpec.text(
-                            RENDERER_PROMPT
-                                    .replace("{sql}", sql)
-                                    .replace("{question}", state.getQuestion())
-                    ))
-                    .call()
-                    .content();
-
-            // 提取说明文本
-            String explanation = extractExplanation(llmResponse);
+            // 常见的图表形状直接套用模板，不调用 LLM
+            Map<String, Object> templated = renderTemplate(state);
+            if (templated != null) {
+                return templated;
+            }
 
-            // 提取 JavaScript 代码
-            String scriptCode = extractScriptCode(llmResponse);
+            // SSE 请求：流式调用并逐个转发 token（命中 LLM 响应缓存时整段回答作为一个 token 转发）
+            ChatClient.ChatClientRequestSpec request = prompt(state);
+            Consumer<String> tokenSink = tokenStreamRegistry.get(state.getStreamId());
+            String llmResponse;
+            if (tokenSink != null) {
+                List<String> tokens = request.stream()
+                        .content()
+                        .doOnNext(tokenSink)
+                        .collectList()
+                        .block();
+                llmResponse = tokens != null ? String.join("", tokens) : "";
+            } else {
+                llmResponse = request.call().content();
+            }
+            return complete(state, llmResponse);
 
-            state.setScriptCode(scriptCode);
-            state.setExplanation(explanation);
-            state.addLog("[RendererNode] 脚本生成完成");
+        } catch (Exception e) {
+            return failed(state, e);
+        }
+    }
 
-            log.info("[RendererNode] 脚本生成完成");
+    /**
+     * 可取消的渲染：LLM 以流式调用，取消订阅即中止模型请求（与校验并行执行、校验未通过时使用）
+     * 有 streamId 时同样逐个转发 token；出错时与 apply 一样记录错误并返回错误提示脚本
+     */
+    public Mono<Map<String, Object>> renderAsync(OverAllState overAllState) {
+        return Mono.defer(() -> {
+            Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
-            return state.toMap();
+            log.info("[RendererNode] 开始生成脚本（可取消）");
+            state.addLog("RendererNode", "开始生成脚本");
 
-        } catch (Exception e) {
-            log.error("[RendererNode] 脚本生成失败", e);
-            state.addLog("[RendererNode] 失败: " + e.getMessage());
-            state.recordError("RendererNode", classifyError(e), e.getMessage(),
-                    "可视化脚本生成失败，请稍后重试。", true);
+            Map<String, Object> templated = renderTemplate(state);
+            if (templated != null) {
+                return Mono.just(templated);
+            }
 
-            state.setScriptCode(generateErrorScript(e.getMessage()));
-            state.setExplanation("脚本生成失败：" + e.getMessage());
+            Consumer<String> tokenSink = tokenStreamRegistry.get(state.getStreamId());
+            return prompt(state).stream()
+                    .content()
+                    .doOnNext(token -> {
+                        if (tokenSink != null) {
+                            tokenSink.accept(token);
+                        }
+                    })
+                    .collectList()
+                    .map(tokens -> complete(state, String.join("", tokens)))
+                    .doOnCancel(() -> log.info("[RendererNode] 脚本生成已取消"))
+                    .onErrorResume(e -> Mono.just(failed(state, e)));
+        });
+    }
 
-            return state.toMap();
+    /**
+     * 模板渲染；无法套用模板时返回 null
+     */
+    private Map<String, Object> renderTemplate(Text2SqlState state) {
+        ScriptTemplateRenderer.Rendered rendered = scriptTemplateRenderer.render(state);
+        if (rendered == null) {
+            return null;
         }
+        state.setScriptCode(rendered.scriptCode());
+        state.setExplanation(rendered.explanation());
+        state.setComponentType(rendered.componentType());
+        state.addLog("RendererNode", "模板渲染完成: " + rendered.componentType());
+        log.info("[RendererNode] 模板渲染完成: {}", rendered.componentType());
+        meterRegistry.counter("text2sql.renderer.decisions", "source", "template",
+                "type", rendered.componentType()).increment();
+        return state.toMap();
     }
 
-    private String classifyError(Exception e) {
-        String msg = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
-        if (msg.contains("timeout") || msg.contains("connect")) return "NETWORK_ERROR";
-        return "LLM_ERROR";
+    private ChatClient.ChatClientRequestSpec prompt(Text2SqlState state) {
+        String sql = state.getValidatedSql() != null ? state.getValidatedSql() : state.getSql();
+        return chatClient.prompt()
+                .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "RendererNode"))
+                .user(userSpec -> userSpec.text(
+                        RENDERER_PROMPT
+                                .replace("{sql}", sql)
+                                .replace("{question}", state.getQuestion())
+                ));
     }
 
     /**
-     * 从 LLM 响应中提取说明文本（```javascript 之前的部分）
+     * 从 LLM 回答中提取说明、脚本和组件类型
      */
-    private String extractExplanation(String llmResponse) {
-        if (llmResponse == null || llmResponse.isEmpty()) {
-            return "基于 Graph 编排生成的可视化脚本（LIMIT 200）";
-        }
+    private Map<String, Object> complete(Text2SqlState state, String llmResponse) {
+        // 提取说明文本
+        String explanation = NodeParsing.extractExplanation(llmResponse);
 
-        int codeBlockIndex = llmResponse.indexOf("```javascript");
-        if (codeBlockIndex == -1) {
-            codeBlockIndex = llmResponse.indexOf("```");
-        }
+        // 提取 JavaScript 代码
+        String scriptCode = NodeParsing.extractScriptCode(llmResponse);
 
-        if (codeBlockIndex > 0) {
-            String explanation = llmResponse.substring(0, codeBlockIndex).trim();
-            if (!explanation.isEmpty()) {
-                log.info("[RendererNode] 提取到说明，长度: {}", explanation.length());
-                return explanation;
-            }
-        }
+        String componentType = NodeParsing.extractComponentType(scriptCode);
+
+        state.setScriptCode(scriptCode);
+        state.setExplanation(explanation);
+        state.setComponentType(componentType);
+        state.addLog("RendererNode", "脚本生成完成");
+        meterRegistry.counter("text2sql.renderer.decisions", "source", "llm",
+                "type", componentType != null ? componentType : "unknown").increment();
 
-        return "基于 Graph 编排生成的可视化脚本（LIMIT 200）";
+        log.info("[RendererNode] 脚本生成完成");
+
+        return state.toMap();
     }
 
     /**
-     * 从 LLM 响应中提取 JavaScript 代码
+     * 记录渲染失败并返回错误提示脚本
      */
-    private String extractScriptCode(String llmResponse) {
-        // 尝试提取 ```javascript ... ``` 代码块
-        Pattern pattern = Pattern.compile("```javascript\\s*([\\s\\S]*?)```");
-        Matcher matcher = pattern.matcher(llmResponse);
-
-        if (matcher.find()) {
-            String code = matcher.group(1).trim();
-            log.info("[RendererNode] 成功提取脚本代码，长度: {}", code.length());
-            return code;
-        }
+    static Map<String, Object> failed(Text2SqlState state, Throwable e) {
+        log.error("[RendererNode] 脚本生成失败", e);
+        state.addLog("RendererNode", "失败: " + e.getMessage());
+        state.recordError("RendererNode", classifyError(e), e.getMessage(),
+                "可视化脚本生成失败，请稍后重试。", true);
 
-        // 尝试提取 ``` ... ``` 代码块（没有语言标记）
-        Pattern genericPattern = Pattern.compile("```\\s*([\\s\\S]*?)```");
-        Matcher genericMatcher = genericPattern.matcher(llmResponse);
+        state.setScriptCode(generateErrorScript(e.getMessage()));
+        state.setExplanation("脚本生成失败：" + e.getMessage());
 
-        if (genericMatcher.find()) {
-            String code = genericMatcher.group(1).trim();
-            if (code.contains("async function")) {
-                log.info("[RendererNode] 从通用代码块中提取脚本，长度: {}", code.length());
-                return code;
-            }
-        }
-
-        // 如果没有代码块但有 async function，返回全部内容
-        if (llmResponse.contains("async function")) {
-            log.warn("[RendererNode] 未找到代码块标记，但发现 async function，返回全部内容");
-            return llmResponse;
-        }
+        return state.toMap();
+    }
 
-        // 兜底：返回整个响应
-        log.warn("[RendererNode] 未找到 JavaScript 代码块，返回原始响应");
-        return llmResponse;
+    private static String classifyError(Throwable e) {
+        String msg = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
+        if (e instanceof TimeoutException || msg.contains("timeout") || msg.contains("connect")) return "NETWORK_ERROR";
+        return "LLM_ERROR";
     }
 
     /**
      * 生成错误提示脚本
      */
-    private String generateErrorScript(String errorMessage) {
+    private static String generateErrorScript(String errorMessage) {
         return """
                 async function generateData(mcpClient) {
                     return {
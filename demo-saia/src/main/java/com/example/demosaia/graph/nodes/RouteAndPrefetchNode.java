@@ -0,0 +1,77 @@
+package com.example.demosaia.graph.nodes;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.example.demosaia.graph.state.Text2SqlState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Route & Prefetch Node - 路由与表结构预取节点
+ * 表结构只依赖问题本身，不依赖分类结论，因此在 RouterNode 分类的同时预取：
+ * - 预取通过 WebClient 非阻塞发起，不占用额外线程，分类在当前线程执行
+ * - 分类为 complex 且预取成功时，表结构直接写入状态，Graph 跳过 schemaRetrieval 节点
+ * - 分类为 simple 时不等待预取结果，响应只进入 McpToolService 的表结构缓存
+ * - 预取失败时由 schemaRetrieval 节点照常获取（并记录错误信息）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RouteAndPrefetchNode implements Function<OverAllState, Map<String, Object>> {
+
+    private final RouterNode routerNode;
+    private final SchemaRetrievalNode schemaRetrievalNode;
+
+    @Value("${text2sql.graph.schema-prefetch:true}")
+    private boolean schemaPrefetch = true;
+
+    @Value("${mcp.client.timeout:30s}")
+    private Duration timeout = Duration.ofSeconds(30);
+
+    @Override
+    public Map<String, Object> apply(OverAllState overAllState) {
+        if (!schemaPrefetch) {
+            return routerNode.apply(overAllState);
+        }
+
+        String question = Text2SqlState.fromMap(overAllState.data()).getQuestion();
+        CompletableFuture<Map<String, Object>> prefetch = schemaRetrievalNode.prefetch(question);
+
+        Map<String, Object> routed = routerNode.apply(overAllState);
+        if (!"complex".equals(routed.get("queryType"))) {
+            log.info("[RouteAndPrefetchNode] simple 路径，不使用预取的表结构");
+            return routed;
+        }
+
+        Text2SqlState state = new Text2SqlState();
+        Map<String, Object> schema = awaitPrefetch(prefetch);
+        if (schema == null) {
+            state.addLog("RouteAndPrefetchNode", "表结构预取失败，交由 SchemaRetrievalNode 获取");
+            return Text2SqlState.merge(routed, state.toMap());
+        }
+
+        state.setSchema(schema);
+        state.addLog("RouteAndPrefetchNode", "使用预取的表结构: " + schema.get("tableName"));
+        log.info("[RouteAndPrefetchNode] complex 路径，使用预取的表结构: {}", schema.get("tableName"));
+        return Text2SqlState.merge(routed, state.toMap());
+    }
+
+    private Map<String, Object> awaitPrefetch(CompletableFuture<Map<String, Object>> prefetch) {
+        try {
+            return prefetch.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("[RouteAndPrefetchNode] 表结构预取失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
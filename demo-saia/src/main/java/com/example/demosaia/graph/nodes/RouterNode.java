@@ -2,6 +2,8 @@ package com.example.demosaia.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.LlmResponseCacheAdvisor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -16,6 +18,9 @@ import java.util.function.Function;
  *
  * simple：简单查询（列表查询、单表统计）
  * complex：复杂查询（多表关联、聚合统计、需要表结构信息）
+ *
+ * 先用本地分类器（规则 + 历史训练的模型）判断，不确定时才调用 LLM；
+ * 各来源的分类次数记录在 text2sql.router.decisions 指标中（source=rule/model/llm/fallback）
  */
 @Slf4j
 @Component
@@ -24,7 +29,11 @@ public class RouterNode implements Function<OverAllState, Map<String, Object>> {
 
 	private final ChatClient chatClient;
 
-	private static final String ROUTER_PROMPT = """
+	private final QueryTypeClassifier queryTypeClassifier;
+
+	private final MeterRegistry meterRegistry;
+
+	public static final String ROUTER_PROMPT = """
 			你是一个查询分类专家。分析用户问题，判断查询类型。
 
 			【分类规则】
@@ -51,10 +60,21 @@ public class RouterNode implements Function<OverAllState, Map<String, Object>> {
 		Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
 		log.info("[RouterNode] 开始分析问题: {}", state.getQuestion());
-		state.addLog("[RouterNode] 开始问题分类");
+		state.addLog("RouterNode", "开始问题分类");
+
+		QueryTypeClassifier.Classification local = queryTypeClassifier.classify(state.getQuestion());
+		if (local != null) {
+			state.setQueryType(local.queryType());
+			state.addLog("RouterNode", "分类结果: " + local.queryType() + "（本地 " + local.source() + "）");
+			countDecision(local.source(), local.queryType());
+
+			log.info("[RouterNode] 本地分类完成: {} ({})", local.queryType(), local.source());
+			return state.toMap();
+		}
 
 		try {
 			String queryType = chatClient.prompt()
+				.advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "RouterNode"))
 				.user(userSpec -> userSpec.text(ROUTER_PROMPT.replace("{question}", state.getQuestion())))
 				.call()
 				.content()
@@ -64,10 +84,16 @@ public class RouterNode implements Function<OverAllState, Map<String, Object>> {
 			if (!queryType.equals("simple") && !queryType.equals("complex")) {
 				log.warn("[RouterNode] LLM 返回了无效的查询类型: {}, 默认为 complex", queryType);
 				queryType = "complex";
+				countDecision("fallback", queryType);
+			}
+			else {
+				// LLM 的分类结果作为本地模型的训练样本
+				queryTypeClassifier.record(state.getQuestion(), queryType);
+				countDecision("llm", queryType);
 			}
 
 			state.setQueryType(queryType);
-			state.addLog("[RouterNode] 分类结果: " + queryType);
+			state.addLog("RouterNode", "分类结果: " + queryType);
 
 			log.info("[RouterNode] 分类完成: {}", queryType);
 
@@ -76,15 +102,20 @@ public class RouterNode implements Function<OverAllState, Map<String, Object>> {
 		}
 		catch (Exception e) {
 			log.error("[RouterNode] 分类失败", e);
-			state.addLog("[RouterNode] 分类失败: " + e.getMessage());
+			state.addLog("RouterNode", "分类失败: " + e.getMessage());
 			state.recordError("RouterNode", classifyError(e), e.getMessage(),
 					"路由分类失败，已默认使用复杂查询路径。如问题持续，请稍后重试。", true);
 
 			state.setQueryType("complex");
+			countDecision("fallback", "complex");
 			return state.toMap();
 		}
 	}
 
+	private void countDecision(String source, String queryType) {
+		meterRegistry.counter("text2sql.router.decisions", "source", source, "type", queryType).increment();
+	}
+
 	private String classifyError(Exception e) {
 		String msg = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
 		if (msg.contains("timeout") || msg.contains("connect")) return "NETWORK_ERROR";
@@ -8,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -26,28 +27,21 @@ public class SchemaRetrievalNode implements Function<OverAllState, Map<String, O
         Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
         log.info("[SchemaRetrievalNode] 开始获取表结构");
-        state.addLog("[SchemaRetrievalNode] 开始获取表结构");
+        state.addLog("SchemaRetrievalNode", "开始获取表结构");
 
         try {
             // 根据问题推断需要的表（可能多张）
-            List<String> tableNames = inferTableNames(state.getQuestion());
+            List<String> tableNames = NodeParsing.inferTableNames(state.getQuestion());
 
             log.info("[SchemaRetrievalNode] 推断需要的表: {}", tableNames);
-            state.addLog("[SchemaRetrievalNode] 推断表名: " + tableNames);
+            state.addLog("SchemaRetrievalNode", "推断表名: " + tableNames);
 
-            // 获取所有需要的表结构
-            StringBuilder allSchemaText = new StringBuilder();
-            for (String tableName : tableNames) {
-                String schemaText = mcpToolService.getSchema(tableName);
-                allSchemaText.append(schemaText).append("\n");
-            }
+            // 一次请求获取所有需要的表结构
+            String allSchemaText = mcpToolService.getSchemas(tableNames);
 
             // 存入 schema Map，供 ComplexSqlGeneratorNode 使用
-            state.setSchema(Map.of(
-                    "tableName", String.join(", ", tableNames),
-                    "schemaText", allSchemaText.toString()
-            ));
-            state.addLog("[SchemaRetrievalNode] 成功获取表结构");
+            state.setSchema(toSchema(tableNames, allSchemaText));
+            state.addLog("SchemaRetrievalNode", "成功获取表结构");
 
             log.info("[SchemaRetrievalNode] 表结构获取完成");
 
@@ -55,7 +49,7 @@ public class SchemaRetrievalNode implements Function<OverAllState, Map<String, O
 
         } catch (Exception e) {
             log.error("[SchemaRetrievalNode] 获取表结构失败", e);
-            state.addLog("[SchemaRetrievalNode] 失败: " + e.getMessage());
+            state.addLog("SchemaRetrievalNode", "失败: " + e.getMessage());
             state.recordError("SchemaRetrievalNode", "NETWORK_ERROR", e.getMessage(),
                     "获取表结构失败，MCP Server 可能不可用，请稍后重试。", true);
 
@@ -65,45 +59,23 @@ public class SchemaRetrievalNode implements Function<OverAllState, Map<String, O
     }
 
     /**
-     * 根据问题推断需要的表名（支持多表）
-     * 复杂查询通常涉及多张表的 JOIN
+     * 预取表结构（不阻塞线程），与 RouterNode 的分类并行发起，complex 路径直接使用结果
+     * 获取失败时以 null 完成，由本节点在 complex 路径上重新获取；
+     * simple 路径不使用结果，但响应仍会进入 McpToolService 的表结构缓存
      */
-    private List<String> inferTableNames(String question) {
-        String q = question.toLowerCase();
-        Set<String> tables = new LinkedHashSet<>();
-
-        // 产品/销售/商品相关 → order_items（注意：没有独立的 products 表）
-        if (q.contains("产品") || q.contains("商品") || q.contains("销售") || q.contains("销量")
-                || q.contains("product") || q.contains("sale")) {
-            tables.add("order_items");
-            tables.add("orders");  // 销售分析通常需要订单信息
-        }
-
-        // 客户相关
-        if (q.contains("客户") || q.contains("customer") || q.contains("用户")) {
-            tables.add("customers");
-        }
-
-        // 订单相关
-        if (q.contains("订单") || q.contains("order") || q.contains("月") || q.contains("趋势")) {
-            tables.add("orders");
-        }
-
-        // 订单明细相关
-        if (q.contains("订单项") || q.contains("订单明细") || q.contains("item")) {
-            tables.add("order_items");
-        }
-
-        // 如果涉及多个维度（如客户+订单），确保关联表都在
-        if (tables.contains("customers") && (q.contains("订单") || q.contains("消费") || q.contains("购买"))) {
-            tables.add("orders");
-        }
-
-        // 默认：如果没匹配到任何关键词，返回所有表
-        if (tables.isEmpty()) {
-            return List.of("customers", "orders", "order_items");
-        }
+    public CompletableFuture<Map<String, Object>> prefetch(String question) {
+        List<String> tableNames = NodeParsing.inferTableNames(question);
+        log.info("[SchemaRetrievalNode] 预取表结构: {}", tableNames);
+        return mcpToolService.getSchemasAsync(tableNames)
+                .filter(text -> !text.startsWith("获取表结构失败"))
+                .map(text -> toSchema(tableNames, text))
+                .toFuture();
+    }
 
-        return new ArrayList<>(tables);
+    private Map<String, Object> toSchema(List<String> tableNames, String schemaText) {
+        return Map.of(
+                "tableName", String.join(", ", tableNames),
+                "schemaText", schemaText
+        );
     }
 }
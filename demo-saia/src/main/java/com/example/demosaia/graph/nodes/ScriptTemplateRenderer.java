@@ -0,0 +1,298 @@
+package com.example.demosaia.graph.nodes;
+
+import com.example.demosaia.graph.state.Text2SqlState;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 可视化脚本模板渲染器
+ * 五种组件的脚本结构固定，差别只在 SQL 和列名，常见查询不需要 LLM：
+ * - 无 GROUP BY、只有一个聚合列 → DataPoint
+ * - GROUP BY 且维度是日期/月份等时间列 → LineChart
+ * - GROUP BY 一个维度 + 一个度量：问题强调占比/分布 → PieChart，否则 → BarChart
+ * - 其余明细或多列聚合 → Table
+ * 组件类型由 SQL 结构和校验时拿到的结果元数据（列名、列类型）决定；
+ * UNION、CTE、带占位符、列数对不上等不常见的情况返回 null，由 LLM 生成
+ */
+@Component
+public class ScriptTemplateRenderer {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Pattern SELECT = Pattern.compile("(?i)^\\s*SELECT\\s+(DISTINCT\\s+)?");
+    private static final Pattern FROM = Pattern.compile("(?i)\\bFROM\\b");
+    private static final Pattern GROUP_BY = Pattern.compile("(?i)\\bGROUP\\s+BY\\b");
+    private static final Pattern UNSUPPORTED = Pattern.compile("(?i)\\b(UNION|INTERSECT|EXCEPT|MINUS)\\b");
+    private static final Pattern AGGREGATE = Pattern.compile("(?i)\\b(COUNT|SUM|AVG|MIN|MAX)\\s*\\(");
+    private static final Pattern TIME_EXPRESSION = Pattern.compile(
+            "(?i)\\b(YEAR|MONTH|DAY|WEEK|QUARTER|DATE|FORMATDATETIME|TRUNC|DATE_TRUNC|TO_CHAR)\\s*\\(");
+    private static final Pattern TIME_COLUMN = Pattern.compile("(?i).*(DATE|MONTH|YEAR|DAY|WEEK|QUARTER|TIME).*");
+    private static final Pattern TIME_TYPE = Pattern.compile("(?i)DATE|TIME");
+    private static final Pattern NUMERIC_TYPE = Pattern.compile("(?i)INT|NUMERIC|DECIMAL|DOUBLE|REAL|FLOAT");
+    private static final Pattern SHARE_WORDS = Pattern.compile("占比|比例|分布|构成|份额|百分比");
+
+    private static final String TABLE_TEMPLATE = """
+            async function generateData(mcpClient) {
+                const sql = %s;
+                const result = await mcpClient.executeSql(sql);
+                const rows = result.rows.map((row, index) => ({ key: index + 1, ...row }));
+                return {
+                    componentType: 'Table',
+                    propertyData: {
+                        rows: rows
+                    }
+                };
+            }""";
+
+    private static final String DATA_POINT_TEMPLATE = """
+            async function generateData(mcpClient) {
+                const sql = %s;
+                const result = await mcpClient.executeSql(sql);
+                const row = result.rows[0] || {};
+                const value = row[%s] ?? 0;
+                return {
+                    componentType: 'DataPoint',
+                    propertyData: { value: value, label: %s }
+                };
+            }""";
+
+    private static final String CHART_TEMPLATE = """
+            async function generateData(mcpClient) {
+                const sql = %s;
+                const result = await mcpClient.executeSql(sql);
+                const nameColumns = %s;
+                const chartData = result.rows.map(row => ({
+                    name: nameColumns.map(column => row[column] ?? '未知').join('-'),
+                    value: Number(row[%s] ?? 0)
+                }));
+                return {
+                    componentType: '%s',
+                    propertyData: chartData
+                };
+            }""";
+
+    @Value("${text2sql.renderer.template.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * 渲染结果
+     */
+    public record Rendered(String componentType, String scriptCode, String explanation) {
+    }
+
+    /**
+     * 只看 SQL 结构判断能否套用模板（还没有结果元数据时使用，例如与校验并行执行之前）
+     * 与 render 共用 templated 的判断：返回 true 时，只要校验拿到的列数与 select 列表一致，render 就不会返回 null
+     */
+    public boolean supports(String sql) {
+        if (!enabled || sql == null || sql.indexOf('?') >= 0) {
+            return false;
+        }
+        String cleanSql = sql.trim().replaceAll(";\\s*$", "");
+        String shape = topLevel(cleanSql);
+        List<String> items = selectItems(cleanSql, shape);
+        return items != null && templated(items, GROUP_BY.matcher(shape).find());
+    }
+
+    /**
+     * 尝试用模板生成脚本，无法确定组件类型时返回 null
+     */
+    public Rendered render(Text2SqlState state) {
+        if (!enabled || !Boolean.TRUE.equals(state.getIsValid())) {
+            return null;
+        }
+        String sql = state.getValidatedSql() != null ? state.getValidatedSql() : state.getSql();
+        List<String> columns = state.getResultColumns();
+        if (sql == null || columns == null || columns.isEmpty() || sql.indexOf('?') >= 0) {
+            return null;
+        }
+
+        String cleanSql = sql.trim().replaceAll(";\\s*$", "");
+        String shape = topLevel(cleanSql);
+        List<String> items = selectItems(cleanSql, shape);
+        boolean grouped = GROUP_BY.matcher(shape).find();
+        if (items == null || !templated(items, grouped)) {
+            return null;
+        }
+        String question = state.getQuestion() != null ? state.getQuestion() : "";
+
+        // SELECT *：明细列表
+        if (items.stream().anyMatch(ScriptTemplateRenderer::isStar)) {
+            return table(cleanSql, question);
+        }
+        if (items.size() != columns.size()) {
+            return null;
+        }
+
+        List<Integer> measures = new ArrayList<>();
+        List<Integer> dimensions = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            (AGGREGATE.matcher(items.get(i)).find() ? measures : dimensions).add(i);
+        }
+
+        if (!grouped) {
+            if (dimensions.isEmpty() && measures.size() == 1) {
+                return new Rendered("DataPoint",
+                        DATA_POINT_TEMPLATE.formatted(js(cleanSql), js(columns.get(0)), js(label(question))),
+                        "统计「" + label(question) + "」，以数值卡片展示结果。");
+            }
+            return table(cleanSql, question);
+        }
+
+        if (measures.size() != 1 || dimensions.isEmpty() || !isNumeric(state.getResultColumnTypes(), measures.get(0))) {
+            return table(cleanSql, question);
+        }
+
+        List<String> nameColumns = dimensions.stream().map(columns::get).toList();
+        String valueColumn = columns.get(measures.get(0));
+        boolean timeSeries = dimensions.stream()
+                .allMatch(i -> isTimeDimension(items.get(i), columns.get(i), state.getResultColumnTypes(), i));
+
+        String componentType;
+        String explanation;
+        if (timeSeries) {
+            componentType = "LineChart";
+            explanation = "按时间统计「" + label(question) + "」，以折线图展示变化趋势。";
+        } else if (dimensions.size() > 1) {
+            return table(cleanSql, question);
+        } else if (SHARE_WORDS.matcher(question).find()) {
+            componentType = "PieChart";
+            explanation = "按类别统计「" + label(question) + "」，以饼图展示各部分占比。";
+        } else {
+            componentType = "BarChart";
+            explanation = "按类别统计「" + label(question) + "」，以柱状图对比各项数值。";
+        }
+        return new Rendered(componentType,
+                CHART_TEMPLATE.formatted(js(cleanSql), js(nameColumns), js(valueColumn), componentType),
+                explanation);
+    }
+
+    /**
+     * 顶层 select 列表；不是单个 SELECT（UNION、CTE 等）时返回 null
+     */
+    private List<String> selectItems(String cleanSql, String shape) {
+        Matcher select = SELECT.matcher(shape);
+        Matcher from = FROM.matcher(shape);
+        if (!select.find() || UNSUPPORTED.matcher(shape).find()) {
+            return null;
+        }
+        int selectEnd = from.find(select.end()) ? from.start() : shape.length();
+        return splitTopLevel(cleanSql.substring(select.end(), selectEnd), shape.substring(select.end(), selectEnd));
+    }
+
+    /**
+     * 只由 SQL 结构决定、不依赖结果元数据的模板适用条件：
+     * - 分组查询中的 SELECT * 列不确定
+     * - 无 GROUP BY 时，多个聚合值放在一行里（或窗口聚合与普通列混用），展示方式不固定
+     */
+    private boolean templated(List<String> items, boolean grouped) {
+        if (items.stream().anyMatch(ScriptTemplateRenderer::isStar)) {
+            return !grouped;
+        }
+        if (grouped) {
+            return true;
+        }
+        long measures = items.stream().filter(item -> AGGREGATE.matcher(item).find()).count();
+        return measures == 0 || (measures == 1 && items.size() == 1);
+    }
+
+    private static boolean isStar(String item) {
+        return item.trim().endsWith("*");
+    }
+
+    private Rendered table(String sql, String question) {
+        return new Rendered("Table", TABLE_TEMPLATE.formatted(js(sql)),
+                "查询「" + label(question) + "」的相关数据，以表格形式展示。");
+    }
+
+    private boolean isTimeDimension(String item, String column, List<String> columnTypes, int index) {
+        if (TIME_EXPRESSION.matcher(item).find() || TIME_COLUMN.matcher(column).matches()) {
+            return true;
+        }
+        String type = typeOf(columnTypes, index);
+        return type != null && TIME_TYPE.matcher(type).find();
+    }
+
+    /**
+     * 度量列是否为数值；类型未知时按聚合函数的语义视为数值
+     */
+    private boolean isNumeric(List<String> columnTypes, int index) {
+        String type = typeOf(columnTypes, index);
+        return type == null || NUMERIC_TYPE.matcher(type).find();
+    }
+
+    private String typeOf(List<String> columnTypes, int index) {
+        return columnTypes != null && index < columnTypes.size() ? columnTypes.get(index) : null;
+    }
+
+    private String label(String question) {
+        String label = question.trim().replaceAll("[?？。!！]+$", "");
+        return label.length() > 30 ? label.substring(0, 30) + "…" : label;
+    }
+
+    /**
+     * 转成 JavaScript 字面量（JSON 字符串/数组即合法的 JS 字面量）
+     */
+    private String js(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value)
+                    .replace("\u2028", "\\u2028")
+                    .replace("\u2029", "\\u2029");
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化脚本参数: " + value, e);
+        }
+    }
+
+    /**
+     * 把字符串常量和括号内的内容替换为空格（长度不变），只保留顶层结构用于匹配关键字
+     */
+    static String topLevel(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                sb.append(' ');
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                sb.append(' ');
+            } else if (c == '(') {
+                depth++;
+                sb.append(depth == 1 ? '(' : ' ');
+            } else if (c == ')') {
+                sb.append(depth == 1 ? ')' : ' ');
+                depth = Math.max(0, depth - 1);
+            } else {
+                sb.append(depth > 0 ? ' ' : c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按顶层逗号切分 select 列表（shape 为 topLevel 处理后的同一段文本）
+     */
+    private List<String> splitTopLevel(String text, String shape) {
+        List<String> items = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < shape.length(); i++) {
+            if (shape.charAt(i) == ',') {
+                items.add(text.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        items.add(text.substring(start).trim());
+        return items;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demosaia.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.LlmResponseCacheAdvisor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -21,7 +22,7 @@ public class SimpleSqlGeneratorNode implements Function<OverAllState, Map<String
 
     private final ChatClient chatClient;
 
-    private static final String SIMPLE_SQL_PROMPT = """
+    public static final String SIMPLE_SQL_PROMPT = """
             你是 SQL 专家。根据用户问题生成 SQL 语句。
 
             【数据库信息】
@@ -61,24 +62,34 @@ public class SimpleSqlGeneratorNode implements Function<OverAllState, Map<String
         Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
         log.info("[SimpleSqlGeneratorNode] 开始生成简单 SQL");
-        state.addLog("[SimpleSqlGeneratorNode] 开始生成 SQL");
+        state.addLog("SimpleSqlGeneratorNode", "开始生成 SQL");
+
+        // 校验失败后回到本节点重新生成：把上一次的 SQL 和错误反馈给 LLM
+        String retryFeedback = SqlValidatorNode.retryFeedback(state);
+        if (!retryFeedback.isEmpty()) {
+            int retryCount = state.getRetryCount() != null ? state.getRetryCount() + 1 : 1;
+            state.setRetryCount(retryCount);
+            log.info("[SimpleSqlGeneratorNode] 第 {} 次重新生成，上次错误: {}", retryCount, state.getValidationError());
+            state.addLog("SimpleSqlGeneratorNode", "第 " + retryCount + " 次重新生成");
+        }
 
         try {
             // 生成 SQL
             String sql = chatClient.prompt()
+                    .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "SimpleSqlGeneratorNode"))
                     .user(userSpec -> userSpec.text(
                             SIMPLE_SQL_PROMPT
-                                    .replace("{question}", state.getQuestion())
+                                    .replace("{question}", state.getQuestion()) + retryFeedback
                     ))
                     .call()
                     .content()
                     .trim();
 
             // 清理可能的代码块标记
-            sql = cleanSqlOutput(sql);
+            sql = NodeParsing.cleanSqlOutput(sql);
 
             state.setSql(sql);
-            state.addLog("[SimpleSqlGeneratorNode] 生成的 SQL: " + sql);
+            state.addLog("SimpleSqlGeneratorNode", "生成的 SQL: " + sql);
 
             log.info("[SimpleSqlGeneratorNode] SQL 生成完成: {}", sql);
 
@@ -86,7 +97,7 @@ public class SimpleSqlGeneratorNode implements Function<OverAllState, Map<String
 
         } catch (Exception e) {
             log.error("[SimpleSqlGeneratorNode] SQL 生成失败", e);
-            state.addLog("[SimpleSqlGeneratorNode] 失败: " + e.getMessage());
+            state.addLog("SimpleSqlGeneratorNode", "失败: " + e.getMessage());
             state.recordError("SimpleSqlGeneratorNode", classifyError(e), e.getMessage(),
                     "SQL 生成失败，请尝试重新表述问题或稍后重试。", true);
 
@@ -100,11 +111,4 @@ public class SimpleSqlGeneratorNode implements Function<OverAllState, Map<String
         if (msg.contains("timeout") || msg.contains("connect")) return "NETWORK_ERROR";
         return "LLM_ERROR";
     }
-
-    private String cleanSqlOutput(String sql) {
-        return sql.replace("```sql", "")
-                .replace("```", "")
-                .replace("SQL:", "")
-                .trim();
-    }
 }
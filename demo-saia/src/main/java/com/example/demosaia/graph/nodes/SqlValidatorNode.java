@@ -12,7 +12,7 @@ import java.util.function.Function;
 
 /**
  * SQL Validator Node - SQL 验证节点
- * 职责：验证 SQL 语法正确性
+ * 职责：验证 SQL 语法正确性（由数据库解析，不执行查询）
  */
 @Slf4j
 @Component
@@ -26,7 +26,7 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
         Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
 
         log.info("[SqlValidatorNode] 开始验证 SQL");
-        state.addLog("[SqlValidatorNode] 开始验证 SQL");
+        state.addLog("SqlValidatorNode", "开始验证 SQL");
 
         String sql = state.getSql();
 
@@ -35,23 +35,27 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
             state.setValidatedSql(sql);
             state.setIsValid(false);
             state.setValidationError("SQL 为空");
+            state.recordError("SqlValidatorNode", "SQL_SYNTAX", "SQL 为空",
+                    "未能生成 SQL，请尝试重新表述问题。", false);
             return state.toMap();
         }
 
         try {
-            // 简单验证：尝试执行 LIMIT 1 测试
-            String testSql = addLimitIfNeeded(sql);
-            String result = mcpToolService.runSql(testSql);
+            // 由 MCP Server 解析并绑定表、列（sql.check），不执行查询，耗时与数据量无关
+            McpToolService.SqlCheckResult checkResult = mcpToolService.checkSql(sql);
 
-            // mcpToolService.runSql() 内部捕获了异常并返回错误字符串，需要检查返回值
-            if (result != null && (result.startsWith("SQL 执行失败") || result.contains("错误"))) {
-                log.warn("[SqlValidatorNode] SQL 验证失败（执行返回错误）: {}", result);
-                state.addLog("[SqlValidatorNode] 验证失败: " + result);
+            if (checkResult == null || !checkResult.valid()) {
+                String result = checkResult != null ? checkResult.error() : "SQL 检查失败: 无响应";
+                String errorType = checkResult != null && checkResult.errorType() != null
+                        && !"NOT_READ_ONLY".equals(checkResult.errorType())
+                        ? checkResult.errorType() : classifySqlError(result);
+                log.warn("[SqlValidatorNode] SQL 验证失败: {}", result);
+                state.addLog("SqlValidatorNode", "验证失败: " + result);
 
                 state.setValidatedSql(sql);
                 state.setIsValid(false);
                 state.setValidationError(result);
-                state.recordError("SqlValidatorNode", classifySqlError(result), result,
+                state.recordError("SqlValidatorNode", errorType, result,
                         suggestForSqlError(result), false);
 
                 return state.toMap();
@@ -59,7 +63,14 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
 
             state.setValidatedSql(sql);
             state.setIsValid(true);
-            state.addLog("[SqlValidatorNode] SQL 验证通过");
+            state.setValidationError(null);
+            if ("SqlValidatorNode".equals(state.getErrorNode())) {
+                state.clearError();
+            }
+            // 顺带记录结果列元数据，RendererNode 据此判断能否直接套用脚本模板
+            state.setResultColumns(checkResult.columns());
+            state.setResultColumnTypes(checkResult.columnTypes());
+            state.addLog("SqlValidatorNode", "SQL 验证通过");
 
             log.info("[SqlValidatorNode] SQL 验证通过");
 
@@ -67,7 +78,7 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
 
         } catch (Exception e) {
             log.warn("[SqlValidatorNode] SQL 验证失败: {}", e.getMessage());
-            state.addLog("[SqlValidatorNode] 验证失败: " + e.getMessage());
+            state.addLog("SqlValidatorNode", "验证失败: " + e.getMessage());
 
             // 验证失败，但仍然继续（由 Renderer 处理错误）
             state.setValidatedSql(sql);
@@ -80,6 +91,26 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
         }
     }
 
+    /**
+     * 重新生成 SQL 时附加到生成节点 prompt 末尾的反馈：上一次的 SQL 和数据库返回的错误
+     * 首次生成（没有校验错误）时返回空字符串
+     */
+    public static String retryFeedback(Text2SqlState state) {
+        if (state.getValidationError() == null) {
+            return "";
+        }
+        return """
+
+                【上一次生成的 SQL】
+                %s
+
+                【数据库返回的错误】
+                %s
+
+                上一次的 SQL 未通过校验，请根据错误修正后重新生成（同样只输出 SQL）。
+                """.formatted(state.getSql(), state.getValidationError());
+    }
+
     private String classifySqlError(String error) {
         if (error == null) return "UNKNOWN";
         String lower = error.toLowerCase();
@@ -101,18 +132,8 @@ public class SqlValidatorNode implements Function<OverAllState, Map<String, Obje
             return "查询引用了不存在的表，请检查表名。可用的表有: customers, orders, order_items。";
         if (lower.contains("column") && (lower.contains("not found") || lower.contains("不存在")))
             return "查询引用了不存在的字段，请调整问题描述。";
+        if (lower.contains("预估代价"))
+            return "查询涉及的数据量过大，请缩小查询范围（如限定时间、城市或只看前 N 条）后重试。";
         return "生成的 SQL 存在语法问题，请调整问题描述后重试。";
     }
-
-    /**
-     * 为测试 SQL 添加 LIMIT 1（如果还没有 LIMIT）
-     */
-    private String addLimitIfNeeded(String sql) {
-        String sqlUpper = sql.toUpperCase();
-        if (sqlUpper.contains("LIMIT")) {
-            return sql.replaceAll("(?i)LIMIT\\s+\\d+", "LIMIT 1");
-        } else {
-            return sql + " LIMIT 1";
-        }
-    }
 }
@@ -0,0 +1,132 @@
+package com.example.demosaia.graph.nodes;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.TokenStreamRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Validate & Render Node - 校验与渲染并行节点
+ * 渲染只依赖问题和生成的 SQL，不依赖校验结论，因此两者同时执行：
+ * - 渲染在 graphNodeExecutor 上以可取消的流式调用执行，校验在当前线程执行，校验通过后等待渲染结果并合并
+ * - 校验未通过时取消渲染（中止 LLM 请求，不再转发其 token），直接返回校验结果；
+ *   配合 SQL 重试时，每次失败的尝试不会再额外付出一次完整的渲染调用
+ * - 等待渲染最多 render-timeout，超时后取消渲染并按渲染失败处理
+ * - SQL 结构可以套用脚本模板时不走并行：模板需要校验得到的结果列，且不调用 LLM，顺序执行几乎没有额外耗时；
+ *   supports 与模板渲染共用同一套结构判断，模板会放弃的查询（多个聚合值、分组的 SELECT * 等）仍然并行渲染
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ValidateAndRenderNode implements Function<OverAllState, Map<String, Object>> {
+
+    private final SqlValidatorNode sqlValidatorNode;
+    private final RendererNode rendererNode;
+    private final ScriptTemplateRenderer scriptTemplateRenderer;
+    private final TokenStreamRegistry tokenStreamRegistry;
+    private final ExecutorService graphNodeExecutor;
+
+    @Value("${text2sql.graph.parallel-render:true}")
+    private boolean parallelRender = true;
+
+    @Value("${text2sql.graph.render-timeout:60s}")
+    private Duration renderTimeout = Duration.ofSeconds(60);
+
+    @Override
+    public Map<String, Object> apply(OverAllState overAllState) {
+        Text2SqlState input = Text2SqlState.fromMap(overAllState.data());
+
+        if (!parallelRender || scriptTemplateRenderer.supports(input.getSql())) {
+            return validateThenRender(overAllState);
+        }
+
+        log.info("[ValidateAndRenderNode] 校验与渲染并行执行");
+
+        // SSE 请求：渲染的 token 经过一个可关闭的转发器，校验失败后不再推送被丢弃的脚本
+        AtomicBoolean discarded = new AtomicBoolean();
+        Map<String, Object> renderInput = new HashMap<>(overAllState.data());
+        Consumer<String> tokenSink = tokenStreamRegistry.get(input.getStreamId());
+        String renderStreamId = null;
+        if (tokenSink != null) {
+            renderStreamId = tokenStreamRegistry.register(token -> {
+                if (!discarded.get()) {
+                    tokenSink.accept(token);
+                }
+            });
+            renderInput.put("streamId", renderStreamId);
+        }
+
+        // 订阅即发起请求；cancel 会取消订阅，进而中止进行中的 LLM 流式调用
+        CompletableFuture<Map<String, Object>> rendering = rendererNode.renderAsync(new OverAllState(renderInput))
+                .subscribeOn(Schedulers.fromExecutorService(graphNodeExecutor))
+                .toFuture();
+        try {
+            Map<String, Object> validated = sqlValidatorNode.apply(overAllState);
+            if (!Boolean.TRUE.equals(validated.get("isValid"))) {
+                discarded.set(true);
+                rendering.cancel(true);
+                log.info("[ValidateAndRenderNode] SQL 校验未通过，取消并行渲染");
+                return validated;
+            }
+
+            // 两个节点各自只返回自己写入的字段，合并时不会互相覆盖
+            return Text2SqlState.merge(validated, awaitRendering(rendering, renderInput));
+        } finally {
+            if (!rendering.isDone()) {
+                discarded.set(true);
+                rendering.cancel(true);
+            }
+            tokenStreamRegistry.remove(renderStreamId);
+        }
+    }
+
+    /**
+     * 等待渲染结果，最多 renderTimeout；超时后取消渲染并返回渲染失败的结果
+     */
+    private Map<String, Object> awaitRendering(CompletableFuture<Map<String, Object>> rendering,
+                                               Map<String, Object> renderInput) {
+        try {
+            return rendering.get(renderTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            rendering.cancel(true);
+            log.warn("[ValidateAndRenderNode] 脚本渲染超过 {} ms，已取消", renderTimeout.toMillis());
+            return RendererNode.failed(Text2SqlState.fromMap(renderInput),
+                    new TimeoutException("脚本生成超过 " + renderTimeout.toMillis() + " ms 未完成"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待脚本渲染时被中断", e);
+        } catch (ExecutionException e) {
+            return RendererNode.failed(Text2SqlState.fromMap(renderInput), e.getCause());
+        }
+    }
+
+    /**
+     * 顺序执行：先校验，通过后再渲染
+     */
+    private Map<String, Object> validateThenRender(OverAllState overAllState) {
+        Map<String, Object> validated = sqlValidatorNode.apply(overAllState);
+        if (!Boolean.TRUE.equals(validated.get("isValid"))) {
+            return validated;
+        }
+
+        Map<String, Object> renderInput = new HashMap<>(overAllState.data());
+        renderInput.putAll(validated);
+        return Text2SqlState.merge(validated, rendererNode.apply(new OverAllState(renderInput)));
+    }
+}
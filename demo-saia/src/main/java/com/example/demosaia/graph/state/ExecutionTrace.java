@@ -0,0 +1,81 @@
+package com.example.demosaia.graph.state;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 单次请求的执行轨迹：有界环形缓冲区，超过容量时丢弃最早的事件并计数
+ * 各节点只返回自己新增的事件（Text2SqlState.toMap 中的 trace），由 merge 追加到这里，不会重复
+ */
+public class ExecutionTrace {
+
+    private final int capacity;
+
+    private final ArrayDeque<TraceEvent> events;
+
+    private long dropped;
+
+    public ExecutionTrace(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.events = new ArrayDeque<>(Math.min(this.capacity, 64));
+    }
+
+    /**
+     * trace 字段的合并策略（见 StateStrategyFactory）：把节点返回的事件追加到请求的轨迹中
+     */
+    public static Object merge(Object oldValue, Object newValue, int capacity) {
+        if (oldValue instanceof Optional<?> optional) {
+            oldValue = optional.orElse(null);
+        }
+        ExecutionTrace trace = oldValue instanceof ExecutionTrace existing ? existing : new ExecutionTrace(capacity);
+        if (oldValue instanceof Collection<?> initial) {
+            trace.append(initial);
+        }
+        if (newValue instanceof Collection<?> added) {
+            trace.append(added);
+        } else if (newValue instanceof TraceEvent event) {
+            trace.append(List.of(event));
+        }
+        return trace;
+    }
+
+    public synchronized void append(Collection<?> added) {
+        for (Object item : added) {
+            if (item instanceof TraceEvent event) {
+                if (events.size() == capacity) {
+                    events.removeFirst();
+                    dropped++;
+                }
+                events.addLast(event);
+            }
+        }
+    }
+
+    public synchronized List<TraceEvent> events() {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * 因超过容量被丢弃的事件数
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * 渲染为文本日志（ScriptResponse.executionLog）
+     */
+    public static String render(long dropped, List<TraceEvent> events) {
+        StringBuilder sb = new StringBuilder();
+        if (dropped > 0) {
+            sb.append("... 省略了最早的 ").append(dropped).append(" 条记录\n");
+        }
+        for (TraceEvent event : events) {
+            event.appendTo(sb);
+        }
+        return sb.toString();
+    }
+}
@@ -3,7 +3,6 @@ package com.example.demosaia.graph.state;
 import com.alibaba.cloud.ai.graph.KeyStrategy;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.OverAllStateFactory;
-import com.alibaba.cloud.ai.graph.state.strategy.AppendStrategy;
 import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
 
 import java.util.HashMap;
@@ -15,18 +14,29 @@ import java.util.Map;
  */
 public class StateStrategyFactory {
 
+    /**
+     * 单次请求执行轨迹默认保留的事件数
+     */
+    public static final int DEFAULT_MAX_TRACE_EVENTS = 200;
+
+    public static OverAllStateFactory createText2SqlStateFactory() {
+        return createText2SqlStateFactory(DEFAULT_MAX_TRACE_EVENTS);
+    }
+
     /**
      * 创建 Text2SQL Graph 的状态合并策略
      *
+     * @param maxTraceEvents 单次请求执行轨迹最多保留的事件数，超出时丢弃最早的事件
      * @return OverAllStateFactory 用于 StateGraph 构建
      */
-    public static OverAllStateFactory createText2SqlStateFactory() {
+    public static OverAllStateFactory createText2SqlStateFactory(int maxTraceEvents) {
         return () -> {
             Map<String, KeyStrategy> strategies = new HashMap<>();
 
             // 输入数据：替换策略
             strategies.put("question", new ReplaceStrategy());
             strategies.put("paginationParam", new ReplaceStrategy());
+            strategies.put("streamId", new ReplaceStrategy());
 
             // 节点输出：替换策略（每个节点只设置一次）
             strategies.put("queryType", new ReplaceStrategy());
@@ -35,6 +45,9 @@ public class StateStrategyFactory {
             strategies.put("validatedSql", new ReplaceStrategy());
             strategies.put("isValid", new ReplaceStrategy());
             strategies.put("validationError", new ReplaceStrategy());
+            strategies.put("resultColumns", new ReplaceStrategy());
+            strategies.put("resultColumnTypes", new ReplaceStrategy());
+            strategies.put("retryCount", new ReplaceStrategy());
             strategies.put("scriptCode", new ReplaceStrategy());
             strategies.put("explanation", new ReplaceStrategy());
             strategies.put("componentType", new ReplaceStrategy());
@@ -46,8 +59,8 @@ public class StateStrategyFactory {
             strategies.put("errorSuggestion", new ReplaceStrategy());
             strategies.put("errorRetryable", new ReplaceStrategy());
 
-            // 日志：追加策略（累积所有节点的日志）
-            strategies.put("executionLog", new AppendStrategy());
+            // 执行轨迹：节点只返回新增的事件，追加到请求的有界轨迹中
+            strategies.put("trace", (oldValue, newValue) -> ExecutionTrace.merge(oldValue, newValue, maxTraceEvents));
 
             OverAllState state = new OverAllState();
             state.registerKeyAndStrategy(strategies);
@@ -1,7 +1,6 @@
 package com.example.demosaia.graph.state;
 
-import lombok.Data;
-
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,181 +8,359 @@ import java.util.Map;
 /**
  * Text2SQL Graph 的状态类
  * 用于在各个 Node 之间传递数据
+ *
+ * 本类是 OverAllState 数据的类型化视图，不复制数据：
+ * - fromMap 直接包装传入的 Map，getter 优先读本节点写入的值，没有再读原 Map
+ * - setter 只记录到本节点的增量中，toMap 只返回增量（本节点写过的字段和新增的轨迹事件）
+ * Graph 按 StateStrategyFactory 中的策略把增量合并回 OverAllState，未写过的字段保持不变；
+ * 需要清除某个字段时显式 set 为 null
  */
-@Data
 public class Text2SqlState {
 
+    private static final String TRACE = "trace";
+
+    /**
+     * 节点开始时的状态（只读，不复制）
+     */
+    private final Map<String, Object> base;
+
+    /**
+     * 本节点写入的字段
+     */
+    private final Map<String, Object> delta = new HashMap<>();
+
+    /**
+     * 本节点新增的轨迹事件
+     */
+    private List<TraceEvent> newEvents;
+
+    public Text2SqlState() {
+        this(Map.of());
+    }
+
+    private Text2SqlState(Map<String, Object> base) {
+        this.base = base;
+    }
+
+    /**
+     * 从 Map 构建 State（用于从 OverAllState 读取），只包装不复制
+     */
+    public static Text2SqlState fromMap(Map<String, Object> map) {
+        return new Text2SqlState(map);
+    }
+
+    /**
+     * 转换为 Map（节点返回值）：只包含本节点写入的字段，轨迹只包含本节点新增的事件
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(delta);
+        if (newEvents != null) {
+            map.put(TRACE, newEvents);
+        }
+        return map;
+    }
+
+    /**
+     * 合并同一个节点内先后两步的输出（例如路由后写入预取的表结构、校验后再渲染），
+     * 后一步的字段覆盖前一步，轨迹事件按顺序拼接
+     */
+    public static Map<String, Object> merge(Map<String, Object> first, Map<String, Object> second) {
+        Map<String, Object> merged = new HashMap<>(first);
+        merged.putAll(second);
+        if (first.get(TRACE) instanceof List<?> firstEvents && second.get(TRACE) instanceof List<?> secondEvents) {
+            List<Object> events = new ArrayList<>(firstEvents);
+            events.addAll(secondEvents);
+            merged.put(TRACE, events);
+        }
+        return merged;
+    }
+
+    private Object get(String key) {
+        return delta.containsKey(key) ? delta.get(key) : base.get(key);
+    }
+
     // === 输入数据 ===
+
     /**
      * 用户的自然语言问题
      */
-    private String question;
+    public String getQuestion() {
+        return (String) get("question");
+    }
+
+    public void setQuestion(String question) {
+        delta.put("question", question);
+    }
 
     /**
      * 分页参数（可选）：cursor（列表查询）或 page（聚合查询）
      */
-    private String paginationParam;
+    public String getPaginationParam() {
+        return (String) get("paginationParam");
+    }
+
+    public void setPaginationParam(String paginationParam) {
+        delta.put("paginationParam", paginationParam);
+    }
+
+    /**
+     * SSE 流式请求的标识（可选），RendererNode 据此把 LLM token 转发给对应连接
+     */
+    public String getStreamId() {
+        return (String) get("streamId");
+    }
+
+    public void setStreamId(String streamId) {
+        delta.put("streamId", streamId);
+    }
 
     // === Router Node 输出 ===
+
     /**
      * 查询类型：simple（简单查询） 或 complex（复杂查询）
      */
-    private String queryType;
+    public String getQueryType() {
+        return (String) get("queryType");
+    }
+
+    public void setQueryType(String queryType) {
+        delta.put("queryType", queryType);
+    }
 
     // === Schema Retrieval Node 输出 ===
+
     /**
      * 数据库表结构信息
      */
-    private Map<String, Object> schema;
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getSchema() {
+        return (Map<String, Object>) get("schema");
+    }
+
+    public void setSchema(Map<String, Object> schema) {
+        delta.put("schema", schema);
+    }
 
     // === SQL Generator Nodes 输出 ===
+
     /**
      * 生成的 SQL 语句
      */
-    private String sql;
+    public String getSql() {
+        return (String) get("sql");
+    }
+
+    public void setSql(String sql) {
+        delta.put("sql", sql);
+    }
 
     // === SQL Validator Node 输出 ===
+
     /**
      * 验证后的 SQL 语句
      */
-    private String validatedSql;
+    public String getValidatedSql() {
+        return (String) get("validatedSql");
+    }
+
+    public void setValidatedSql(String validatedSql) {
+        delta.put("validatedSql", validatedSql);
+    }
 
     /**
      * SQL 是否通过验证
      */
-    private Boolean isValid;
+    public Boolean getIsValid() {
+        return (Boolean) get("isValid");
+    }
+
+    public void setIsValid(Boolean isValid) {
+        delta.put("isValid", isValid);
+    }
 
     /**
      * 验证失败的错误信息（如果有）
      */
-    private String validationError;
+    public String getValidationError() {
+        return (String) get("validationError");
+    }
+
+    public void setValidationError(String validationError) {
+        delta.put("validationError", validationError);
+    }
+
+    /**
+     * 校验时得到的结果列名（结果元数据，供模板渲染选择组件类型）
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getResultColumns() {
+        return (List<String>) get("resultColumns");
+    }
+
+    public void setResultColumns(List<String> resultColumns) {
+        delta.put("resultColumns", resultColumns);
+    }
+
+    /**
+     * 结果列的数据库类型名（与 resultColumns 一一对应，如 BIGINT、DATE）
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getResultColumnTypes() {
+        return (List<String>) get("resultColumnTypes");
+    }
+
+    public void setResultColumnTypes(List<String> resultColumnTypes) {
+        delta.put("resultColumnTypes", resultColumnTypes);
+    }
+
+    /**
+     * 校验失败后重新生成 SQL 的次数
+     */
+    public Integer getRetryCount() {
+        return (Integer) get("retryCount");
+    }
+
+    public void setRetryCount(Integer retryCount) {
+        delta.put("retryCount", retryCount);
+    }
 
     // === Renderer Node 输出 ===
+
     /**
      * 生成的 JavaScript 脚本代码
      */
-    private String scriptCode;
+    public String getScriptCode() {
+        return (String) get("scriptCode");
+    }
+
+    public void setScriptCode(String scriptCode) {
+        delta.put("scriptCode", scriptCode);
+    }
 
     /**
      * 中文解释说明
      */
-    private String explanation;
+    public String getExplanation() {
+        return (String) get("explanation");
+    }
+
+    public void setExplanation(String explanation) {
+        delta.put("explanation", explanation);
+    }
 
     /**
      * 选择的组件类型（Table/PieChart/LineChart/BarChart/DataPoint）
      */
-    private String componentType;
+    public String getComponentType() {
+        return (String) get("componentType");
+    }
+
+    public void setComponentType(String componentType) {
+        delta.put("componentType", componentType);
+    }
 
     // === 错误追踪 ===
+
     /**
      * 失败的节点名称（如 "RouterNode"、"SqlValidatorNode"）
      */
-    private String errorNode;
+    public String getErrorNode() {
+        return (String) get("errorNode");
+    }
 
     /**
-     * 错误类型：LLM_ERROR, SQL_SYNTAX, TABLE_NOT_FOUND, FIELD_NOT_FOUND, NETWORK_ERROR, UNKNOWN
+     * 错误类型：LLM_ERROR, SQL_SYNTAX, TABLE_NOT_FOUND, FIELD_NOT_FOUND, QUERY_TOO_EXPENSIVE, NETWORK_ERROR, UNKNOWN
      */
-    private String errorType;
+    public String getErrorType() {
+        return (String) get("errorType");
+    }
 
     /**
      * 错误详情
      */
-    private String errorDetail;
+    public String getErrorDetail() {
+        return (String) get("errorDetail");
+    }
 
     /**
      * 用户友好建议
      */
-    private String errorSuggestion;
+    public String getErrorSuggestion() {
+        return (String) get("errorSuggestion");
+    }
 
     /**
      * 是否可重试
      */
-    private Boolean errorRetryable;
+    public Boolean getErrorRetryable() {
+        return (Boolean) get("errorRetryable");
+    }
 
-    // === 辅助字段 ===
     /**
-     * 执行过程中的日志信息（用于调试）
+     * 记录结构化错误信息
      */
-    private StringBuilder executionLog = new StringBuilder();
+    public void recordError(String nodeName, String type, String detail, String suggestion, boolean retryable) {
+        delta.put("errorNode", nodeName);
+        delta.put("errorType", type);
+        delta.put("errorDetail", detail);
+        delta.put("errorSuggestion", suggestion);
+        delta.put("errorRetryable", retryable);
+    }
 
     /**
-     * 添加执行日志
+     * 清除错误信息（重新生成的 SQL 校验通过后，上一次的校验错误不再有效）
      */
-    public void addLog(String message) {
-        executionLog.append("[").append(System.currentTimeMillis()).append("] ")
-                .append(message).append("\n");
+    public void clearError() {
+        delta.put("errorNode", null);
+        delta.put("errorType", null);
+        delta.put("errorDetail", null);
+        delta.put("errorSuggestion", null);
+        delta.put("errorRetryable", null);
     }
 
+    // === 辅助字段 ===
+
     /**
-     * 记录结构化错误信息
+     * 添加执行日志（一条不带耗时的轨迹事件）
      */
-    public void recordError(String nodeName, String type, String detail, String suggestion, boolean retryable) {
-        this.errorNode = nodeName;
-        this.errorType = type;
-        this.errorDetail = detail;
-        this.errorSuggestion = suggestion;
-        this.errorRetryable = retryable;
+    public void addLog(String node, String message) {
+        addEvent(TraceEvent.of(node, message));
     }
 
-    /**
-     * 转换为 Map（用于 OverAllState）
-     */
-    public Map<String, Object> toMap() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("question", question);
-        map.put("paginationParam", paginationParam);
-        map.put("queryType", queryType);
-        map.put("schema", schema);
-        map.put("sql", sql);
-        map.put("validatedSql", validatedSql);
-        map.put("isValid", isValid);
-        map.put("validationError", validationError);
-        map.put("scriptCode", scriptCode);
-        map.put("explanation", explanation);
-        map.put("componentType", componentType);
-        map.put("errorNode", errorNode);
-        map.put("errorType", errorType);
-        map.put("errorDetail", errorDetail);
-        map.put("errorSuggestion", errorSuggestion);
-        map.put("errorRetryable", errorRetryable);
-        map.put("executionLog", executionLog.toString());
-        return map;
+    public void addEvent(TraceEvent event) {
+        if (newEvents == null) {
+            newEvents = new ArrayList<>();
+        }
+        newEvents.add(event);
     }
 
     /**
-     * 从 Map 构建 State（用于从 OverAllState 读取）
+     * 执行轨迹：之前各节点的事件加上本节点新增的事件
+     * 之前的事件是 ExecutionTrace（经 StateStrategyFactory 的策略合并后）或 List（未注册策略的 OverAllState）
      */
-    @SuppressWarnings("unchecked")
-    public static Text2SqlState fromMap(Map<String, Object> map) {
-        Text2SqlState state = new Text2SqlState();
-        state.setQuestion((String) map.get("question"));
-        state.setPaginationParam((String) map.get("paginationParam"));
-        state.setQueryType((String) map.get("queryType"));
-        state.setSchema((Map<String, Object>) map.get("schema"));
-        state.setSql((String) map.get("sql"));
-        state.setValidatedSql((String) map.get("validatedSql"));
-        state.setIsValid((Boolean) map.get("isValid"));
-        state.setValidationError((String) map.get("validationError"));
-        state.setScriptCode((String) map.get("scriptCode"));
-        state.setExplanation((String) map.get("explanation"));
-        state.setComponentType((String) map.get("componentType"));
-        state.setErrorNode((String) map.get("errorNode"));
-        state.setErrorType((String) map.get("errorType"));
-        state.setErrorDetail((String) map.get("errorDetail"));
-        state.setErrorSuggestion((String) map.get("errorSuggestion"));
-        state.setErrorRetryable((Boolean) map.get("errorRetryable"));
-
-        // executionLog 可能是 String（首次）或 List<String>（经 AppendStrategy 合并后）
-        Object logObj = map.get("executionLog");
-        if (logObj instanceof String) {
-            state.executionLog = new StringBuilder((String) logObj);
-        } else if (logObj instanceof List) {
-            StringBuilder sb = new StringBuilder();
-            for (Object item : (List<?>) logObj) {
-                sb.append(item);
+    public List<TraceEvent> getTrace() {
+        List<TraceEvent> events = new ArrayList<>();
+        Object traceObj = base.get(TRACE);
+        if (traceObj instanceof ExecutionTrace trace) {
+            events.addAll(trace.events());
+        } else if (traceObj instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof TraceEvent event) {
+                    events.add(event);
+                }
             }
-            state.executionLog = sb;
         }
-        return state;
+        if (newEvents != null) {
+            events.addAll(newEvents);
+        }
+        return events;
+    }
+
+    /**
+     * 执行过程中的日志信息（用于调试），由执行轨迹渲染
+     */
+    public String getExecutionLog() {
+        long dropped = base.get(TRACE) instanceof ExecutionTrace trace ? trace.dropped() : 0;
+        return ExecutionTrace.render(dropped, getTrace());
     }
 }
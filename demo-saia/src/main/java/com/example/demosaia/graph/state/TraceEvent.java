@@ -0,0 +1,31 @@
+package com.example.demosaia.graph.state;
+
+import java.util.Map;
+
+/**
+ * 执行轨迹中的一条事件
+ *
+ * @param node       产生事件的节点（如 RouterNode），Graph 层记录的节点完成事件使用 Graph 节点名（如 router）
+ * @param timestamp  事件时间（毫秒时间戳），节点完成事件为节点开始时间
+ * @param durationMs 耗时（毫秒），只有节点完成事件有
+ * @param message    事件描述
+ * @param attributes 附加属性（如 errorType），可为空 Map
+ */
+public record TraceEvent(String node, long timestamp, Long durationMs, String message, Map<String, Object> attributes) {
+
+    public static TraceEvent of(String node, String message) {
+        return new TraceEvent(node, System.currentTimeMillis(), null, message, Map.of());
+    }
+
+    /**
+     * 渲染为一行日志：[时间戳] [节点] 描述 (耗时) key=value
+     */
+    void appendTo(StringBuilder sb) {
+        sb.append('[').append(timestamp).append("] [").append(node).append("] ").append(message);
+        if (durationMs != null) {
+            sb.append(" (").append(durationMs).append("ms)");
+        }
+        attributes.forEach((key, value) -> sb.append(' ').append(key).append('=').append(value));
+        sb.append('\n');
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.demosaia.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LLM 响应缓存（ChatClient Advisor）
+ * 所有 LLM 调用都以 temperature=0 经过同一个 ChatClient，相同的提示词得到相同的回答，无需重复调用
+ * - 键：模型、生成参数、各条消息（类型 + 文本）、工具集合的 SHA-256
+ * - 内存层：按字符数限制容量的 LRU；可选磁盘层（disk-dir），重启后仍可命中
+ * - 只缓存单条纯文本回答；显式设置 temperature > 0 的请求不缓存
+ * - 同步调用和流式调用共用同一份缓存：流式命中时整段回答作为一个分片返回，未命中时拼接各分片后写入
+ * - 调用方通过 advisor 参数 {@link #NODE} 标明所属节点，命中率和节省的耗时按节点统计：
+ *   text2sql.llm.cache.requests{node, result=hit|miss}、text2sql.llm.cache.saved{node}（秒）
+ */
+@Slf4j
+@Component
+public class LlmResponseCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    /**
+     * advisor 参数名：调用所属的 Graph 节点
+     */
+    public static final String NODE = "text2sql.node";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${text2sql.llm-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${text2sql.llm-cache.max-chars:4000000}")
+    private long maxChars;
+
+    @Value("${text2sql.llm-cache.disk-dir:}")
+    private String diskDir;
+
+    /**
+     * 访问顺序的 LinkedHashMap，迭代顺序即 LRU 顺序；所有访问都在 this 上同步
+     */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalChars;
+
+    private record Entry(String text, long latencyMs) {
+    }
+
+    public LlmResponseCacheAdvisor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return "LlmResponseCacheAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // 最先执行：命中时跳过后续所有 advisor 和模型调用
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        if (!enabled || !cacheable(request.prompt())) {
+            return chain.nextCall(request);
+        }
+
+        String node = node(request);
+        String key = key(request.prompt());
+
+        Entry cached = get(key);
+        if (cached != null) {
+            return hit(request, node, cached);
+        }
+
+        counter(node, "miss").increment();
+        long start = System.currentTimeMillis();
+        ChatClientResponse response = chain.nextCall(request);
+        long latencyMs = System.currentTimeMillis() - start;
+
+        String text = cacheableText(response);
+        if (text != null) {
+            put(key, new Entry(text, latencyMs));
+        }
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        if (!enabled || !cacheable(request.prompt())) {
+            return chain.nextStream(request);
+        }
+
+        String node = node(request);
+        String key = key(request.prompt());
+
+        return Flux.defer(() -> {
+            Entry cached = get(key);
+            if (cached != null) {
+                return Flux.just(hit(request, node, cached));
+            }
+
+            counter(node, "miss").increment();
+            long start = System.currentTimeMillis();
+            StringBuilder text = new StringBuilder();
+            AtomicBoolean cacheable = new AtomicBoolean(true);
+            return chain.nextStream(request)
+                    .doOnNext(response -> {
+                        ChatResponse chatResponse = response.chatResponse();
+                        if (chatResponse == null || chatResponse.getResults().isEmpty()) {
+                            return;
+                        }
+                        AssistantMessage output = chatResponse.getResult().getOutput();
+                        if (chatResponse.getResults().size() != 1 || output == null || output.hasToolCalls()) {
+                            cacheable.set(false);
+                        } else if (output.getText() != null) {
+                            text.append(output.getText());
+                        }
+                    })
+                    // 只有完整收到的回答才写入；中途取消或出错时不缓存半段回答
+                    .doOnComplete(() -> {
+                        if (cacheable.get() && !text.isEmpty()) {
+                            put(key, new Entry(text.toString(), System.currentTimeMillis() - start));
+                        }
+                    });
+        });
+    }
+
+    private static String node(ChatClientRequest request) {
+        return String.valueOf(request.context().getOrDefault(NODE, "unknown"));
+    }
+
+    /**
+     * 记录命中并把缓存的回答包装为一条完整响应
+     */
+    private ChatClientResponse hit(ChatClientRequest request, String node, Entry cached) {
+        counter(node, "hit").increment();
+        Counter.builder("text2sql.llm.cache.saved").baseUnit("seconds")
+                .description("LLM 响应缓存命中节省的调用耗时")
+                .tag("node", node).register(meterRegistry)
+                .increment(cached.latencyMs() / 1000.0);
+        log.info("[LlmCache] 命中: node={}, 节省 {} ms", node, cached.latencyMs());
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage(cached.text()))));
+        return ChatClientResponse.builder().chatResponse(chatResponse).context(request.context()).build();
+    }
+
+    private Counter counter(String node, String result) {
+        return Counter.builder("text2sql.llm.cache.requests")
+                .description("LLM 响应缓存命中 / 未命中次数")
+                .tag("node", node).tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static boolean cacheable(Prompt prompt) {
+        ChatOptions options = prompt.getOptions();
+        Double temperature = options != null ? options.getTemperature() : null;
+        return temperature == null || temperature == 0.0;
+    }
+
+    /**
+     * 只缓存单条、无工具调用的文本回答
+     */
+    private static String cacheableText(ChatClientResponse response) {
+        ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse == null || chatResponse.getResults().size() != 1) {
+            return null;
+        }
+        AssistantMessage output = chatResponse.getResult().getOutput();
+        if (output == null || output.hasToolCalls() || output.getText() == null) {
+            return null;
+        }
+        return output.getText();
+    }
+
+    /**
+     * 缓存键：模型、生成参数、消息和工具集合的 SHA-256
+     */
+    static String key(Prompt prompt) {
+        StringBuilder sb = new StringBuilder();
+        ChatOptions options = prompt.getOptions();
+        if (options != null) {
+            sb.append("model=").append(options.getModel())
+                    .append("|temperature=").append(options.getTemperature())
+                    .append("|topP=").append(options.getTopP())
+                    .append("|topK=").append(options.getTopK())
+                    .append("|maxTokens=").append(options.getMaxTokens())
+                    .append("|stop=").append(options.getStopSequences())
+                    .append('\n');
+            if (options instanceof ToolCallingChatOptions toolOptions) {
+                TreeSet<String> tools = new TreeSet<>();
+                if (toolOptions.getToolNames() != null) {
+                    tools.addAll(toolOptions.getToolNames());
+                }
+                if (toolOptions.getToolCallbacks() != null) {
+                    for (ToolCallback callback : toolOptions.getToolCallbacks()) {
+                        tools.add(callback.getToolDefinition().name());
+                    }
+                }
+                sb.append("tools=").append(tools).append('\n');
+            }
+        }
+        for (Message message : prompt.getInstructions()) {
+            sb.append(message.getMessageType()).append(':').append(message.getText()).append('\u0000');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Entry get(String key) {
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        Entry fromDisk = readDisk(key);
+        if (fromDisk != null) {
+            putMemory(key, fromDisk);
+        }
+        return fromDisk;
+    }
+
+    private void put(String key, Entry entry) {
+        putMemory(key, entry);
+        writeDisk(key, entry);
+    }
+
+    private synchronized void putMemory(String key, Entry entry) {
+        if (entry.text().length() > maxChars) {
+            return;
+        }
+        Entry old = memory.put(key, entry);
+        if (old != null) {
+            totalChars -= old.text().length();
+        }
+        totalChars += entry.text().length();
+        Iterator<Entry> it = memory.values().iterator();
+        while (totalChars > maxChars && it.hasNext()) {
+            totalChars -= it.next().text().length();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        totalChars = 0;
+    }
+
+    /**
+     * 磁盘层文件格式：首行为原始调用耗时（毫秒），其余为回答文本
+     */
+    private Entry readDisk(String key) {
+        if (diskDir.isBlank()) {
+            return null;
+        }
+        Path file = Path.of(diskDir, key + ".txt");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            return new Entry(content.substring(newline + 1), Long.parseLong(content.substring(0, newline)));
+        } catch (IOException | RuntimeException e) {
+            log.warn("[LlmCache] 读取磁盘缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        if (diskDir.isBlank()) {
+            return;
+        }
+        try {
+            Path dir = Files.createDirectories(Path.of(diskDir));
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.writeString(tmp, entry.latencyMs() + "\n" + entry.text(), StandardCharsets.UTF_8);
+            Files.move(tmp, dir.resolve(key + ".txt"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("[LlmCache] 写入磁盘缓存失败: {}", e.getMessage());
+        }
+    }
+}
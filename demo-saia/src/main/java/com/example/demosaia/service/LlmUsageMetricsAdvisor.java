@@ -0,0 +1,101 @@
+package com.example.demosaia.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * LLM 调用指标（ChatClient Advisor），按 advisor 参数 {@link LlmResponseCacheAdvisor#NODE} 区分节点：
+ * - text2sql.llm.requests{node, mode=call|stream}：实际调用模型的耗时（缓存命中的调用不经过这里）
+ * - text2sql.llm.tokens{node, type=prompt|completion}：模型返回的 token 用量
+ */
+@Component
+@RequiredArgsConstructor
+public class LlmUsageMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public String getName() {
+        return "LlmUsageMetricsAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // 在 LlmResponseCacheAdvisor 之后执行：只统计真正发给模型的请求
+        return Ordered.HIGHEST_PRECEDENCE + 200;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        String node = node(request);
+        long start = System.nanoTime();
+        ChatClientResponse response = chain.nextCall(request);
+        record(node, "call", System.nanoTime() - start, response.chatResponse());
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        String node = node(request);
+        // 流式响应的用量在最后一个分片中（DashScope 每个分片给出累计用量）
+        AtomicReference<ChatResponse> last = new AtomicReference<>();
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return chain.nextStream(request)
+                    .doOnNext(response -> {
+                        if (response.chatResponse() != null) {
+                            last.set(response.chatResponse());
+                        }
+                    })
+                    .doOnComplete(() -> record(node, "stream", System.nanoTime() - start, last.get()));
+        });
+    }
+
+    private static String node(ChatClientRequest request) {
+        return String.valueOf(request.context().getOrDefault(LlmResponseCacheAdvisor.NODE, "unknown"));
+    }
+
+    private void record(String node, String mode, long elapsedNanos, ChatResponse chatResponse) {
+        Timer.builder("text2sql.llm.requests")
+                .description("LLM 调用耗时（不含缓存命中）")
+                .tag("node", node).tag("mode", mode)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        Usage usage = chatResponse != null && chatResponse.getMetadata() != null
+                ? chatResponse.getMetadata().getUsage() : null;
+        if (usage == null) {
+            return;
+        }
+        tokens(node, "prompt", usage.getPromptTokens());
+        tokens(node, "completion", usage.getCompletionTokens());
+    }
+
+    private void tokens(String node, String type, Integer count) {
+        if (count == null || count <= 0) {
+            return;
+        }
+        Counter.builder("text2sql.llm.tokens")
+                .description("LLM token 用量")
+                .baseUnit("tokens")
+                .tag("node", node).tag("type", type)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
@@ -1,22 +1,38 @@
 package com.example.demosaia.service;
 
 import com.example.demosaia.dto.QueryResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * MCP 工具服务 - 封装对 MCP Server 的 HTTP 调用
+ * - xxxAsync 方法返回 Mono，不占用线程等待 I/O；需要 CompletableFuture 时用 toFuture() 转换
+ * - 同名同步方法是 Async 版本加超时的 block()，供 Function 工具回调和同步的 Graph 节点使用
+ * - 每次调用的结果（执行的 SQL、结构化结果）通过返回值传递，不再保存在 ThreadLocal 中
+ * - 每个工具的调用耗时记录在 mcp.client.requests{tool, outcome=success|error|cancelled}，
+ *   表结构 ETag 缓存的复用情况记录在 mcp.client.schema.cache{result=hit|miss}
  */
 @Slf4j
 @Service
@@ -24,145 +40,316 @@ import java.util.Map;
 public class McpToolService {
 
     private final WebClient mcpWebClient;
+    private final MeterRegistry meterRegistry;
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    // 用于跟踪最后执行的 SQL
-    private static final ThreadLocal<String> lastExecutedSql = new ThreadLocal<>();
+    // 同步方法等待 MCP Server 响应的最长时间
+    @Value("${mcp.client.timeout:30s}")
+    private Duration timeout = Duration.ofSeconds(30);
 
-    // 用于跟踪最后的查询结果
-    private static final ThreadLocal<QueryResult> lastQueryResult = new ThreadLocal<>();
+    // schema.getMany 结果缓存：表名列表 → (ETag, 格式化文本)，通过 If-None-Match 复用
+    private final Map<String, CachedSchema> schemaCache = new ConcurrentHashMap<>();
+
+    // 最近一次从 MCP Server 获得的表结构目录 ETag
+    private volatile String lastSchemaEtag;
+
+    private record CachedSchema(String etag, String text) {
+    }
+
+    /**
+     * 一次 sql.run 调用的结果
+     * - text：格式化后的文本（失败时为 "SQL 执行失败: ..."）
+     * - result：结构化结果，失败时为 null
+     * - error：失败原因，成功时为 null
+     */
+    public record SqlRunResult(String sql, String text, QueryResult result, String error) {
+
+        public boolean success() {
+            return error == null;
+        }
+    }
+
+    /**
+     * 一次 sql.check 调用的结果
+     * - columns / columnTypes：结果列名和数据库类型名，未通过时为空
+     * - errorType：MCP Server 给出的失败类型（TABLE_NOT_FOUND 等），调用本身失败时为 null
+     */
+    public record SqlCheckResult(String sql, boolean valid, List<String> columns, List<String> columnTypes,
+                                 String errorType, String error) {
+    }
 
     /**
      * 调用 schema.get 工具
      */
     public String getSchema(String tableName) {
+        return getSchemaAsync(tableName).block(timeout);
+    }
+
+    /**
+     * 调用 schema.get 工具（异步）；失败时返回 "获取表结构失败: ..." 文本，不会以错误结束
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<String> getSchemaAsync(String tableName) {
         log.info("=== 调用 MCP Tool: schema.get ===");
         log.info("请求参数: table={}", tableName);
 
-        try {
-            Map<String, Object> requestBody = Map.of("table", tableName);
-            log.info("请求体: {}", requestBody);
-
-            Map<String, Object> response = mcpWebClient.post()
-                    .uri("/mcp/tools/schema.get")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .onStatus(status -> !status.is2xxSuccessful(),
-                            clientResponse -> {
-                                log.error("HTTP 错误状态: {}", clientResponse.statusCode());
-                                return clientResponse.bodyToMono(String.class)
-                                        .flatMap(body -> {
-                                            log.error("错误响应体: {}", body);
-                                            return Mono.error(new RuntimeException(
-                                                    extractErrorMessage(body)));
-                                        });
-                            })
-                    .bodyToMono(Map.class)
-                    .doOnError(error -> log.error("请求失败: {}", error.getMessage()))
-                    .block();
-
-            log.info("schema.get 成功响应: {}", response);
-            return formatSchemaResponse(response);
-        } catch (WebClientResponseException e) {
-            log.error("=== schema.get HTTP 错误 ===");
-            log.error("状态码: {}", e.getStatusCode());
-            log.error("响应头: {}", e.getHeaders());
-            log.error("响应体: {}", e.getResponseBodyAsString());
-            return "获取表结构失败: " + extractErrorMessage(e.getResponseBodyAsString());
-        } catch (Exception e) {
-            log.error("=== schema.get 调用异常 ===", e);
-            return "获取表结构失败: " + e.getMessage();
-        }
+        return mcpWebClient.post()
+                .uri("/mcp/tools/schema.get")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("table", tableName))
+                .retrieve()
+                .onStatus(status -> !status.is2xxSuccessful(), this::toError)
+                .bodyToMono(Map.class)
+                .doOnNext(response -> log.info("schema.get 成功响应: {}", response))
+                .map(response -> formatSchemaResponse((Map<String, Object>) response))
+                .transform(timed("schema.get"))
+                .defaultIfEmpty("无响应")
+                .onErrorResume(e -> {
+                    log.error("=== schema.get 调用异常 ===", e);
+                    return Mono.just("获取表结构失败: " + errorMessage(e));
+                });
     }
 
     /**
-     * 调用 sql.run 工具
+     * 调用 schema.getMany 工具，一次请求获取多张表结构
+     * 带上次的 ETag 请求，表结构未变化时服务端返回 304，直接复用本地缓存
+     */
+    public String getSchemas(List<String> tableNames) {
+        return getSchemasAsync(tableNames).block(timeout);
+    }
+
+    /**
+     * 调用 schema.getMany 工具（异步）
+     */
+    public Mono<String> getSchemasAsync(List<String> tableNames) {
+        log.info("=== 调用 MCP Tool: schema.getMany ===");
+        log.info("请求参数: tables={}", tableNames);
+
+        String cacheKey = String.join(",", tableNames);
+        CachedSchema cached = schemaCache.get(cacheKey);
+
+        return mcpWebClient.post()
+                .uri("/mcp/tools/schema.getMany")
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (cached != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                })
+                .bodyValue(Map.of("tables", tableNames))
+                .exchangeToMono(clientResponse -> {
+                    if (clientResponse.statusCode().value() == 304 && cached != null) {
+                        log.info("schema.getMany 未变化 (304)，使用缓存: etag={}", cached.etag());
+                        schemaCacheCounter("hit").increment();
+                        return clientResponse.releaseBody().thenReturn(cached);
+                    }
+                    if (!clientResponse.statusCode().is2xxSuccessful()) {
+                        log.error("HTTP 错误状态: {}", clientResponse.statusCode());
+                        return clientResponse.bodyToMono(String.class)
+                                .defaultIfEmpty("")
+                                .flatMap(body -> Mono.error(new RuntimeException(extractErrorMessage(body))));
+                    }
+                    schemaCacheCounter("miss").increment();
+                    String etag = clientResponse.headers().asHttpHeaders().getETag();
+                    return clientResponse.bodyToMono(Map.class)
+                            .map(body -> new CachedSchema(etag, formatSchemaBatchResponse(body)));
+                })
+                .doOnNext(result -> {
+                    if (result.etag() != null) {
+                        schemaCache.put(cacheKey, result);
+                    }
+                })
+                .map(CachedSchema::text)
+                .transform(timed("schema.getMany"))
+                .defaultIfEmpty("无响应")
+                .onErrorResume(e -> {
+                    log.error("=== schema.getMany 调用异常 ===", e);
+                    return Mono.just("获取表结构失败: " + errorMessage(e));
+                });
+    }
+
+    /**
+     * 查询 MCP Server 当前表结构目录的 ETag（表结构变化时随之变化）
+     * 带上次的 ETag 请求 schema.getAll，未变化时服务端只返回 304；失败时为空
+     */
+    public Mono<String> schemaEtagAsync() {
+        String known = lastSchemaEtag;
+        return mcpWebClient.get()
+                .uri("/mcp/tools/schema.getAll")
+                .headers(headers -> {
+                    if (known != null) {
+                        headers.setIfNoneMatch(known);
+                    }
+                })
+                .exchangeToMono(clientResponse -> {
+                    if (clientResponse.statusCode().value() == 304) {
+                        return clientResponse.releaseBody().thenReturn(known);
+                    }
+                    if (!clientResponse.statusCode().is2xxSuccessful()) {
+                        return clientResponse.releaseBody().then(Mono.error(
+                                new RuntimeException("HTTP " + clientResponse.statusCode())));
+                    }
+                    String etag = clientResponse.headers().asHttpHeaders().getETag();
+                    return clientResponse.releaseBody().then(Mono.justOrEmpty(etag));
+                })
+                .doOnNext(etag -> lastSchemaEtag = etag)
+                .transform(timed("schema.getAll"))
+                .onErrorResume(e -> {
+                    log.warn("查询表结构 ETag 失败: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 调用 sql.run 工具，返回格式化文本
      */
     public String runSql(String sql) {
+        return runSqlResult(sql).text();
+    }
+
+    /**
+     * 调用 sql.run 工具，返回结构化结果
+     */
+    public SqlRunResult runSqlResult(String sql) {
+        return runSqlAsync(sql).block(timeout);
+    }
+
+    /**
+     * 调用 sql.run 工具（异步）；失败体现在 SqlRunResult.error 中，不会以错误结束
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<SqlRunResult> runSqlAsync(String sql) {
         log.info("=== 调用 MCP Tool: sql.run ===");
         log.info("SQL: {}", sql);
 
-        // 保存 SQL 到 ThreadLocal
-        lastExecutedSql.set(sql);
+        return mcpWebClient.post()
+                .uri("/mcp/tools/sql.run")
+                .contentType(MediaType.APPLICATION_JSON)
+                // 与本端等待时间一致：放弃等待时 MCP Server 同时取消执行，不再占用连接
+                .bodyValue(Map.of("sql", sql, "timeoutMs", timeout.toMillis()))
+                .retrieve()
+                .onStatus(status -> !status.is2xxSuccessful(), this::toError)
+                .bodyToMono(Map.class)
+                .map(response -> {
+                    log.info("sql.run 成功响应: {}", response);
+                    Map<String, Object> body = (Map<String, Object>) response;
+                    return new SqlRunResult(sql, formatSqlResponse(body), toQueryResult(body), null);
+                })
+                .transform(timed("sql.run"))
+                .defaultIfEmpty(new SqlRunResult(sql, "无响应", null, null))
+                .onErrorResume(e -> {
+                    log.error("=== sql.run 调用异常 ===", e);
+                    String error = errorMessage(e);
+                    return Mono.just(new SqlRunResult(sql, "SQL 执行失败: " + error, null, error));
+                });
+    }
 
-        try {
-            Map<String, Object> requestBody = Map.of("sql", sql);
-            log.info("请求体: {}", requestBody);
-
-            Map<String, Object> response = mcpWebClient.post()
-                    .uri("/mcp/tools/sql.run")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .onStatus(status -> !status.is2xxSuccessful(),
-                            clientResponse -> {
-                                log.error("HTTP 错误状态: {}", clientResponse.statusCode());
-                                return clientResponse.bodyToMono(String.class)
-                                        .flatMap(body -> {
-                                            log.error("错误响应体: {}", body);
-                                            return Mono.error(new RuntimeException(
-                                                    extractErrorMessage(body)));
-                                        });
-                            })
-                    .bodyToMono(Map.class)
-                    .doOnError(error -> log.error("请求失败: {}", error.getMessage()))
-                    .block();
-
-            log.info("sql.run 成功响应: {}", response);
-
-            // 保存结构化结果到 ThreadLocal
-            saveQueryResult(response);
-
-            return formatSqlResponse(response);
-        } catch (WebClientResponseException e) {
-            log.error("=== sql.run HTTP 错误 ===");
-            log.error("状态码: {}", e.getStatusCode());
-            log.error("响应头: {}", e.getHeaders());
-            log.error("响应体: {}", e.getResponseBodyAsString());
-            return "SQL 执行失败: " + extractErrorMessage(e.getResponseBodyAsString());
-        } catch (Exception e) {
-            log.error("=== sql.run 调用异常 ===", e);
-            return "SQL 执行失败: " + e.getMessage();
-        }
+    /**
+     * 调用 sql.check 工具：由数据库解析 SQL，不执行
+     */
+    public SqlCheckResult checkSql(String sql) {
+        return checkSqlAsync(sql).block(timeout);
     }
 
     /**
-     * 保存查询结果到 ThreadLocal
+     * 调用 sql.check 工具（异步）；失败体现在 SqlCheckResult 中，不会以错误结束
      */
     @SuppressWarnings("unchecked")
-    private void saveQueryResult(Map<String, Object> response) {
-        if (response == null) {
-            return;
-        }
+    public Mono<SqlCheckResult> checkSqlAsync(String sql) {
+        log.info("=== 调用 MCP Tool: sql.check ===");
+        log.info("SQL: {}", sql);
 
-        try {
-            List<String> columns = (List<String>) response.get("columns");
-            List<List<Object>> rows = (List<List<Object>>) response.get("rows");
-            Integer rowCount = (Integer) response.get("rowCount");
+        return mcpWebClient.post()
+                .uri("/mcp/tools/sql.check")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("sql", sql))
+                .retrieve()
+                .onStatus(status -> !status.is2xxSuccessful(), this::toError)
+                .bodyToMono(Map.class)
+                .map(response -> {
+                    log.info("sql.check 响应: {}", response);
+                    Map<String, Object> body = (Map<String, Object>) response;
+                    List<String> columns = new ArrayList<>();
+                    List<String> columnTypes = new ArrayList<>();
+                    if (body.get("columns") instanceof List<?> list) {
+                        for (Object item : list) {
+                            Map<String, Object> column = (Map<String, Object>) item;
+                            columns.add((String) column.get("name"));
+                            columnTypes.add((String) column.get("type"));
+                        }
+                    }
+                    return new SqlCheckResult(sql, Boolean.TRUE.equals(body.get("valid")), columns, columnTypes,
+                            (String) body.get("errorType"), (String) body.get("error"));
+                })
+                .transform(timed("sql.check"))
+                .defaultIfEmpty(new SqlCheckResult(sql, false, List.of(), List.of(), null, "无响应"))
+                .onErrorResume(e -> {
+                    log.error("=== sql.check 调用异常 ===", e);
+                    return Mono.just(new SqlCheckResult(sql, false, List.of(), List.of(), null,
+                            "SQL 检查失败: " + errorMessage(e)));
+                });
+    }
 
-            if (columns != null && rows != null && rowCount != null) {
-                QueryResult queryResult = new QueryResult(columns, rows, rowCount);
-                lastQueryResult.set(queryResult);
-                log.info("已保存查询结果: {} 行, {} 列", rowCount, columns.size());
-            }
-        } catch (Exception e) {
-            log.warn("保存查询结果失败: {}", e.getMessage());
-        }
+    /**
+     * 记录一次工具调用的耗时（订阅时开始计时），需放在 onErrorResume 之前，才能区分成功和失败
+     */
+    private <T> Function<Mono<T>, Mono<T>> timed(String tool) {
+        return mono -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> Timer.builder("mcp.client.requests")
+                    .description("MCP 工具调用耗时")
+                    .tag("tool", tool)
+                    .tag("outcome", signal == SignalType.ON_ERROR ? "error"
+                            : signal == SignalType.CANCEL ? "cancelled" : "success")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Counter schemaCacheCounter(String result) {
+        return Counter.builder("mcp.client.schema.cache")
+                .description("schema.getMany 本地缓存经 ETag 确认复用（hit）或重新下载（miss）的次数")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     /**
-     * 获取最后执行的 SQL
+     * 将非 2xx 响应转换为携带可读错误信息的异常
      */
-    public static String getLastExecutedSql() {
-        return lastExecutedSql.get();
+    private Mono<? extends Throwable> toError(ClientResponse clientResponse) {
+        log.error("HTTP 错误状态: {}", clientResponse.statusCode());
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(body -> {
+                    log.error("错误响应体: {}", body);
+                    return Mono.error(new RuntimeException(extractErrorMessage(body)));
+                });
+    }
+
+    private String errorMessage(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return extractErrorMessage(responseException.getResponseBodyAsString());
+        }
+        return e.getMessage();
     }
 
     /**
-     * 获取最后的查询结果
+     * 将 sql.run 响应转换为结构化结果
      */
-    public static QueryResult getLastQueryResult() {
-        return lastQueryResult.get();
+    @SuppressWarnings("unchecked")
+    private QueryResult toQueryResult(Map<String, Object> response) {
+        try {
+            List<String> columns = (List<String>) response.get("columns");
+            List<List<Object>> rows = (List<List<Object>>) response.get("rows");
+            Number rowCount = (Number) response.get("rowCount");
+
+            if (columns != null && rows != null && rowCount != null) {
+                return new QueryResult(columns, rows, rowCount.intValue());
+            }
+        } catch (Exception e) {
+            log.warn("解析查询结果失败: {}", e.getMessage());
+        }
+        return null;
     }
 
     /**
@@ -193,6 +380,23 @@ public class McpToolService {
         return sb.toString();
     }
 
+    /**
+     * 格式化 schema.getMany 响应：逐表拼接 formatSchemaResponse 的结果
+     */
+    @SuppressWarnings("unchecked")
+    private String formatSchemaBatchResponse(Map<String, Object> response) {
+        StringBuilder sb = new StringBuilder();
+        Object tables = response.get("tables");
+        if (tables instanceof List) {
+            for (Object table : (List<?>) tables) {
+                if (table instanceof Map) {
+                    sb.append(formatSchemaResponse((Map<String, Object>) table)).append("\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * 格式化 SQL 响应为可读文本
      */
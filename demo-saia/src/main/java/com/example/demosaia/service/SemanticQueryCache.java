@@ -0,0 +1,264 @@
+package com.example.demosaia.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 语义缓存：相似问题直接复用已验证的 SQL 和脚本，跳过整个 Graph
+ * - 向量：问题规范化后，字符 1~3 gram 特征哈希到固定维度并做 L2 归一化（本地计算，无网络调用）
+ * - 检索：条目数有上限（几百到几千），精确的暴力余弦检索即可在毫秒内完成，无需近似索引
+ * - 问题中的数字（年份、ID、页码等）必须完全一致才算命中，避免 "2023年" 命中 "2024年" 的结果
+ * - 排序方向和极性词（升序/降序、最高/最低、前/后、不/非/没有等）也必须完全一致：
+ *   n-gram 向量是字面相似度，只差一个反义词的两个问题相似度仍在阈值以上，但 SQL 恰好相反
+ * - 淘汰：超过 max-entries 时淘汰最久未命中的条目；超过 ttl 的条目视为过期
+ * - 失效：定期在后台比对 MCP Server 表结构目录的 ETag（不阻塞查找），表结构变化时清空
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SemanticQueryCache {
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+(\\.\\d+)?");
+
+    /**
+     * 决定排序方向或筛选极性的词，任何一个不同都会得到相反的 SQL
+     */
+    private static final Pattern POLARITY = Pattern.compile(
+            "升序|降序|正序|倒序|\\basc\\b|\\bdesc\\b|最高|最低|最多|最少|最大|最小|最早|最晚|前|后|不|非|没有");
+
+    /**
+     * 不影响语义的口语词和标点
+     */
+    private static final Pattern FILLER = Pattern.compile(
+            "请|帮我|帮忙|麻烦|给我|一下|我想|想要|看看|查一查|查询|显示|展示|的|了|吗|呢|[\\s\\p{Punct}，。？！、：；（）“”‘’]");
+
+    private final McpToolService mcpToolService;
+
+    @Value("${text2sql.semantic-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${text2sql.semantic-cache.threshold:0.92}")
+    private double threshold;
+
+    @Value("${text2sql.semantic-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${text2sql.semantic-cache.dimensions:512}")
+    private int dimensions;
+
+    @Value("${text2sql.semantic-cache.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${text2sql.semantic-cache.schema-check-interval:60s}")
+    private Duration schemaCheckInterval;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private volatile String schemaEtag;
+
+    private volatile long lastSchemaCheck;
+
+    /**
+     * 缓存内容（只缓存验证通过的结果）
+     */
+    public record CachedAnswer(String question, String sql, String scriptCode, String explanation, String queryType) {
+    }
+
+    /**
+     * 命中结果
+     */
+    public record Hit(CachedAnswer answer, double similarity) {
+    }
+
+    private static final class Entry {
+        final String normalized;
+        final float[] vector;
+        final List<String> numbers;
+        final List<String> polarity;
+        final CachedAnswer answer;
+        final long createdAt;
+        long lastHitAt;
+
+        Entry(String normalized, float[] vector, List<String> numbers, List<String> polarity, CachedAnswer answer) {
+            this.normalized = normalized;
+            this.vector = vector;
+            this.numbers = numbers;
+            this.polarity = polarity;
+            this.answer = answer;
+            this.createdAt = System.currentTimeMillis();
+            this.lastHitAt = createdAt;
+        }
+    }
+
+    /**
+     * 查找语义相同的问题；未命中返回 null
+     */
+    public Hit lookup(String question) {
+        if (!enabled || question == null || question.isBlank()) {
+            return null;
+        }
+        checkSchema();
+
+        String normalized = normalize(question);
+        float[] vector = embed(normalized);
+        List<String> numbers = numbers(question);
+        List<String> polarity = polarity(question);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            entries.removeIf(e -> now - e.createdAt > ttl.toMillis());
+
+            Entry best = null;
+            double bestSimilarity = -1;
+            for (Entry entry : entries) {
+                if (!entry.numbers.equals(numbers) || !entry.polarity.equals(polarity)) {
+                    continue;
+                }
+                double similarity = dot(vector, entry.vector);
+                if (similarity > bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best == null || bestSimilarity < threshold) {
+                return null;
+            }
+            best.lastHitAt = now;
+            log.info("[SemanticCache] 命中: \"{}\" ≈ \"{}\" (similarity={})",
+                    question, best.answer.question(), String.format("%.3f", bestSimilarity));
+            return new Hit(best.answer, bestSimilarity);
+        }
+    }
+
+    /**
+     * 写入一次成功的结果；同一规范化问题只保留最新一条
+     */
+    public void put(CachedAnswer answer) {
+        if (!enabled || answer.question() == null || answer.scriptCode() == null) {
+            return;
+        }
+        String normalized = normalize(answer.question());
+        Entry entry = new Entry(normalized, embed(normalized), numbers(answer.question()),
+                polarity(answer.question()), answer);
+
+        synchronized (entries) {
+            entries.removeIf(e -> e.normalized.equals(normalized));
+            entries.add(entry);
+            while (entries.size() > maxEntries) {
+                entries.remove(entries.stream().min(Comparator.comparingLong(e -> e.lastHitAt)).orElseThrow());
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 距上次检查超过 schema-check-interval 时在后台比对表结构 ETag，变化则清空缓存
+     * 查找不等待结果：本次按现有条目判断，ETag 返回后再清空
+     */
+    private void checkSchema() {
+        long now = System.currentTimeMillis();
+        if (now - lastSchemaCheck < schemaCheckInterval.toMillis()) {
+            return;
+        }
+        lastSchemaCheck = now;
+        mcpToolService.schemaEtagAsync().subscribe(this::onSchemaEtag);
+    }
+
+    private void onSchemaEtag(String current) {
+        if (schemaEtag != null && !schemaEtag.equals(current)) {
+            log.info("[SemanticCache] 表结构已变化 ({} → {})，清空 {} 条缓存", schemaEtag, current, size());
+            clear();
+        }
+        schemaEtag = current;
+    }
+
+    static String normalize(String question) {
+        return FILLER.matcher(question.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    static List<String> numbers(String question) {
+        List<String> numbers = new ArrayList<>();
+        Matcher matcher = NUMBER.matcher(question);
+        while (matcher.find()) {
+            numbers.add(matcher.group());
+        }
+        return numbers;
+    }
+
+    /**
+     * 问题中的排序方向 / 极性词，排序后比较（与出现顺序无关）
+     */
+    static List<String> polarity(String question) {
+        List<String> words = new ArrayList<>();
+        Matcher matcher = POLARITY.matcher(question.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        words.sort(null);
+        return words;
+    }
+
+    /**
+     * 特征哈希向量：字符 1/2/3 gram 分别加权 1/2/3（越长的片段越能区分语义），最后 L2 归一化
+     */
+    float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        for (int n = 1; n <= 3; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                int hash = murmurMix(text.substring(i, i + n).hashCode());
+                int index = Math.floorMod(hash, dimensions);
+                // 用另一位决定符号，减少哈希冲突带来的偏差
+                vector[index] += ((hash >>> 16) & 1) == 0 ? n : -n;
+            }
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static int murmurMix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -76,8 +76,9 @@ public class Text2SqlService {
             ```javascript
             async function generateData(mcpClient) {
                 const cursor = 20;  // 从问题中提取
-                const sql = "SELECT * FROM customers WHERE ID > " + cursor + " ORDER BY ID LIMIT 20";
-                const result = await mcpClient.executeSql(sql);
+                // SQL 文本固定，游标通过参数绑定（服务端可复用已解析的语句）
+                const sql = "SELECT * FROM customers WHERE ID > ? ORDER BY ID LIMIT 20";
+                const result = await mcpClient.executeSql(sql, [cursor]);
 
                 const rows = result.rows.map((row, index) => ({ key: index + 1, ...row }));
                 const lastId = rows.length > 0 ? rows[rows.length - 1].ID || rows[rows.length - 1].id : null;
@@ -143,8 +144,8 @@ public class Text2SqlService {
             async function generateData(mcpClient) {
                 const page = 2;  // 从问题中提取页码
                 const offset = (page - 1) * 20;
-                const sql = "SELECT c.ID, c.NAME, COUNT(o.ID) as ORDER_COUNT FROM customers c LEFT JOIN orders o ON c.ID = o.CUSTOMER_ID GROUP BY c.ID, c.NAME ORDER BY ORDER_COUNT DESC, c.ID LIMIT 20 OFFSET " + offset;
-                const result = await mcpClient.executeSql(sql);
+                const sql = "SELECT c.ID, c.NAME, COUNT(o.ID) as ORDER_COUNT FROM customers c LEFT JOIN orders o ON c.ID = o.CUSTOMER_ID GROUP BY c.ID, c.NAME ORDER BY ORDER_COUNT DESC, c.ID LIMIT 20 OFFSET ?";
+                const result = await mcpClient.executeSql(sql, [offset]);
 
                 const rows = result.rows.map((row, index) => ({ key: index + 1, ...row }));
 
@@ -306,8 +307,9 @@ public class Text2SqlService {
             - Table的rows中必须有key字段（JavaScript中添加）
             - SQL中禁止使用保留字作为别名（如key、order、table等）
             - ⭐ 分页规则（区分查询类型）：
-              * 列表查询：ORDER BY ID + cursor分页（WHERE ID > cursor）
-              * 聚合查询：ORDER BY 聚合字段 DESC + OFFSET分页（LIMIT 20 OFFSET n）
+              * 列表查询：ORDER BY ID + cursor分页（WHERE ID > ?，cursor 作为参数）
+              * 聚合查询：ORDER BY 聚合字段 DESC + OFFSET分页（LIMIT 20 OFFSET ?，offset 作为参数）
+              * 游标、偏移量等变化的值不要拼接进 SQL 字符串，用 ? 占位符并通过 mcpClient.executeSql(sql, [参数...]) 传入
               * hasMore = rows.length === 20
             - ⭐ 识别分页请求：
               * 列表查询：问题包含 "cursor=数字" 时，提取作为游标
@@ -339,6 +341,7 @@ public class Text2SqlService {
         try {
             // 1. 调用 ChatClient（只使用 schemaGet 工具）
             ChatResponse chatResponse = chatClient.prompt()
+                    .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "Text2SqlService"))
                     .system(SYSTEM_PROMPT)
                     .user(request.getQuestion())
                     .toolNames("schemaGet")  // 只提供 schemaGet，不提供 sqlRun
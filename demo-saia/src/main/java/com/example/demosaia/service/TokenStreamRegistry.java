@@ -0,0 +1,42 @@
+package com.example.demosaia.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * LLM token 转发登记表
+ * SSE 请求执行 Graph 前登记一个 token 接收者，streamId 随状态传给节点；
+ * 节点按 streamId 取到接收者后改用流式调用，把 token 逐个转发出去。
+ * 普通请求没有 streamId，节点仍走同步调用。
+ */
+@Component
+public class TokenStreamRegistry {
+
+    private final Map<String, Consumer<String>> sinks = new ConcurrentHashMap<>();
+
+    /**
+     * 登记接收者，返回 streamId
+     */
+    public String register(Consumer<String> sink) {
+        String streamId = UUID.randomUUID().toString();
+        sinks.put(streamId, sink);
+        return streamId;
+    }
+
+    /**
+     * 查找接收者，未登记时返回 null
+     */
+    public Consumer<String> get(String streamId) {
+        return streamId != null ? sinks.get(streamId) : null;
+    }
+
+    public void remove(String streamId) {
+        if (streamId != null) {
+            sinks.remove(streamId);
+        }
+    }
+}
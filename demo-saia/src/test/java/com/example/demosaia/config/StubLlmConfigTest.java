@@ -0,0 +1,90 @@
+package com.example.demosaia.config;
+
+import com.example.demosaia.graph.nodes.ComplexSqlGeneratorNode;
+import com.example.demosaia.graph.nodes.RendererNode;
+import com.example.demosaia.graph.nodes.RouterNode;
+import com.example.demosaia.graph.nodes.SimpleSqlGeneratorNode;
+import com.example.stubllm.StubChatModel;
+import com.example.stubllm.StubScripts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StubLlmConfig 单元测试：桩模型按 Graph 节点的提示词常量回答（固定 0 延迟）
+ */
+public class StubLlmConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ChatClient chatClient = ChatClient.create(new StubLlmConfig().stubChatModel(
+            ToolCallingManager.builder().build(), registry, "fixed", Duration.ZERO, Duration.ZERO, Duration.ZERO));
+
+    @Test
+    public void testScriptedGraphPrompts() {
+        String question = "各城市的客户数量对比";
+        String sql = "SELECT CITY, COUNT(*) AS CNT FROM customers GROUP BY CITY";
+
+        String route = chatClient.prompt()
+                .user(RouterNode.ROUTER_PROMPT.replace("{question}", question))
+                .call().content();
+        assertEquals("complex", route);
+
+        String generated = chatClient.prompt()
+                .user(ComplexSqlGeneratorNode.COMPLEX_SQL_PROMPT
+                        .replace("{schema}", "CREATE TABLE customers (...)")
+                        .replace("{question}", question))
+                .call().content();
+        assertEquals(StubScripts.script(question).sql(), generated);
+
+        String rendered = chatClient.prompt()
+                .user(RendererNode.RENDERER_PROMPT.replace("{sql}", sql).replace("{question}", question))
+                .call().content();
+        assertTrue(rendered.contains("```javascript"));
+        assertTrue(rendered.contains(sql));
+        assertTrue(rendered.contains("componentType: 'BarChart'"));
+
+        assertEquals(3, registry.get(StubChatModel.SIMULATED_METRIC).timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    public void testRetryFeedbackStillMatchesSqlPrompt() {
+        String generated = chatClient.prompt()
+                .user(SimpleSqlGeneratorNode.SIMPLE_SQL_PROMPT.replace("{question}", "订单总金额是多少")
+                        + "\n【上一次生成的 SQL】\nSELECT SUM(X) FROM orders\n\n【数据库返回的错误】\nColumn \"X\" not found\n")
+                .call().content();
+
+        assertEquals("SELECT SUM(TOTAL_AMOUNT) AS TOTAL FROM orders", generated);
+        assertEquals(1, registry.get(StubChatModel.SIMULATED_METRIC).tag("kind", "simple-sql").timer().count());
+    }
+
+    @Test
+    public void testToolCallsAreExecuted() {
+        List<String> tables = new ArrayList<>();
+        FunctionToolCallback<McpFunctionConfig.SchemaGetRequest, String> schemaGet = FunctionToolCallback
+                .builder("schemaGet", (McpFunctionConfig.SchemaGetRequest request) -> {
+                    tables.add(request.table());
+                    return "CREATE TABLE " + request.table() + " (...)";
+                })
+                .description("获取表结构")
+                .inputType(McpFunctionConfig.SchemaGetRequest.class)
+                .build();
+
+        String answer = chatClient.prompt()
+                .user("查询所有订单")
+                .toolCallbacks(schemaGet)
+                .call().content();
+
+        assertEquals(List.of("orders"), tables);
+        assertTrue(answer.contains("componentType: 'Table'"));
+    }
+}
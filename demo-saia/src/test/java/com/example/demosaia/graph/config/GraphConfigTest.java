@@ -1,10 +1,15 @@
 package com.example.demosaia.graph.config;
 
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.StateGraph;
+import com.example.demosaia.graph.state.Text2SqlState;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -16,6 +21,12 @@ public class GraphConfigTest {
 	@Autowired(required = false)
 	private StateGraph text2SqlGraph;
 
+	@Autowired(required = false)
+	private CompiledGraphPool compiledGraphPool;
+
+	@Autowired(required = false)
+	private GraphConfig graphConfig;
+
 	@Test
 	public void testGraphBeanExists() {
 		if (text2SqlGraph == null) {
@@ -30,4 +41,66 @@ public class GraphConfigTest {
 		System.out.println("Graph 名称: " + text2SqlGraph.getName());
 	}
 
+	@Test
+	public void testCompiledGraphPoolWarmedUp() throws Exception {
+		if (compiledGraphPool == null) {
+			System.out.println("⚠️ CompiledGraphPool Bean 未创建，跳过测试");
+			return;
+		}
+
+		assertTrue(compiledGraphPool.idleCount() > 0, "启动时应预编译 Graph 实例");
+
+		// 同时借出两个实例：必须是不同对象，归还后状态被清空
+		CompiledGraph first = compiledGraphPool.borrow();
+		CompiledGraph second = compiledGraphPool.borrow();
+		assertNotSame(first, second, "并发借出的实例不能共享");
+		first.overAllState().updateState(Map.of("question", "q"));
+		compiledGraphPool.release(first);
+		compiledGraphPool.release(second);
+		assertTrue(first.overAllState().data().isEmpty(), "归还后应清空执行状态");
+	}
+
+	@Test
+	public void testRouteByQueryType() {
+		if (graphConfig == null) {
+			System.out.println("⚠️ GraphConfig Bean 未创建，跳过测试");
+			return;
+		}
+
+		Text2SqlState state = new Text2SqlState();
+		state.setQueryType("simple");
+		assertEquals("simple", graphConfig.routeByQueryType(new OverAllState(state.toMap())));
+
+		// complex：没有预取到表结构时先获取表结构，预取成功时直接生成 SQL
+		state.setQueryType("complex");
+		assertEquals("complex", graphConfig.routeByQueryType(new OverAllState(state.toMap())));
+		state.setSchema(Map.of("tableName", "customers", "schemaText", "CREATE TABLE customers"));
+		assertEquals("complexPrefetched", graphConfig.routeByQueryType(new OverAllState(state.toMap())));
+	}
+
+	@Test
+	public void testRouteAfterValidation() {
+		if (graphConfig == null) {
+			System.out.println("⚠️ GraphConfig Bean 未创建，跳过测试");
+			return;
+		}
+
+		Text2SqlState state = new Text2SqlState();
+		state.setQueryType("complex");
+		state.setIsValid(true);
+		assertEquals("done", graphConfig.routeAfterValidation(new OverAllState(state.toMap())));
+
+		// 字段错误：第一次回到生成节点，用完重试次数后结束
+		state.setIsValid(false);
+		state.recordError("SqlValidatorNode", "FIELD_NOT_FOUND", "Column not found", "", false);
+		assertEquals("retryComplex", graphConfig.routeAfterValidation(new OverAllState(state.toMap())));
+		state.setRetryCount(1);
+		assertEquals("fail", graphConfig.routeAfterValidation(new OverAllState(state.toMap())));
+
+		// 网络错误不重试
+		state.setRetryCount(null);
+		state.recordError("SqlValidatorNode", "NETWORK_ERROR", "Connection refused", "", false);
+		assertEquals("fail", graphConfig.routeAfterValidation(new OverAllState(state.toMap())));
+	}
+
 }
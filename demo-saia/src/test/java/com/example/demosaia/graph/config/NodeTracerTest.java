@@ -0,0 +1,46 @@
+package com.example.demosaia.graph.config;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.graph.state.TraceEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NodeTracer 单元测试：完成事件和节点指标
+ */
+public class NodeTracerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final NodeTracer nodeTracer = new NodeTracer(meterRegistry);
+
+    @Test
+    public void testRecordsCompletionEventAndMetrics() throws Exception {
+        Map<String, Object> output = nodeTracer.traced("validateAndRender", overAllState -> {
+            Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
+            state.setIsValid(false);
+            state.recordError("SqlValidatorNode", "FIELD_NOT_FOUND", "Column not found", "", false);
+            state.addLog("SqlValidatorNode", "校验失败");
+            return state.toMap();
+        }).apply(new OverAllState(Map.of("question", "客户总数"))).get();
+
+        List<TraceEvent> trace = Text2SqlState.fromMap(output).getTrace();
+        assertEquals(2, trace.size());
+        TraceEvent completed = trace.get(1);
+        assertEquals("validateAndRender", completed.node());
+        assertNotNull(completed.durationMs());
+        assertEquals(Map.of("isValid", false, "errorType", "FIELD_NOT_FOUND"), completed.attributes());
+
+        assertEquals(1, meterRegistry.get("text2sql.graph.node")
+                .tags("node", "validateAndRender", "outcome", "FIELD_NOT_FOUND").timer().count());
+        assertEquals(1.0, meterRegistry.get("text2sql.graph.errors")
+                .tags("node", "SqlValidatorNode", "type", "FIELD_NOT_FOUND").counter().count());
+    }
+
+}
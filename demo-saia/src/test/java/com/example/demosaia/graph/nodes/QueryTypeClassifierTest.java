@@ -0,0 +1,50 @@
+package com.example.demosaia.graph.nodes;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QueryTypeClassifier 单元测试（不依赖 LLM）
+ */
+public class QueryTypeClassifierTest {
+
+	private QueryTypeClassifier newClassifier(int minSamples) {
+		QueryTypeClassifier classifier = new QueryTypeClassifier();
+		ReflectionTestUtils.setField(classifier, "modelEnabled", true);
+		ReflectionTestUtils.setField(classifier, "modelMinSamples", minSamples);
+		ReflectionTestUtils.setField(classifier, "modelConfidence", 0.9);
+		ReflectionTestUtils.setField(classifier, "historyFile", "");
+		return classifier;
+	}
+
+	@Test
+	public void testRulesClassifyObviousQuestions() {
+		QueryTypeClassifier classifier = newClassifier(50);
+
+		assertEquals("simple", classifier.classify("列出所有客户").queryType());
+		assertEquals("simple", classifier.classify("客户总数").queryType());
+		assertEquals("complex", classifier.classify("统计每个客户的订单数量").queryType());
+		assertEquals("complex", classifier.classify("各城市客户数对比").queryType());
+		assertEquals("complex", classifier.classify("订单状态分布").queryType());
+		assertEquals("rule", classifier.classify("列出所有客户").source());
+	}
+
+	@Test
+	public void testUnsureQuestionFallsBackUntilModelTrained() {
+		QueryTypeClassifier classifier = newClassifier(4);
+		assertNull(classifier.classify("最贵的产品"), "规则无法判断时应交给 LLM");
+
+		classifier.record("最贵的产品", "simple");
+		classifier.record("最便宜的产品", "simple");
+		classifier.record("最新的产品", "simple");
+		classifier.record("下单金额最高的城市", "complex");
+
+		QueryTypeClassifier.Classification result = classifier.classify("最贵的产品");
+		assertNotNull(result, "样本足够后模型应给出结果");
+		assertEquals("simple", result.queryType());
+		assertEquals("model", result.source());
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.example.demosaia.graph.nodes;
+
+import com.example.demosaia.graph.state.Text2SqlState;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ScriptTemplateRenderer 单元测试（不依赖 LLM）
+ */
+public class ScriptTemplateRendererTest {
+
+    private final ScriptTemplateRenderer renderer = new ScriptTemplateRenderer();
+
+    private ScriptTemplateRenderer.Rendered render(String question, String sql, List<String> columns, String... types) {
+        Text2SqlState state = new Text2SqlState();
+        state.setQuestion(question);
+        state.setValidatedSql(sql);
+        state.setIsValid(true);
+        state.setResultColumns(columns);
+        state.setResultColumnTypes(types.length > 0 ? Arrays.asList(types) : null);
+        return renderer.render(state);
+    }
+
+    @Test
+    public void testPicksComponentFromSqlShape() {
+        assertEquals("DataPoint", render("客户总数是多少？",
+                "SELECT COUNT(*) AS TOTAL FROM customers", List.of("TOTAL"), "BIGINT").componentType());
+
+        assertEquals("LineChart", render("每月订单量趋势",
+                "SELECT MONTH(order_date) AS ORDER_MONTH, COUNT(*) AS ORDER_COUNT FROM orders GROUP BY MONTH(order_date)",
+                List.of("ORDER_MONTH", "ORDER_COUNT"), "INTEGER", "BIGINT").componentType());
+
+        assertEquals("BarChart", render("各城市客户数",
+                "SELECT city, COUNT(*) AS CUSTOMER_COUNT FROM customers GROUP BY city",
+                List.of("CITY", "CUSTOMER_COUNT"), "CHARACTER VARYING", "BIGINT").componentType());
+
+        assertEquals("PieChart", render("订单状态分布",
+                "SELECT status, COUNT(*) AS CNT FROM orders GROUP BY status",
+                List.of("STATUS", "CNT"), "CHARACTER VARYING", "BIGINT").componentType());
+
+        assertEquals("LineChart", render("每天的销售额",
+                "SELECT order_date, SUM(total_amount) AS AMOUNT FROM orders GROUP BY order_date",
+                List.of("ORDER_DATE", "AMOUNT"), "DATE", "NUMERIC").componentType());
+
+        assertEquals("Table", render("列出所有客户",
+                "SELECT name, city FROM customers LIMIT 200",
+                List.of("NAME", "CITY"), "CHARACTER VARYING", "CHARACTER VARYING").componentType());
+    }
+
+    @Test
+    public void testScriptEmbedsSqlAsEscapedLiteral() {
+        ScriptTemplateRenderer.Rendered rendered = render("北京的客户",
+                "SELECT name FROM customers WHERE city = '北京' AND note = \"a\\\"b\"", List.of("NAME"));
+
+        assertNotNull(rendered);
+        assertTrue(rendered.scriptCode().contains("async function generateData(mcpClient)"));
+        assertTrue(rendered.scriptCode().contains(
+                "const sql = \"SELECT name FROM customers WHERE city = '北京' AND note = \\\"a\\\\\\\"b\\\"\";"));
+    }
+
+    @Test
+    public void testUnusualQueriesFallBackToLlm() {
+        assertNull(render("客户和订单",
+                "SELECT name FROM customers UNION SELECT status FROM orders", List.of("NAME")));
+        assertNull(render("最大和最小金额",
+                "SELECT MAX(total_amount), MIN(total_amount) FROM orders", List.of("MAX", "MIN"), "NUMERIC", "NUMERIC"));
+        assertNull(render("分页", "SELECT id FROM customers WHERE id > ?", List.of("ID")));
+        assertNull(render("没有元数据", "SELECT id FROM customers", null));
+    }
+
+    @Test
+    public void testSupportsAgreesWithRender() {
+        // 结构上无法套用模板的查询，supports 也必须拒绝，否则会跳过并行渲染再顺序调用 LLM
+        assertFalse(renderer.supports("SELECT COUNT(*), SUM(total_amount) FROM orders"));
+        assertNull(render("订单数和金额", "SELECT COUNT(*), SUM(total_amount) FROM orders",
+                List.of("COUNT(*)", "SUM(TOTAL_AMOUNT)"), "BIGINT", "NUMERIC"));
+
+        assertFalse(renderer.supports("SELECT * FROM orders GROUP BY id"));
+        assertNull(render("分组明细", "SELECT * FROM orders GROUP BY id", List.of("ID", "STATUS")));
+
+        String window = "SELECT name, SUM(total_amount) OVER (PARTITION BY city) AS CITY_TOTAL FROM customers";
+        assertFalse(renderer.supports(window));
+        assertNull(render("客户及所在城市总额", window, List.of("NAME", "CITY_TOTAL"), "CHARACTER VARYING", "NUMERIC"));
+
+        assertFalse(renderer.supports("SELECT name FROM customers UNION SELECT status FROM orders"));
+        assertFalse(renderer.supports("SELECT id FROM customers WHERE id > ?"));
+
+        assertTrue(renderer.supports("SELECT COUNT(*) AS TOTAL FROM customers"));
+        assertTrue(renderer.supports("SELECT * FROM customers LIMIT 200"));
+        assertTrue(renderer.supports("SELECT status, COUNT(*), SUM(total_amount) FROM orders GROUP BY status"));
+        assertTrue(renderer.supports("SELECT name, city FROM customers;"));
+    }
+
+}
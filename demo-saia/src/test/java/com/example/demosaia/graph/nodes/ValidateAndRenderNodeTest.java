@@ -0,0 +1,121 @@
+package com.example.demosaia.graph.nodes;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.example.demosaia.graph.state.Text2SqlState;
+import com.example.demosaia.service.TokenStreamRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * ValidateAndRenderNode 单元测试（校验、渲染节点均为 mock）
+ */
+public class ValidateAndRenderNodeTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final SqlValidatorNode validator = mock(SqlValidatorNode.class);
+
+    private final RendererNode renderer = mock(RendererNode.class);
+
+    private final ValidateAndRenderNode node = new ValidateAndRenderNode(validator, renderer,
+            new ScriptTemplateRenderer(), new TokenStreamRegistry(), executor);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Text2SqlState input() {
+        Text2SqlState state = new Text2SqlState();
+        state.setQuestion("客户和订单");
+        // UNION 无法套用模板，走并行渲染
+        state.setSql("SELECT name FROM customers UNION SELECT status FROM orders");
+        state.addLog("Test", "start");
+        return state;
+    }
+
+    @Test
+    public void testRendersWhileValidating() throws Exception {
+        CountDownLatch rendering = new CountDownLatch(1);
+        when(renderer.renderAsync(any())).thenAnswer(invocation -> Mono.fromCallable(() -> {
+            rendering.countDown();
+            Text2SqlState state = Text2SqlState.fromMap(invocation.<OverAllState>getArgument(0).data());
+            state.setScriptCode("async function generateData(mcpClient) {}");
+            state.addLog("RendererNode", "rendered");
+            return state.toMap();
+        }));
+        when(validator.apply(any())).thenAnswer(invocation -> {
+            // 校验尚未返回时渲染已经开始
+            assertTrue(rendering.await(5, TimeUnit.SECONDS), "渲染应与校验并行执行");
+            Text2SqlState state = Text2SqlState.fromMap(invocation.<OverAllState>getArgument(0).data());
+            state.setIsValid(true);
+            state.setValidatedSql(state.getSql());
+            state.addLog("SqlValidatorNode", "validated");
+            return state.toMap();
+        });
+
+        Map<String, Object> result = node.apply(new OverAllState(input().toMap()));
+
+        assertEquals(true, result.get("isValid"));
+        assertEquals("async function generateData(mcpClient) {}", result.get("scriptCode"));
+        String log = Text2SqlState.fromMap(result).getExecutionLog();
+        assertTrue(log.contains("validated") && log.contains("rendered"), "合并后应包含两边的日志");
+    }
+
+    @Test
+    public void testCancelsRenderingWhenValidationFails() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(renderer.renderAsync(any())).thenReturn(Mono.<Map<String, Object>>never()
+                .doOnSubscribe(s -> started.countDown())
+                .doOnCancel(cancelled::countDown));
+        when(validator.apply(any())).thenAnswer(invocation -> {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Text2SqlState state = Text2SqlState.fromMap(invocation.<OverAllState>getArgument(0).data());
+            state.setIsValid(false);
+            state.setValidationError("Column not found");
+            return state.toMap();
+        });
+
+        Map<String, Object> result = node.apply(new OverAllState(input().toMap()));
+
+        assertEquals(false, result.get("isValid"));
+        assertNull(result.get("scriptCode"), "校验未通过时应丢弃渲染结果");
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "校验未通过时应取消进行中的渲染");
+    }
+
+    @Test
+    public void testRenderingTimeoutCancelsAndRecordsError() throws Exception {
+        ReflectionTestUtils.setField(node, "renderTimeout", Duration.ofMillis(200));
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(renderer.renderAsync(any())).thenReturn(Mono.<Map<String, Object>>never()
+                .doOnCancel(cancelled::countDown));
+        when(validator.apply(any())).thenAnswer(invocation -> {
+            Text2SqlState state = Text2SqlState.fromMap(invocation.<OverAllState>getArgument(0).data());
+            state.setIsValid(true);
+            state.setValidatedSql(state.getSql());
+            return state.toMap();
+        });
+
+        Map<String, Object> result = node.apply(new OverAllState(input().toMap()));
+
+        assertEquals(true, result.get("isValid"));
+        assertEquals("RendererNode", result.get("errorNode"));
+        assertNotNull(result.get("scriptCode"), "超时后应返回错误提示脚本");
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "超时后应取消渲染");
+    }
+
+}
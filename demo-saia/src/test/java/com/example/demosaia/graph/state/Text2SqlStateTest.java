@@ -0,0 +1,75 @@
+package com.example.demosaia.graph.state;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Text2SqlState 单元测试：节点只返回自己写入的字段，经 OverAllState 合并后执行轨迹不重复且有界
+ */
+public class Text2SqlStateTest {
+
+    @Test
+    public void testToMapReturnsOnlyWrittenKeys() {
+        Text2SqlState input = new Text2SqlState();
+        input.setQuestion("客户总数");
+        input.setSql("SELECT COUNT(*) FROM customers");
+        input.recordError("SqlValidatorNode", "SQL_SYNTAX", "syntax error", "", true);
+
+        Text2SqlState state = Text2SqlState.fromMap(input.toMap());
+        assertEquals("客户总数", state.getQuestion());
+        state.setIsValid(true);
+        state.clearError();
+        state.addLog("SqlValidatorNode", "validated");
+
+        Map<String, Object> delta = state.toMap();
+        assertFalse(delta.containsKey("question"), "未写入的字段不应出现在增量中");
+        assertFalse(delta.containsKey("sql"));
+        assertEquals(true, delta.get("isValid"));
+        assertTrue(delta.containsKey("errorType") && delta.get("errorType") == null, "清除的字段应显式写入 null");
+        assertNull(state.getErrorType());
+        assertEquals("SELECT COUNT(*) FROM customers", state.getSql(), "未写入的字段从原状态读取");
+    }
+
+    @Test
+    public void testExecutionLogAccumulatesWithoutDuplication() {
+        OverAllState overAllState = StateStrategyFactory.createText2SqlStateFactory().create();
+
+        Text2SqlState input = new Text2SqlState();
+        input.setQuestion("客户总数");
+        input.addLog("Controller", "start");
+        overAllState.updateState(input.toMap());
+
+        for (String node : new String[]{"router", "generator", "validator"}) {
+            Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
+            state.addLog(node, "done");
+            overAllState.updateState(state.toMap());
+        }
+
+        List<TraceEvent> trace = Text2SqlState.fromMap(overAllState.data()).getTrace();
+        assertEquals(List.of("Controller", "router", "generator", "validator"),
+                trace.stream().map(TraceEvent::node).toList(), "每个节点的事件只出现一次");
+        String log = Text2SqlState.fromMap(overAllState.data()).getExecutionLog();
+        assertTrue(log.contains("] [validator] done\n"));
+    }
+
+    @Test
+    public void testTraceIsBounded() {
+        OverAllState overAllState = StateStrategyFactory.createText2SqlStateFactory(3).create();
+        for (int i = 0; i < 5; i++) {
+            Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
+            state.addLog("Node" + i, "step " + i);
+            overAllState.updateState(state.toMap());
+        }
+
+        Text2SqlState state = Text2SqlState.fromMap(overAllState.data());
+        assertEquals(List.of("Node2", "Node3", "Node4"), state.getTrace().stream().map(TraceEvent::node).toList(),
+                "超过容量时丢弃最早的事件");
+        assertTrue(state.getExecutionLog().startsWith("... 省略了最早的 2 条记录"));
+    }
+
+}
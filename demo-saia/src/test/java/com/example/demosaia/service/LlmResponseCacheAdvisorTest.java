@@ -0,0 +1,118 @@
+package com.example.demosaia.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LlmResponseCacheAdvisor 单元测试（使用计数的假模型，不依赖 LLM）
+ */
+public class LlmResponseCacheAdvisorTest {
+
+    @TempDir
+    Path diskDir;
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    private final ChatModel countingModel = new ChatModel() {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            modelCalls.incrementAndGet();
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("answer to " + prompt.getContents()))));
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            modelCalls.incrementAndGet();
+            return Flux.just("answer ", "to ", prompt.getContents())
+                    .map(chunk -> new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))));
+        }
+    };
+
+    private LlmResponseCacheAdvisor newAdvisor(SimpleMeterRegistry registry) {
+        LlmResponseCacheAdvisor advisor = new LlmResponseCacheAdvisor(registry);
+        ReflectionTestUtils.setField(advisor, "enabled", true);
+        ReflectionTestUtils.setField(advisor, "maxChars", 10_000L);
+        ReflectionTestUtils.setField(advisor, "diskDir", diskDir.toString());
+        return advisor;
+    }
+
+    private String ask(ChatClient client, String text) {
+        return client.prompt()
+                .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "RouterNode"))
+                .user(text)
+                .call()
+                .content();
+    }
+
+    @Test
+    public void testSamePromptHitsCacheAndIsCountedPerNode() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatClient client = ChatClient.builder(countingModel).defaultAdvisors(newAdvisor(registry)).build();
+
+        assertEquals("answer to q1", ask(client, "q1"));
+        assertEquals("answer to q1", ask(client, "q1"));
+        assertEquals("answer to q2", ask(client, "q2"));
+
+        assertEquals(2, modelCalls.get(), "相同提示词只应调用一次模型");
+        assertEquals(1.0, registry.get("text2sql.llm.cache.requests")
+                .tag("node", "RouterNode").tag("result", "hit").counter().count());
+        assertEquals(2.0, registry.get("text2sql.llm.cache.requests")
+                .tag("node", "RouterNode").tag("result", "miss").counter().count());
+    }
+
+    private String askStreaming(ChatClient client, String text) {
+        return String.join("", client.prompt()
+                .advisors(a -> a.param(LlmResponseCacheAdvisor.NODE, "RendererNode"))
+                .user(text)
+                .stream()
+                .content()
+                .collectList()
+                .block());
+    }
+
+    @Test
+    public void testStreamingSharesCacheWithCalls() {
+        ChatClient client = ChatClient.builder(countingModel)
+                .defaultAdvisors(newAdvisor(new SimpleMeterRegistry())).build();
+
+        // 同步调用写入的回答，流式调用以一个分片命中
+        assertEquals("answer to q1", ask(client, "q1"));
+        assertEquals("answer to q1", askStreaming(client, "q1"));
+        assertEquals(1, modelCalls.get());
+
+        // 流式调用拼接各分片后写入，同步调用随后命中
+        assertEquals("answer to q2", askStreaming(client, "q2"));
+        assertEquals("answer to q2", ask(client, "q2"));
+        assertEquals("answer to q2", askStreaming(client, "q2"));
+        assertEquals(2, modelCalls.get());
+    }
+
+    @Test
+    public void testDiskTierSurvivesRestart() {
+        ChatClient first = ChatClient.builder(countingModel)
+                .defaultAdvisors(newAdvisor(new SimpleMeterRegistry())).build();
+        ask(first, "q1");
+
+        // 新的 advisor 实例相当于重启：内存层为空，从磁盘层命中
+        ChatClient second = ChatClient.builder(countingModel)
+                .defaultAdvisors(newAdvisor(new SimpleMeterRegistry())).build();
+        assertEquals("answer to q1", ask(second, "q1"));
+        assertEquals(1, modelCalls.get());
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.example.demosaia.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SemanticQueryCache 单元测试（不依赖 LLM 和 MCP Server）
+ */
+public class SemanticQueryCacheTest {
+
+    private McpToolService mcpToolService;
+    private SemanticQueryCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        mcpToolService = Mockito.mock(McpToolService.class);
+        Mockito.when(mcpToolService.schemaEtagAsync()).thenReturn(Mono.just("\"v1\""));
+
+        cache = new SemanticQueryCache(mcpToolService);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "threshold", 0.8);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "dimensions", 512);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cache, "schemaCheckInterval", Duration.ZERO);
+    }
+
+    private SemanticQueryCache.CachedAnswer answer(String question) {
+        return new SemanticQueryCache.CachedAnswer(question, "SELECT 1", "async function generateData() {}", "说明", "simple");
+    }
+
+    @Test
+    public void testParaphraseHitsAndDifferentNumbersMiss() {
+        cache.put(answer("2024年每月订单量"));
+
+        SemanticQueryCache.Hit hit = cache.lookup("请帮我查询一下2024年每月的订单量");
+        assertNotNull(hit, "只差口语词的问题应命中");
+        assertEquals("2024年每月订单量", hit.answer().question());
+
+        assertNull(cache.lookup("2023年每月订单量"), "年份不同不能命中");
+        assertNull(cache.lookup("列出所有客户"), "无关问题不能命中");
+    }
+
+    @Test
+    public void testOppositeOrderOrPolarityMiss() {
+        cache.put(answer("列出所有客户并按订单总金额降序排列"));
+        cache.put(answer("订单总金额最高的客户"));
+
+        assertNotNull(cache.lookup("请列出所有客户，按订单总金额降序排列"), "同向排序的改写应命中");
+        assertNotNull(cache.lookup("帮我查一下订单总金额最高的客户"), "同极性的改写应命中");
+
+        assertNull(cache.lookup("列出所有客户并按订单总金额升序排列"), "升序不能命中降序的结果");
+        assertNull(cache.lookup("列出所有客户并按订单总金额 ASC 排列"), "ASC 不能命中降序的结果");
+        assertNull(cache.lookup("订单总金额最低的客户"), "最低不能命中最高的结果");
+        assertNull(cache.lookup("订单总金额最少的客户"), "最少不能命中最高的结果");
+        assertNull(cache.lookup("订单总金额不是最高的客户"), "否定不能命中肯定的结果");
+    }
+
+    @Test
+    public void testPolarityWords() {
+        assertEquals(List.of("前", "最多"), SemanticQueryCache.polarity("订单最多的前10个客户"));
+        assertEquals(List.of("desc"), SemanticQueryCache.polarity("ORDER BY amount DESC"));
+        assertTrue(SemanticQueryCache.polarity("description of customers").isEmpty());
+    }
+
+    @Test
+    public void testEvictionAndSchemaInvalidation() {
+        cache.put(answer("列出所有客户"));
+        cache.put(answer("客户总数"));
+        cache.lookup("客户总数");
+        cache.put(answer("订单状态分布"));
+        assertEquals(2, cache.size(), "超过上限应淘汰");
+        assertNull(cache.lookup("列出所有客户"), "最久未命中的条目应被淘汰");
+
+        Mockito.when(mcpToolService.schemaEtagAsync()).thenReturn(Mono.just("\"v2\""));
+        assertNull(cache.lookup("客户总数"), "表结构变化后应清空缓存");
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -2,11 +2,27 @@ package com.example.mcp.controller;
 
 import com.example.mcp.dto.*;
 import com.example.mcp.service.DatabaseService;
+import com.example.mcp.service.QueryAdmission;
+import com.example.mcp.service.QueryCancelledException;
+import com.example.mcp.service.QueryRejectedException;
+import com.example.mcp.service.SchemaCatalog;
+import com.example.mcp.service.StatementWatchdog;
+import com.example.mcp.service.ToolBatchService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 @Slf4j
 @RestController
@@ -15,7 +31,26 @@ import java.util.*;
 @CrossOrigin(origins = "*") // 允许跨域访问，支持前端(8082)直接调用MCP Server(8083)
 public class McpController {
 
+    /**
+     * 流式结果的媒体类型（每行一个 JSON）
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * 列式结果的媒体类型（JSON 编码，见 ColumnarSqlResponse）
+     */
+    public static final String COLUMNAR_JSON_VALUE = "application/vnd.mcp.columnar+json";
+
+    /**
+     * 列式结果的二进制编码（CBOR）
+     */
+    public static final String COLUMNAR_CBOR_VALUE = "application/cbor";
+
     private final DatabaseService databaseService;
+    private final SchemaCatalog schemaCatalog;
+    private final ToolBatchService toolBatchService;
+    private final QueryAdmission queryAdmission;
+    private final StatementWatchdog statementWatchdog;
 
     /**
      * GET /mcp/tools - 列出所有可用工具
@@ -40,15 +75,43 @@ public class McpController {
         schemaTool.setInputSchema(schemaInputSchema);
         tools.add(schemaTool);
 
+        // Tool 1b: schema.getMany
+        ToolListResponse.Tool schemaManyTool = new ToolListResponse.Tool();
+        schemaManyTool.setName("schema.getMany");
+        schemaManyTool.setDescription("一次获取多张表的结构信息（支持 ETag / If-None-Match）");
+        ToolListResponse.InputSchema schemaManyInputSchema = new ToolListResponse.InputSchema();
+        schemaManyInputSchema.setType("object");
+        schemaManyInputSchema.setRequired(List.of("tables"));
+        Map<String, Object> schemaManyProps = new HashMap<>();
+        schemaManyProps.put("tables", Map.of("type", "array", "items", Map.of("type", "string"), "description", "表名列表"));
+        schemaManyInputSchema.setProperties(schemaManyProps);
+        schemaManyTool.setInputSchema(schemaManyInputSchema);
+        tools.add(schemaManyTool);
+
+        // Tool 1c: schema.getAll
+        ToolListResponse.Tool schemaAllTool = new ToolListResponse.Tool();
+        schemaAllTool.setName("schema.getAll");
+        schemaAllTool.setDescription("获取全部表的结构信息（支持 ETag / If-None-Match）");
+        ToolListResponse.InputSchema schemaAllInputSchema = new ToolListResponse.InputSchema();
+        schemaAllInputSchema.setType("object");
+        schemaAllInputSchema.setRequired(List.of());
+        schemaAllInputSchema.setProperties(Map.of());
+        schemaAllTool.setInputSchema(schemaAllInputSchema);
+        tools.add(schemaAllTool);
+
         // Tool 2: sql.run
         ToolListResponse.Tool sqlRunTool = new ToolListResponse.Tool();
         sqlRunTool.setName("sql.run");
-        sqlRunTool.setDescription("执行只读 SQL 查询（仅支持 SELECT 语句）");
+        sqlRunTool.setDescription("执行只读 SQL 查询（仅支持 SELECT 语句）；Accept: application/x-ndjson 时以 NDJSON 流式返回，"
+                + "Accept: application/vnd.mcp.columnar+json 或 application/cbor 时返回列式编码；"
+                + "预估代价过高的查询会被拒绝（errorType 为 QUERY_TOO_EXPENSIVE），较高的查询最多返回有限行数（truncated）");
         ToolListResponse.InputSchema sqlInputSchema = new ToolListResponse.InputSchema();
         sqlInputSchema.setType("object");
         sqlInputSchema.setRequired(List.of("sql"));
         Map<String, Object> sqlProps = new HashMap<>();
-        sqlProps.put("sql", Map.of("type", "string", "description", "只读 SQL 查询语句"));
+        sqlProps.put("sql", Map.of("type", "string", "description", "只读 SQL 查询语句，可使用 ? 占位符"));
+        sqlProps.put("params", Map.of("type", "array", "description", "按顺序绑定到 ? 占位符的参数（可选）"));
+        sqlProps.put("timeoutMs", Map.of("type", "integer", "description", "执行超时毫秒数（可选），超时后取消执行并返回 QUERY_TIMEOUT"));
         sqlInputSchema.setProperties(sqlProps);
         sqlRunTool.setInputSchema(sqlInputSchema);
         tools.add(sqlRunTool);
@@ -66,6 +129,37 @@ public class McpController {
         sqlValidateTool.setInputSchema(validateInputSchema);
         tools.add(sqlValidateTool);
 
+        // Tool 3b: sql.check / sql.explain
+        for (String name : List.of("sql.check", "sql.explain")) {
+            ToolListResponse.Tool sqlCheckTool = new ToolListResponse.Tool();
+            sqlCheckTool.setName(name);
+            sqlCheckTool.setDescription("sql.check".equals(name)
+                    ? "由数据库解析 SQL 并返回结果列的名称和类型，不执行查询"
+                    : "返回 SQL 的执行计划（EXPLAIN）及结果列，不执行查询");
+            ToolListResponse.InputSchema checkInputSchema = new ToolListResponse.InputSchema();
+            checkInputSchema.setType("object");
+            checkInputSchema.setRequired(List.of("sql"));
+            Map<String, Object> checkProps = new HashMap<>();
+            checkProps.put("sql", Map.of("type", "string", "description", "待检查的 SQL 语句，可使用 ? 占位符"));
+            checkProps.put("params", Map.of("type", "array", "description", "按顺序绑定到 ? 占位符的参数（可选）"));
+            checkInputSchema.setProperties(checkProps);
+            sqlCheckTool.setInputSchema(checkInputSchema);
+            tools.add(sqlCheckTool);
+        }
+
+        // Tool 4: batch
+        ToolListResponse.Tool batchTool = new ToolListResponse.Tool();
+        batchTool.setName("batch");
+        batchTool.setDescription("一次执行多个工具调用，服务端并发执行并按顺序返回结果");
+        ToolListResponse.InputSchema batchInputSchema = new ToolListResponse.InputSchema();
+        batchInputSchema.setType("object");
+        batchInputSchema.setRequired(List.of("calls"));
+        Map<String, Object> batchProps = new HashMap<>();
+        batchProps.put("calls", Map.of("type", "array", "description", "调用列表，每项为 {id, tool, arguments}"));
+        batchInputSchema.setProperties(batchProps);
+        batchTool.setInputSchema(batchInputSchema);
+        tools.add(batchTool);
+
         response.setTools(tools);
         return response;
     }
@@ -89,16 +183,68 @@ public class McpController {
         }
     }
 
+    /**
+     * POST /mcp/tools/schema.getMany - 一次返回多张表结构
+     * 响应带 ETag；请求头 If-None-Match 与当前 ETag 一致时返回 304
+     */
+    @PostMapping("/tools/schema.getMany")
+    public ResponseEntity<SchemaBatchResponse> getSchemaMany(
+            @RequestBody SchemaBatchRequest request,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("=== 收到 schema.getMany 请求: {} ===", request.getTables());
+
+        SchemaCatalog.Snapshot snapshot = schemaCatalog.snapshot();
+        if (snapshot.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.etag()).build();
+        }
+
+        List<String> tables = request.getTables() != null ? request.getTables() : List.of();
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .body(new SchemaBatchResponse(snapshot.version(), schemaCatalog.getMany(tables)));
+    }
+
+    /**
+     * GET/POST /mcp/tools/schema.getAll - 返回全部表结构（同样支持 ETag）
+     */
+    @RequestMapping(value = "/tools/schema.getAll", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<SchemaBatchResponse> getSchemaAll(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("=== 收到 schema.getAll 请求 ===");
+
+        SchemaCatalog.Snapshot snapshot = schemaCatalog.snapshot();
+        if (snapshot.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .body(new SchemaBatchResponse(snapshot.version(), schemaCatalog.getAll()));
+    }
+
+    /**
+     * POST /mcp/tools/schema.refresh - 表结构变更后重新加载目录
+     */
+    @PostMapping("/tools/schema.refresh")
+    public Map<String, Object> refreshSchema() {
+        SchemaCatalog.Snapshot snapshot = schemaCatalog.refresh();
+        Map<String, Object> result = new HashMap<>();
+        result.put("version", snapshot.version());
+        result.put("etag", snapshot.etag());
+        result.put("tables", snapshot.tables().keySet());
+        return result;
+    }
+
     /**
      * POST /mcp/tools/sql.run - 执行 SQL（真实数据库）
      */
-    @PostMapping("/tools/sql.run")
+    @PostMapping(value = "/tools/sql.run", produces = MediaType.APPLICATION_JSON_VALUE)
     public SqlResponse runSql(@RequestBody SqlRequest request) {
         log.info("=== 收到 sql.run 请求 ===");
-        log.info("SQL: {}", request.getSql());
+        log.info("SQL: {}, 参数: {}", request.getSql(), request.getParams());
         
         try {
-            SqlResponse response = databaseService.executeSql(request.getSql());
+            SqlResponse response = databaseService.executeSql(request.getSql(), request.getParams(),
+                    request.getTimeoutMs());
             log.info("sql.run 成功响应: {}", response);
             return response;
         } catch (Exception e) {
@@ -107,24 +253,142 @@ public class McpController {
         }
     }
 
+    /**
+     * POST /mcp/tools/sql.run（Accept: application/x-ndjson）- 流式执行 SQL
+     * 使用前向游标逐批读取并边读边写，结果集不会在服务端整体驻留内存
+     */
+    @PostMapping(value = "/tools/sql.run", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSql(@RequestBody SqlRequest request,
+                                                           HttpServletRequest servletRequest) {
+        log.info("=== 收到 sql.run 流式请求 ===");
+        log.info("SQL: {}, 参数: {}", request.getSql(), request.getParams());
+
+        // 在响应提交前完成校验和准入，非法 SQL / 参数或被拒绝的查询仍然返回普通的错误状态码
+        databaseService.checkReadOnly(request.getSql());
+        databaseService.toArgs(request.getParams());
+        StatementWatchdog.Execution execution = statementWatchdog.start(request.getTimeoutMs());
+        QueryAdmission.Ticket ticket;
+        try {
+            ticket = queryAdmission.admit(request.getSql());
+        } catch (RuntimeException e) {
+            execution.close();
+            throw e;
+        }
+
+        // 异步请求出错（写出失败、连接被容器关闭）或超时：结果已无人接收，取消正在执行的语句
+        // 容器超时（spring.mvc.async.request-timeout）按超时取消，配置上应大于 mcp.sql.timeout.max，由语句超时先到期
+        WebAsyncUtils.getAsyncManager(servletRequest).registerCallableInterceptor("sql.run.cancel",
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> Object handleTimeout(NativeWebRequest webRequest, Callable<T> task) {
+                        execution.cancelByTimeout();
+                        return RESULT_NONE;
+                    }
+
+                    @Override
+                    public <T> Object handleError(NativeWebRequest webRequest, Callable<T> task, Throwable t) {
+                        execution.cancelByClient();
+                        return RESULT_NONE;
+                    }
+                });
+
+        StreamingResponseBody body = out -> {
+            try (execution; ticket) {
+                databaseService.streamSql(request.getSql(), request.getParams(), ticket, execution, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * POST /mcp/tools/sql.run（Accept: application/vnd.mcp.columnar+json 或 application/cbor）- 列式结果
+     * 数值列为原始类型数组、字符串等列做字典编码，大结果集的体积和编解码开销远小于行式 JSON
+     */
+    @PostMapping(value = "/tools/sql.run", produces = {COLUMNAR_JSON_VALUE, COLUMNAR_CBOR_VALUE})
+    public ColumnarSqlResponse runSqlColumnar(@RequestBody SqlRequest request) {
+        log.info("=== 收到 sql.run 列式请求 ===");
+        log.info("SQL: {}, 参数: {}", request.getSql(), request.getParams());
+
+        try {
+            ColumnarSqlResponse response = databaseService.executeSqlColumnar(request.getSql(), request.getParams(),
+                    request.getTimeoutMs());
+            log.info("sql.run（列式）成功响应: {} 行, {} 列", response.getRowCount(), response.getColumns().size());
+            return response;
+        } catch (Exception e) {
+            log.error("=== sql.run（列式）处理失败 ===", e);
+            throw e;
+        }
+    }
+
     /**
      * POST /mcp/tools/sql.validate - 验证 SQL
      */
     @PostMapping("/tools/sql.validate")
     public Map<String, Object> validateSql(@RequestBody SqlRequest request) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("sql", request.getSql());
+        return databaseService.validateSqlResult(request.getSql());
+    }
 
-        boolean isValid = databaseService.validateSql(request.getSql());
+    /**
+     * POST /mcp/tools/sql.check - 解析 SQL 并返回结果列，不执行
+     */
+    @PostMapping("/tools/sql.check")
+    public SqlCheckResponse checkSql(@RequestBody SqlRequest request) {
+        return databaseService.checkSql(request.getSql(), request.getParams(), false);
+    }
 
-        if (isValid) {
-            result.put("valid", true);
-            result.put("message", "SQL 语法验证通过");
-        } else {
-            result.put("valid", false);
-            result.put("error", "SQL 包含非法操作或危险关键字");
+    /**
+     * POST /mcp/tools/sql.explain - 在 sql.check 的基础上返回执行计划，不执行
+     */
+    @PostMapping("/tools/sql.explain")
+    public SqlCheckResponse explainSql(@RequestBody SqlRequest request) {
+        return databaseService.checkSql(request.getSql(), request.getParams(), true);
+    }
+
+    /**
+     * 查询被准入控制拒绝：返回结构化错误，调用方可按 errorType 改写 SQL（422）或稍后重试（503）
+     */
+    @ExceptionHandler(QueryRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleQueryRejected(QueryRejectedException e) {
+        boolean throttled = QueryRejectedException.THROTTLED.equals(e.getErrorType());
+        HttpStatus status = throttled ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.UNPROCESSABLE_ENTITY;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", status.value());
+        body.put("errorType", e.getErrorType());
+        body.put("message", e.getMessage());
+        body.put("estimatedCost", e.getEstimatedCost());
+        body.put("maxCost", e.getMaxCost());
+        // 显式指定 JSON：NDJSON / 列式请求被拒绝时同样返回 JSON 错误体
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (throttled) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
         }
+        return response.body(body);
+    }
 
-        return result;
+    /**
+     * 查询执行中被取消：超时返回 504，调用方可缩小查询范围或增大 timeoutMs；客户端已离开时响应不会被接收
+     */
+    @ExceptionHandler(QueryCancelledException.class)
+    public ResponseEntity<Map<String, Object>> handleQueryCancelled(QueryCancelledException e) {
+        HttpStatus status = QueryCancelledException.TIMEOUT.equals(e.getErrorType())
+                ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.SERVICE_UNAVAILABLE;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", status.value());
+        body.put("errorType", e.getErrorType());
+        body.put("message", e.getMessage());
+        body.put("timeoutMs", e.getTimeoutMs());
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * POST /mcp/tools/batch - 一次请求执行多个工具调用（schema.* / sql.run / sql.validate / sql.check / sql.explain）
+     * 各调用在服务端并发执行，结果按请求顺序返回；单个调用失败只体现在对应结果的 error 中
+     */
+    @PostMapping("/tools/batch")
+    public ToolBatchResponse batch(@RequestBody ToolBatchRequest request) {
+        log.info("=== 收到 batch 请求: {} 个调用 ===", request.getCalls() != null ? request.getCalls().size() : 0);
+        return toolBatchService.execute(request);
     }
 }
@@ -0,0 +1,45 @@
+package com.example.mcp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 列式 SQL 查询结果（sql.run 的紧凑编码）
+ * 每列一个类型标签和一个值数组，数值列为原始类型数组，其余列做字典编码：
+ *   int / float / bool：values 为 long[] / double[] / boolean[]，空值行号记录在 nulls
+ *   decimal：values 为 long[] 的 unscaled 值，scale 为整列统一的小数位数（1234.50 → 123450、scale 2），空值行号记录在 nulls；
+ *     有取值超出 long 范围时改为字典编码，dictionary 为十进制字符串（不带 scale）
+ *   string / date / time / timestamp / other：dictionary 为去重后的取值，values 为 int[] 下标（-1 表示空值）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarSqlResponse {
+    private int rowCount;
+    private List<Column> columns;
+    /**
+     * 同 SqlResponse.truncated
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean truncated;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Column {
+        private String name;
+        private String type;
+        private Object values;
+        private List<Object> dictionary;
+        private int[] nulls;
+        /**
+         * 仅 decimal 列的 unscaled 编码使用
+         */
+        private Integer scale;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.mcp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchemaBatchRequest {
+    private List<String> tables;
+}
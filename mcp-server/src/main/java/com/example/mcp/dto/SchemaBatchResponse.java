@@ -0,0 +1,15 @@
+package com.example.mcp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchemaBatchResponse {
+    private long version;
+    private List<SchemaResponse> tables;
+}
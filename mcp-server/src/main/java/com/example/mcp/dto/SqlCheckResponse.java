@@ -0,0 +1,48 @@
+package com.example.mcp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * sql.check / sql.explain 的响应：只解析和规划 SQL，不执行
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SqlCheckResponse {
+    private String sql;
+    private boolean valid;
+    /**
+     * 结果列（列名 + 数据库类型名），由预编译语句的元数据得到
+     */
+    private List<Column> columns;
+    /**
+     * ? 占位符个数
+     */
+    private Integer parameterCount;
+    /**
+     * 执行计划（仅 sql.explain）
+     */
+    private String plan;
+    /**
+     * 优化器的预估代价（见 QueryAdmission），无法预估时不输出
+     */
+    private Double estimatedCost;
+    /**
+     * 失败类型：NOT_READ_ONLY / TABLE_NOT_FOUND / FIELD_NOT_FOUND / SQL_SYNTAX / QUERY_TOO_EXPENSIVE
+     */
+    private String errorType;
+    private String error;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Column {
+        private String name;
+        private String type;
+    }
+}
@@ -4,9 +4,26 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class SqlRequest {
     private String sql;
+
+    /**
+     * 按顺序绑定到 SQL 中 ? 占位符的参数（可选，仅支持字符串、数字、布尔值和 null）
+     */
+    private List<Object> params;
+
+    /**
+     * 本次执行的超时时间（毫秒，可选）；为空时使用 mcp.sql.timeout.default，超过 mcp.sql.timeout.max 时按上限处理
+     * 调用方应传入自己还愿意等待的时间，放弃等待时服务端同时取消执行
+     */
+    private Long timeoutMs;
+
+    public SqlRequest(String sql) {
+        this.sql = sql;
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.mcp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,4 +14,9 @@ public class SqlResponse {
     private List<String> columns;
     private List<List<Object>> rows;
     private int rowCount;
+    /**
+     * 按重查询降级执行且达到行数上限（mcp.sql.admission.heavy-max-rows），结果被截断；未截断时不输出
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean truncated;
 }
@@ -0,0 +1,27 @@
+package com.example.mcp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ToolBatchRequest {
+    private List<Call> calls;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Call {
+        /**
+         * 调用方自定义的标识，原样带回结果中（可选）
+         */
+        private String id;
+        private String tool;
+        private Map<String, Object> arguments;
+    }
+}
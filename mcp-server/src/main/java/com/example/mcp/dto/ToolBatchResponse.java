@@ -0,0 +1,38 @@
+package com.example.mcp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ToolBatchResponse {
+    /**
+     * 与请求中 calls 顺序一一对应
+     */
+    private List<Result> results;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private String id;
+        private String tool;
+        private boolean success;
+        /**
+         * 成功时为对应单工具接口的响应体
+         */
+        private Object result;
+        private String error;
+        /**
+         * 被准入控制拒绝或执行被取消时的失败类型（QUERY_TOO_EXPENSIVE / QUERY_THROTTLED / QUERY_TIMEOUT）
+         */
+        private String errorType;
+        private long elapsedMs;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.mcp.service;
+
+import com.example.mcp.dto.ColumnarSqlResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 直接从 ResultSet 按列构建 {@link ColumnarSqlResponse}，不经过按行的 List<List<Object>>
+ */
+class ColumnarResultExtractor implements ResultSetExtractor<ColumnarSqlResponse> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ObjectMapper objectMapper;
+
+    ColumnarResultExtractor(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ColumnarSqlResponse extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        ColumnBuilder[] builders = new ColumnBuilder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            builders[i] = newBuilder(metaData.getColumnLabel(i + 1), metaData.getColumnType(i + 1));
+        }
+
+        int rowCount = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                builders[i].append(rs, i + 1, rowCount);
+            }
+            rowCount++;
+        }
+
+        List<ColumnarSqlResponse.Column> columns = new ArrayList<>(columnCount);
+        for (ColumnBuilder builder : builders) {
+            columns.add(builder.build(rowCount));
+        }
+        return new ColumnarSqlResponse(rowCount, columns, false);
+    }
+
+    private ColumnBuilder newBuilder(String name, int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> new LongColumn(name);
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> new DoubleColumn(name, "float");
+            case Types.DECIMAL, Types.NUMERIC -> new DecimalColumn(name);
+            case Types.BOOLEAN, Types.BIT -> new BooleanColumn(name);
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.CLOB ->
+                    new DictionaryColumn(name, "string");
+            case Types.DATE -> new DictionaryColumn(name, "date");
+            case Types.TIME, Types.TIME_WITH_TIMEZONE -> new DictionaryColumn(name, "time");
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new DictionaryColumn(name, "timestamp");
+            default -> new DictionaryColumn(name, "other");
+        };
+    }
+
+    private abstract static class ColumnBuilder {
+        final String name;
+        int[] nulls = new int[0];
+        int nullCount;
+
+        ColumnBuilder(String name) {
+            this.name = name;
+        }
+
+        abstract void append(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+        abstract ColumnarSqlResponse.Column build(int rowCount);
+
+        void markNull(int row) {
+            if (nullCount == nulls.length) {
+                nulls = Arrays.copyOf(nulls, Math.max(8, nullCount * 2));
+            }
+            nulls[nullCount++] = row;
+        }
+
+        int[] trimmedNulls() {
+            return nullCount == 0 ? null : Arrays.copyOf(nulls, nullCount);
+        }
+    }
+
+    private static final class LongColumn extends ColumnBuilder {
+        long[] values = new long[INITIAL_CAPACITY];
+
+        LongColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = rs.getLong(columnIndex);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+        }
+
+        @Override
+        ColumnarSqlResponse.Column build(int rowCount) {
+            return new ColumnarSqlResponse.Column(name, "int", Arrays.copyOf(values, rowCount), null, trimmedNulls(), null);
+        }
+    }
+
+    private static final class DoubleColumn extends ColumnBuilder {
+        final String type;
+        double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleColumn(String name, String type) {
+            super(name);
+            this.type = type;
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = rs.getDouble(columnIndex);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+        }
+
+        @Override
+        ColumnarSqlResponse.Column build(int rowCount) {
+            return new ColumnarSqlResponse.Column(name, type, Arrays.copyOf(values, rowCount), null, trimmedNulls(), null);
+        }
+    }
+
+    /**
+     * 定点数列：按整列最大的小数位数编码为 unscaled long，保留精度和 scale（与行式结果中的 BigDecimal 一致）
+     * 取值超出 long 范围时改为十进制字符串的字典编码
+     */
+    private static final class DecimalColumn extends ColumnBuilder {
+        BigDecimal[] values = new BigDecimal[INITIAL_CAPACITY];
+
+        DecimalColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = rs.getBigDecimal(columnIndex);
+            if (values[row] == null) {
+                markNull(row);
+            }
+        }
+
+        @Override
+        ColumnarSqlResponse.Column build(int rowCount) {
+            int scale = 0;
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] != null) {
+                    scale = Math.max(scale, values[i].scale());
+                }
+            }
+            long[] unscaled = new long[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+                BigInteger value = values[i].setScale(scale).unscaledValue();
+                if (value.bitLength() >= Long.SIZE) {
+                    return dictionary(rowCount);
+                }
+                unscaled[i] = value.longValue();
+            }
+            return new ColumnarSqlResponse.Column(name, "decimal", unscaled, null, trimmedNulls(), scale);
+        }
+
+        private ColumnarSqlResponse.Column dictionary(int rowCount) {
+            Map<String, Integer> codes = new HashMap<>();
+            List<Object> dictionary = new ArrayList<>();
+            int[] indexes = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                indexes[i] = values[i] == null ? -1 : codes.computeIfAbsent(values[i].toPlainString(), v -> {
+                    dictionary.add(v);
+                    return dictionary.size() - 1;
+                });
+            }
+            return new ColumnarSqlResponse.Column(name, "decimal", indexes, dictionary, null, null);
+        }
+    }
+
+    private static final class BooleanColumn extends ColumnBuilder {
+        boolean[] values = new boolean[INITIAL_CAPACITY];
+
+        BooleanColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = rs.getBoolean(columnIndex);
+            if (rs.wasNull()) {
+                markNull(row);
+            }
+        }
+
+        @Override
+        ColumnarSqlResponse.Column build(int rowCount) {
+            return new ColumnarSqlResponse.Column(name, "bool", Arrays.copyOf(values, rowCount), null, trimmedNulls(), null);
+        }
+    }
+
+    /**
+     * 字典编码列：取值去重后存入 dictionary，每行只记录下标
+     * 非字符串取值先按 JSON 接口的序列化规则转换，保证解码后与行式结果一致
+     */
+    private final class DictionaryColumn extends ColumnBuilder {
+        final String type;
+        final Map<Object, Integer> codes = new HashMap<>();
+        final List<Object> dictionary = new ArrayList<>();
+        int[] values = new int[INITIAL_CAPACITY];
+
+        DictionaryColumn(String name, String type) {
+            super(name);
+            this.type = type;
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            Object value = rs.getObject(columnIndex);
+            if (value == null) {
+                values[row] = -1;
+                return;
+            }
+            values[row] = codes.computeIfAbsent(value, v -> {
+                dictionary.add(v instanceof String ? v : objectMapper.convertValue(v, Object.class));
+                return dictionary.size() - 1;
+            });
+        }
+
+        @Override
+        ColumnarSqlResponse.Column build(int rowCount) {
+            return new ColumnarSqlResponse.Column(name, type, Arrays.copyOf(values, rowCount), dictionary, null, null);
+        }
+    }
+}
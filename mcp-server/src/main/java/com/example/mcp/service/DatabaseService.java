@@ -1,16 +1,36 @@
 package com.example.mcp.service;
 
+import com.example.mcp.dto.ColumnarSqlResponse;
 import com.example.mcp.dto.SchemaResponse;
+import com.example.mcp.dto.SqlCheckResponse;
 import com.example.mcp.dto.SqlResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.h2.api.ErrorCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
-import org.springframework.jdbc.support.rowset.SqlRowSetMetaData;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -18,44 +38,27 @@ import java.util.List;
 public class DatabaseService {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SchemaCatalog schemaCatalog;
+    private final QueryResultCache queryResultCache;
+    private final QueryAdmission queryAdmission;
+    private final StatementWatchdog statementWatchdog;
 
     /**
-     * 获取表结构信息
+     * 流式查询每次从游标拉取的行数，同时也是响应的 flush 间隔
+     */
+    @Value("${mcp.sql.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    /**
+     * 获取表结构信息（读取内存中的表结构目录，不再逐次查询 INFORMATION_SCHEMA）
      */
     public SchemaResponse getTableSchema(String tableName) {
         log.info("开始查询表结构: {}", tableName);
-        
-        try {
-            // 验证表是否存在
-            String checkTableSql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = UPPER(?)";
-            log.info("执行验证 SQL: {}, 参数: {}", checkTableSql, tableName);
-            Integer count = jdbcTemplate.queryForObject(checkTableSql, Integer.class, tableName);
-            log.info("表存在检查结果: {}", count);
-
-            if (count == null || count == 0) {
-                throw new IllegalArgumentException("表 '" + tableName + "' 不存在，可用表：customers, orders, order_items");
-            }
 
-            // 查询列信息（H2 2.x 使用 DATA_TYPE 而非 TYPE_NAME）
-            String columnSql = """
-                SELECT COLUMN_NAME, DATA_TYPE, REMARKS
-                FROM INFORMATION_SCHEMA.COLUMNS
-                WHERE TABLE_NAME = UPPER(?)
-                ORDER BY ORDINAL_POSITION
-                """;
-            
-            log.info("执行列查询 SQL: {}, 参数: {}", columnSql, tableName);
-            List<SchemaResponse.Column> columns = jdbcTemplate.query(columnSql, (rs, rowNum) -> {
-                String name = rs.getString("COLUMN_NAME");
-                String type = rs.getString("DATA_TYPE");
-                String comment = rs.getString("REMARKS");
-                log.debug("查询到列: name={}, type={}, comment={}", name, type, comment);
-                return new SchemaResponse.Column(name, type, comment != null ? comment : "");
-            }, tableName);
-
-            log.info("成功查询到 {} 列", columns.size());
-            SchemaResponse response = new SchemaResponse(tableName, columns);
-            log.info("返回响应: {}", response);
+        try {
+            SchemaResponse response = schemaCatalog.get(tableName);
+            log.info("成功查询到 {} 列", response.getColumns().size());
             return response;
         } catch (Exception e) {
             log.error("查询表结构失败: tableName={}", tableName, e);
@@ -67,45 +70,391 @@ public class DatabaseService {
      * 执行只读 SQL 查询
      */
     public SqlResponse executeSql(String sql) {
-        log.info("开始执行 SQL: {}", sql);
+        return executeSql(sql, List.of());
+    }
+
+    /**
+     * 执行只读参数化 SQL 查询（params 依次绑定到 ? 占位符）
+     * SQL 文本保持不变时，H2 会话内的语句缓存（QUERY_CACHE_SIZE）可直接复用已解析的执行计划
+     */
+    public SqlResponse executeSql(String sql, List<Object> params) {
+        return executeSql(sql, params, null);
+    }
+
+    /**
+     * 执行只读参数化 SQL 查询，超过 timeoutMs（为空时取默认值，不超过服务端上限）时取消执行
+     */
+    public SqlResponse executeSql(String sql, List<Object> params, Long timeoutMs) {
+        log.info("开始执行 SQL: {}, 参数: {}", sql, params);
         
         try {
             // 安全检查：仅允许 SELECT
-            String trimmedSql = sql.trim().toUpperCase();
-            if (!trimmedSql.startsWith("SELECT")) {
-                throw new IllegalArgumentException("仅支持 SELECT 查询，不允许执行 " + trimmedSql.split(" ")[0] + " 语句");
+            checkReadOnly(sql);
+            Object[] args = toArgs(params);
+
+            // 相同（规范化后）SQL + 参数且相关表未变更时直接返回缓存结果
+            SqlResponse cached = queryResultCache.get(sql, params);
+            if (cached != null) {
+                log.info("命中结果缓存，返回 {} 行", cached.getRowCount());
+                return cached;
             }
+            // 执行前记下失效代数，执行期间相关表被写入时不缓存这次的结果
+            long generation = queryResultCache.generation(sql);
 
-            // 执行查询
-            SqlRowSet rowSet = jdbcTemplate.queryForRowSet(sql);
-            SqlRowSetMetaData metaData = rowSet.getMetaData();
+            // 截止时间从这里开始计算（包含准入排队）；准入控制：预估代价过高时拒绝，较高时降级为限行数的重查询
+            try (StatementWatchdog.Execution execution = statementWatchdog.start(timeoutMs);
+                 QueryAdmission.Ticket ticket = queryAdmission.admit(sql)) {
+                ResultSetExtractor<SqlResponse> extractor = rs -> toSqlResponse(rs, ticket);
+                SqlResponse response = execute(execution, () -> jdbcTemplate.query(sql,
+                        limited(args, ticket.maxRows(), execution), extractor));
 
-            // 提取列名
-            List<String> columns = new ArrayList<>();
-            int columnCount = metaData.getColumnCount();
+                log.info("成功执行 SQL，返回 {} 行", response.getRowCount());
+                queryResultCache.put(sql, params, response, generation);
+                return response;
+            }
+        } catch (Exception e) {
+            log.error("执行 SQL 失败: {}", sql, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 按行读取结果集
+     */
+    private SqlResponse toSqlResponse(ResultSet rs, QueryAdmission.Ticket ticket) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+
+        // 提取列名
+        List<String> columns = new ArrayList<>();
+        int columnCount = metaData.getColumnCount();
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(metaData.getColumnLabel(i));
+        }
+        log.info("查询列: {}", columns);
+
+        // 提取行数据
+        List<List<Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            List<Object> row = new ArrayList<>();
             for (int i = 1; i <= columnCount; i++) {
-                columns.add(metaData.getColumnLabel(i));
+                row.add(rs.getObject(i));
             }
-            log.info("查询列: {}", columns);
-
-            // 提取行数据
-            List<List<Object>> rows = new ArrayList<>();
-            while (rowSet.next()) {
-                List<Object> row = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rowSet.getObject(i));
+            rows.add(row);
+        }
+        return new SqlResponse(columns, rows, rows.size(), ticket.truncated(rows.size()));
+    }
+
+    /**
+     * 执行只读 SQL 查询，直接从结果集按列编码（见 {@link ColumnarSqlResponse}）
+     */
+    public ColumnarSqlResponse executeSqlColumnar(String sql, List<Object> params) {
+        return executeSqlColumnar(sql, params, null);
+    }
+
+    /**
+     * 列式执行，超时处理同 {@link #executeSql(String, List, Long)}
+     */
+    public ColumnarSqlResponse executeSqlColumnar(String sql, List<Object> params, Long timeoutMs) {
+        log.info("开始执行 SQL（列式）: {}, 参数: {}", sql, params);
+
+        try {
+            checkReadOnly(sql);
+            Object[] args = toArgs(params);
+            try (StatementWatchdog.Execution execution = statementWatchdog.start(timeoutMs);
+                 QueryAdmission.Ticket ticket = queryAdmission.admit(sql)) {
+                ColumnarSqlResponse response = execute(execution, () -> jdbcTemplate.query(sql,
+                        limited(args, ticket.maxRows(), execution), new ColumnarResultExtractor(objectMapper)));
+                if (response != null) {
+                    response.setTruncated(ticket.truncated(response.getRowCount()));
                 }
-                rows.add(row);
+                log.info("成功执行 SQL（列式），返回 {} 行", response != null ? response.getRowCount() : 0);
+                return response;
             }
-
-            log.info("成功执行 SQL，返回 {} 行", rows.size());
-            return new SqlResponse(columns, rows, rows.size());
         } catch (Exception e) {
             log.error("执行 SQL 失败: {}", sql, e);
             throw e;
         }
     }
 
+    /**
+     * 流式执行只读 SQL 查询，以 NDJSON 格式边读边写
+     * 输出格式（每行一个 JSON）：
+     *   {"columns":["ID","NAME"]}
+     *   [1,"张伟"]
+     *   ...
+     *   {"rowCount":n}
+     * 执行中途出错时最后一行为 {"error":"...","rowCount":n}；降级为重查询且达到行数上限时末行带 "truncated":true
+     * 准入由调用方在响应提交前完成（见 {@link QueryAdmission#admit(String)}），ticket 和 execution 由调用方关闭
+     * 执行中被取消（超时或客户端离开）时：尚未输出时抛出 QueryCancelledException，已输出时末行带 errorType
+     *
+     * @return 写出的行数
+     */
+    public long streamSql(String sql, List<Object> params, QueryAdmission.Ticket ticket,
+                          StatementWatchdog.Execution execution, OutputStream out) {
+        log.info("开始流式执行 SQL: {}, 参数: {}", sql, params);
+        checkReadOnly(sql);
+        Object[] args = toArgs(params);
+
+        Long rowCount = execute(execution, () -> jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            boolean lazy = enableLazyExecution(con);
+            try (PreparedStatement ps = con.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(streamFetchSize);
+                ps.setMaxRows(ticket.maxRows());
+                execution.bind(ps);
+                for (int i = 0; i < args.length; i++) {
+                    ps.setObject(i + 1, args[i]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return writeNdjson(rs, ticket, execution, out);
+                }
+            } finally {
+                if (lazy) {
+                    disableLazyExecution(con);
+                }
+            }
+        }));
+
+        log.info("流式执行 SQL 完成，返回 {} 行", rowCount);
+        return rowCount != null ? rowCount : 0;
+    }
+
+    /**
+     * 将结果集逐行写为 NDJSON，每 fetchSize 行 flush 一次
+     */
+    private long writeNdjson(ResultSet rs, QueryAdmission.Ticket ticket, StatementWatchdog.Execution execution,
+                             OutputStream out) throws SQLException {
+        long rowCount = 0;
+        try {
+            JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+            gen.setRootValueSeparator(null);
+
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("columns");
+            for (int i = 1; i <= columnCount; i++) {
+                gen.writeString(metaData.getColumnLabel(i));
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+            gen.flush();
+
+            try {
+                while (rs.next()) {
+                    gen.writeStartArray();
+                    for (int i = 1; i <= columnCount; i++) {
+                        gen.writeObject(rs.getObject(i));
+                    }
+                    gen.writeEndArray();
+                    gen.writeRaw('\n');
+                    if (++rowCount % streamFetchSize == 0) {
+                        gen.flush();
+                    }
+                }
+            } catch (SQLException e) {
+                // 表头已经发出，无法再改 HTTP 状态码，只能在流末尾报告错误
+                log.error("流式读取结果失败，已输出 {} 行", rowCount, e);
+                gen.writeStartObject();
+                RuntimeException failure = execution.translate(new IllegalStateException(e.getMessage(), e));
+                gen.writeStringField("error", failure.getMessage());
+                if (failure instanceof QueryCancelledException cancelled) {
+                    gen.writeStringField("errorType", cancelled.getErrorType());
+                }
+                gen.writeNumberField("rowCount", rowCount);
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                gen.flush();
+                return rowCount;
+            }
+
+            gen.writeStartObject();
+            gen.writeNumberField("rowCount", rowCount);
+            if (ticket.truncated(rowCount)) {
+                gen.writeBooleanField("truncated", true);
+            }
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+            gen.flush();
+            return rowCount;
+        } catch (IOException e) {
+            // 客户端断开等写出失败：直接中断读取，释放游标和连接
+            execution.cancelByClient();
+            throw new UncheckedIOException("写出流式结果失败（已输出 " + rowCount + " 行）", e);
+        }
+    }
+
+    /**
+     * H2 默认会把整个结果集物化在内存里，开启 LAZY_QUERY_EXECUTION 后才是真正的前向游标
+     */
+    private boolean enableLazyExecution(Connection con) throws SQLException {
+        if (!"H2".equals(con.getMetaData().getDatabaseProductName())) {
+            return false;
+        }
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        return true;
+    }
+
+    private void disableLazyExecution(Connection con) {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION FALSE");
+        } catch (SQLException e) {
+            log.warn("恢复 LAZY_QUERY_EXECUTION 失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * sql.check / sql.explain：只让数据库解析和规划 SQL，不执行
+     * - prepareStatement 时 H2 完成语法解析和表、列绑定，错误在这一步抛出
+     * - 结果列的名称和类型来自预编译语句的元数据，无需取数据
+     * - explain 为 true 时额外执行 EXPLAIN（只生成计划，不扫描数据）
+     * - 附带优化器的预估代价，超过准入上限时与 sql.run 一样判为 QUERY_TOO_EXPENSIVE
+     * 耗时与数据量无关，用于替代以 LIMIT 1 实际执行的校验方式
+     */
+    public SqlCheckResponse checkSql(String sql, List<Object> params, boolean explain) {
+        log.info("开始检查 SQL: {}", sql);
+
+        SqlCheckResponse response = new SqlCheckResponse();
+        response.setSql(sql);
+        try {
+            checkReadOnly(sql);
+        } catch (IllegalArgumentException e) {
+            response.setErrorType("NOT_READ_ONLY");
+            response.setError(e.getMessage());
+            return response;
+        }
+        Object[] args = toArgs(params);
+
+        return jdbcTemplate.execute((ConnectionCallback<SqlCheckResponse>) con -> {
+            try {
+                try (PreparedStatement ps = con.prepareStatement(sql)) {
+                    ResultSetMetaData metaData = ps.getMetaData();
+                    List<SqlCheckResponse.Column> columns = new ArrayList<>();
+                    for (int i = 1; metaData != null && i <= metaData.getColumnCount(); i++) {
+                        columns.add(new SqlCheckResponse.Column(metaData.getColumnLabel(i), metaData.getColumnTypeName(i)));
+                    }
+                    response.setColumns(columns);
+                    response.setParameterCount(ps.getParameterMetaData().getParameterCount());
+                }
+                double cost = queryAdmission.estimateCost(con, sql);
+                if (cost >= 0) {
+                    response.setEstimatedCost(cost);
+                }
+                if (explain) {
+                    response.setPlan(explainPlan(con, sql, args, response.getParameterCount()));
+                }
+                String rejection = queryAdmission.checkBudget(cost);
+                if (rejection != null) {
+                    log.info("SQL 检查未通过: {}", rejection);
+                    response.setErrorType(QueryRejectedException.TOO_EXPENSIVE);
+                    response.setError(rejection);
+                    return response;
+                }
+                response.setValid(true);
+            } catch (SQLException e) {
+                log.info("SQL 检查未通过: {}", e.getMessage());
+                response.setErrorType(classifySqlError(e));
+                response.setError(e.getMessage());
+            }
+            return response;
+        });
+    }
+
+    private String explainPlan(Connection con, String sql, Object[] args, int parameterCount) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("EXPLAIN " + sql)) {
+            // 未提供的参数按 NULL 绑定，EXPLAIN 只需要语句结构
+            for (int i = 0; i < parameterCount; i++) {
+                ps.setObject(i + 1, i < args.length ? args[i] : null);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().trim();
+        }
+    }
+
+    /**
+     * 绑定参数、限制返回行数（0 表示不限制），并把语句登记到 execution 以便超时或客户端离开时取消
+     */
+    private PreparedStatementSetter limited(Object[] args, int maxRows, StatementWatchdog.Execution execution) {
+        PreparedStatementSetter argumentSetter = new ArgumentPreparedStatementSetter(args);
+        return ps -> {
+            ps.setMaxRows(maxRows);
+            execution.bind(ps);
+            argumentSetter.setValues(ps);
+        };
+    }
+
+    /**
+     * 执行失败时，把由取消导致的异常（H2 57014，经 Spring 转换后类型不固定）统一转换为 QueryCancelledException
+     */
+    private <T> T execute(StatementWatchdog.Execution execution, Supplier<T> action) {
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            throw execution.translate(e);
+        }
+    }
+
+    private String classifySqlError(SQLException e) {
+        return switch (e.getErrorCode()) {
+            case ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, ErrorCode.TABLE_OR_VIEW_NOT_FOUND_WITH_CANDIDATES_2,
+                    ErrorCode.TABLE_OR_VIEW_NOT_FOUND_DATABASE_EMPTY_1, ErrorCode.SCHEMA_NOT_FOUND_1 -> "TABLE_NOT_FOUND";
+            case ErrorCode.COLUMN_NOT_FOUND_1 -> "FIELD_NOT_FOUND";
+            default -> "SQL_SYNTAX";
+        };
+    }
+
+    /**
+     * 校验并转换绑定参数；只接受 JSON 标量，数组 / 对象无法映射到 JDBC 参数
+     */
+    public Object[] toArgs(List<Object> params) {
+        if (params == null || params.isEmpty()) {
+            return new Object[0];
+        }
+        for (Object param : params) {
+            if (param != null && !(param instanceof String || param instanceof Number || param instanceof Boolean)) {
+                throw new IllegalArgumentException("SQL 参数仅支持字符串、数字、布尔值或 null，不支持: " + param);
+            }
+        }
+        return params.toArray();
+    }
+
+    /**
+     * 安全检查：仅允许 SELECT
+     */
+    public void checkReadOnly(String sql) {
+        String trimmedSql = sql.trim().toUpperCase();
+        if (!trimmedSql.startsWith("SELECT")) {
+            throw new IllegalArgumentException("仅支持 SELECT 查询，不允许执行 " + trimmedSql.split(" ")[0] + " 语句");
+        }
+    }
+
+    /**
+     * sql.validate 工具的响应体
+     */
+    public Map<String, Object> validateSqlResult(String sql) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("sql", sql);
+
+        if (validateSql(sql)) {
+            result.put("valid", true);
+            result.put("message", "SQL 语法验证通过");
+        } else {
+            result.put("valid", false);
+            result.put("error", "SQL 包含非法操作或危险关键字");
+        }
+
+        return result;
+    }
+
     /**
      * 验证 SQL 语法（简单实现）
      */
@@ -0,0 +1,243 @@
+package com.example.mcp.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 合成数据集生成器（customers / orders / order_items）
+ * - 规模由比例因子决定：SF1 = 1 万客户、25 万订单、约 100 万订单明细，SF100 约 1 亿订单明细；支持小数（如 0.01）
+ * - 保留真实业务的偏斜：城市按 Zipf 分布（一线城市客户最多）、少数活跃客户贡献多数订单、
+ *   订单量逐月增长且双十一和年末有高峰、商品销量按 Zipf 分布（头部商品占大头）、近期订单多为未完成状态
+ * - 相同的比例因子和种子生成完全相同的数据；按行流式输出给 Sink，不在内存中保留数据
+ */
+public class DatasetGenerator {
+
+    public static final long CUSTOMERS_PER_SF = 10_000;
+    public static final long ORDERS_PER_SF = 250_000;
+
+    /**
+     * 每个订单平均的明细数（1 + 几何分布），订单明细约为订单数的 4 倍
+     */
+    private static final double MEAN_ITEMS_PER_ORDER = 4.0;
+
+    private static final LocalDate FIRST_ORDER_DATE = LocalDate.of(2024, 1, 1);
+    private static final LocalDate LAST_ORDER_DATE = LocalDate.of(2025, 12, 31);
+
+    private static final List<String> CITIES = List.of(
+            "北京市", "上海市", "深圳市", "广州市", "杭州市", "成都市", "重庆市", "南京市",
+            "武汉市", "西安市", "天津市", "苏州市", "郑州市", "长沙市", "青岛市");
+
+    private static final List<String> SURNAMES = List.of(
+            "王", "李", "张", "刘", "陈", "杨", "赵", "黄", "周", "吴", "徐", "孙", "胡", "朱", "高", "林", "何", "郭", "马", "罗");
+
+    private static final List<String> GIVEN_NAMES = List.of(
+            "伟", "芳", "娜", "敏", "静", "强", "磊", "洋", "艳", "勇", "军", "杰", "娟", "涛", "明", "超", "秀英", "晓", "华", "平",
+            "建国", "子涵", "浩然", "欣怡", "梓萱", "宇轩", "思远", "雨桐", "俊杰", "佳怡");
+
+    /**
+     * 商品目录（名称、单价），按热度从高到低排列，销量按排名服从 Zipf 分布
+     */
+    private record Product(String name, BigDecimal price) {
+    }
+
+    private static final List<Product> PRODUCTS = List.of(
+            product("无线蓝牙耳机", "299.00"), product("手机壳", "50.00"), product("充电宝", "200.00"),
+            product("数据线", "30.00"), product("保温杯", "120.00"), product("钢化膜", "30.00"),
+            product("iPhone 15 Pro", "7999.00"), product("机械键盘", "899.00"), product("AirPods Pro", "1800.00"),
+            product("充电器", "50.00"), product("鼠标垫大号", "60.00"), product("运动袜", "40.00"),
+            product("T恤", "100.00"), product("台灯", "150.00"), product("保鲜盒套装", "100.00"),
+            product("iPad Air 平板电脑", "4499.00"), product("Apple Watch", "3500.00"), product("U盘128G", "60.00"),
+            product("休闲鞋", "580.00"), product("便携餐具套装", "70.00"), product("HDMI线", "100.00"),
+            product("Switch游戏机", "2200.00"), product("养生壶", "300.00"), product("SSD固态硬盘2TB", "1200.00"),
+            product("书包减负", "350.00"), product("三脚架", "100.00"), product("保温饭盒", "200.00"),
+            product("MacBook Air M2", "6500.00"), product("儿童手表", "600.00"), product("乐高套装", "500.00"),
+            product("iPhone 16 Pro", "8999.00"), product("PS5游戏机", "3500.00"), product("Magic Keyboard", "800.00"),
+            product("NAS存储", "2000.00"), product("VR眼镜", "2000.00"), product("书桌", "1500.00"),
+            product("iPad Pro", "8000.00"), product("Mac mini", "5000.00"), product("3D打印机", "1500.00"),
+            product("MacBook Pro 14", "15000.00"));
+
+    /**
+     * 订单行输出目标（CSV 文件或批量 JDBC）
+     */
+    public interface Sink {
+
+        void customer(long id, String name, String email, String phone, String city, LocalDateTime createdAt);
+
+        void order(long id, long customerId, LocalDate orderDate, BigDecimal totalAmount, String status);
+
+        void orderItem(long id, long orderId, String productName, int quantity, BigDecimal unitPrice, BigDecimal subtotal);
+    }
+
+    /**
+     * 实际生成的行数
+     */
+    public record Counts(long customers, long orders, long orderItems) {
+
+        public long total() {
+            return customers + orders + orderItems;
+        }
+    }
+
+    private final long customerCount;
+    private final long orderCount;
+    private final long seed;
+
+    private final double[] cityCdf = zipfCdf(CITIES.size(), 1.0);
+    private final double[] productCdf = zipfCdf(PRODUCTS.size(), 1.1);
+    private final double[] dayCdf;
+    private final int dayCount;
+
+    public DatasetGenerator(double scaleFactor, long seed) {
+        if (scaleFactor <= 0) {
+            throw new IllegalArgumentException("比例因子必须大于 0: " + scaleFactor);
+        }
+        this.customerCount = Math.max(1, Math.round(CUSTOMERS_PER_SF * scaleFactor));
+        this.orderCount = Math.max(1, Math.round(ORDERS_PER_SF * scaleFactor));
+        this.seed = seed;
+        this.dayCount = (int) ChronoUnit.DAYS.between(FIRST_ORDER_DATE, LAST_ORDER_DATE) + 1;
+        this.dayCdf = dayCdf();
+    }
+
+    public long customerCount() {
+        return customerCount;
+    }
+
+    public long orderCount() {
+        return orderCount;
+    }
+
+    /**
+     * 生成全部数据：先输出所有客户，再依次输出每个订单及其明细（订单总金额等于明细小计之和）
+     */
+    public Counts generate(Sink sink) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        for (long id = 1; id <= customerCount; id++) {
+            String name = SURNAMES.get(random.nextInt(SURNAMES.size())) + GIVEN_NAMES.get(random.nextInt(GIVEN_NAMES.size()));
+            String city = CITIES.get(sample(cityCdf, random.nextDouble()));
+            String phone = "1" + (3 + random.nextInt(7)) + String.format("%09d", id % 1_000_000_000L);
+            LocalDateTime createdAt = FIRST_ORDER_DATE.minusDays(random.nextInt(365)).atStartOfDay()
+                    .plusSeconds(random.nextInt(86_400));
+            sink.customer(id, name, "customer" + id + "@example.com", phone, city, createdAt);
+        }
+
+        long itemId = 0;
+        BigDecimal[] subtotals = new BigDecimal[64];
+        int[] products = new int[64];
+        int[] quantities = new int[64];
+        for (long orderId = 1; orderId <= orderCount; orderId++) {
+            // 活跃度偏斜：u³ 使编号小的客户被选中的概率更高（约 20% 的客户贡献近 60% 的订单）
+            double u = random.nextDouble();
+            long customerId = 1 + (long) (u * u * u * customerCount);
+            int dayIndex = sample(dayCdf, random.nextDouble());
+            LocalDate orderDate = FIRST_ORDER_DATE.plusDays(dayIndex);
+
+            int items = Math.min(subtotals.length, 1 + geometric(random, MEAN_ITEMS_PER_ORDER - 1));
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < items; i++) {
+                products[i] = sample(productCdf, random.nextDouble());
+                quantities[i] = quantity(random);
+                subtotals[i] = PRODUCTS.get(products[i]).price().multiply(BigDecimal.valueOf(quantities[i]));
+                total = total.add(subtotals[i]);
+            }
+            sink.order(orderId, customerId, orderDate, total.setScale(2, RoundingMode.UNNECESSARY),
+                    status(random, dayCount - 1 - dayIndex));
+            for (int i = 0; i < items; i++) {
+                Product product = PRODUCTS.get(products[i]);
+                sink.orderItem(++itemId, orderId, product.name(), quantities[i], product.price(), subtotals[i]);
+            }
+        }
+        return new Counts(customerCount, orderCount, itemId);
+    }
+
+    // === 分布 ===
+
+    /**
+     * 订单状态随订单新旧变化：30 天前的订单绝大多数已完成，最近一周的订单多为待支付 / 已支付
+     */
+    private static String status(SplittableRandom random, int daysBeforeEnd) {
+        double u = random.nextDouble();
+        if (daysBeforeEnd > 30) {
+            return u < 0.90 ? "completed" : u < 0.95 ? "shipped" : u < 0.98 ? "paid" : "pending";
+        }
+        if (daysBeforeEnd > 7) {
+            return u < 0.50 ? "completed" : u < 0.80 ? "shipped" : u < 0.92 ? "paid" : "pending";
+        }
+        return u < 0.10 ? "completed" : u < 0.35 ? "shipped" : u < 0.65 ? "paid" : "pending";
+    }
+
+    /**
+     * 购买数量：大多数为 1 件，少数批量购买
+     */
+    private static int quantity(SplittableRandom random) {
+        double u = random.nextDouble();
+        return u < 0.60 ? 1 : u < 0.85 ? 2 : u < 0.95 ? 3 : 4 + random.nextInt(7);
+    }
+
+    private static int geometric(SplittableRandom random, double mean) {
+        double p = 1 / (1 + mean);
+        return (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+
+    /**
+     * 每天的订单量权重：整体逐月增长，周末略高，双十一前后和 12 月为高峰，春节所在的 2 月为淡季
+     */
+    private double[] dayCdf() {
+        double[] weights = new double[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            LocalDate day = FIRST_ORDER_DATE.plusDays(i);
+            double weight = 1 + 0.5 * i / dayCount;
+            DayOfWeek dayOfWeek = day.getDayOfWeek();
+            if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+                weight *= 1.2;
+            }
+            if (day.getMonthValue() == 11 && day.getDayOfMonth() <= 11) {
+                weight *= day.getDayOfMonth() == 11 ? 5 : 1.8;
+            } else if (day.getMonthValue() == 12) {
+                weight *= 1.3;
+            } else if (day.getMonthValue() == 2) {
+                weight *= 0.7;
+            }
+            weights[i] = weight;
+        }
+        return cdf(weights);
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1 / Math.pow(i + 1, exponent);
+        }
+        return cdf(weights);
+    }
+
+    private static double[] cdf(double[] weights) {
+        double[] cdf = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < cdf.length; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double u) {
+        int index = Arrays.binarySearch(cdf, u);
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static Product product(String name, String price) {
+        return new Product(name, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.mcp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * 用合成数据集替换 data.sql 的示例数据（mcp.dataset.scale-factor 大于 0 时在启动时执行）
+ * - 数据由 DatasetGenerator 按比例因子和种子生成，可复现
+ * - csv：先写 CSV 文件，再用 INSERT ... SELECT FROM CSVREAD 整表导入（默认，最快）
+ * - jdbc：PreparedStatement 批量插入，每批 mcp.dataset.batch-size 行
+ * 导入期间关闭外键检查（数据由生成器保证一致），完成后重置自增 ID 并 ANALYZE 更新统计信息
+ * 在 ApplicationReadyEvent 之前执行，表结构目录和结果缓存触发器在导入完成后才安装
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatasetLoader implements ApplicationRunner {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${mcp.dataset.scale-factor:0}")
+    private double scaleFactor;
+
+    @Value("${mcp.dataset.seed:42}")
+    private long seed;
+
+    @Value("${mcp.dataset.loader:csv}")
+    private String loader;
+
+    @Value("${mcp.dataset.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${mcp.dataset.csv-dir:}")
+    private String csvDir;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (scaleFactor <= 0) {
+            return;
+        }
+        log.info("开始导入合成数据集: scaleFactor={}, seed={}, loader={}", scaleFactor, seed, loader);
+        load(new DatasetGenerator(scaleFactor, seed));
+    }
+
+    /**
+     * 清空三张表并导入生成的数据
+     */
+    public DatasetGenerator.Counts load(DatasetGenerator generator) {
+        long start = System.currentTimeMillis();
+
+        DatasetGenerator.Counts counts = jdbcTemplate.execute((ConnectionCallback<DatasetGenerator.Counts>) con -> {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    statement.execute("TRUNCATE TABLE order_items");
+                    statement.execute("TRUNCATE TABLE orders");
+                    statement.execute("TRUNCATE TABLE customers");
+                    DatasetGenerator.Counts loaded = "jdbc".equals(loader.toLowerCase(Locale.ROOT))
+                            ? loadWithBatches(con, generator)
+                            : loadWithCsv(con, generator);
+                    statement.execute("ALTER TABLE customers ALTER COLUMN id RESTART WITH " + (loaded.customers() + 1));
+                    statement.execute("ALTER TABLE orders ALTER COLUMN id RESTART WITH " + (loaded.orders() + 1));
+                    statement.execute("ALTER TABLE order_items ALTER COLUMN id RESTART WITH " + (loaded.orderItems() + 1));
+                    statement.execute("ANALYZE");
+                    return loaded;
+                } finally {
+                    statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            }
+        });
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("合成数据集导入完成: 客户 {}, 订单 {}, 订单明细 {}, 耗时 {} ms（{} 行/秒）",
+                counts.customers(), counts.orders(), counts.orderItems(), elapsed, counts.total() * 1000 / elapsed);
+        return counts;
+    }
+
+    // === CSV + CSVREAD ===
+
+    private DatasetGenerator.Counts loadWithCsv(Connection con, DatasetGenerator generator) throws SQLException {
+        Path dir;
+        boolean temporary = csvDir == null || csvDir.isBlank();
+        try {
+            dir = temporary ? Files.createTempDirectory("mcp-dataset") : Files.createDirectories(Path.of(csvDir));
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建 CSV 目录失败", e);
+        }
+
+        Path customers = dir.resolve("customers.csv");
+        Path orders = dir.resolve("orders.csv");
+        Path orderItems = dir.resolve("order_items.csv");
+        DatasetGenerator.Counts counts;
+        try (CsvSink sink = new CsvSink(customers, orders, orderItems)) {
+            counts = generator.generate(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入 CSV 失败", e);
+        }
+        log.info("CSV 已写入 {}", dir);
+
+        try (Statement statement = con.createStatement()) {
+            statement.execute("INSERT INTO customers (id, name, email, phone, city, created_at) "
+                    + "SELECT * FROM " + csvRead(customers));
+            statement.execute("INSERT INTO orders (id, customer_id, order_date, total_amount, status) "
+                    + "SELECT * FROM " + csvRead(orders));
+            statement.execute("INSERT INTO order_items (id, order_id, product_name, quantity, unit_price, subtotal) "
+                    + "SELECT * FROM " + csvRead(orderItems));
+        } finally {
+            if (temporary) {
+                deleteQuietly(customers, orders, orderItems, dir);
+            }
+        }
+        return counts;
+    }
+
+    private static String csvRead(Path file) {
+        return "CSVREAD('" + file.toAbsolutePath().toString().replace("'", "''") + "', NULL, 'charset=UTF-8')";
+    }
+
+    private static void deleteQuietly(Path... paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败: {}", path);
+            }
+        }
+    }
+
+    /**
+     * 按表写 CSV（带表头，字符串统一加引号）
+     */
+    private static class CsvSink implements DatasetGenerator.Sink, AutoCloseable {
+
+        private final BufferedWriter customers;
+        private final BufferedWriter orders;
+        private final BufferedWriter orderItems;
+
+        CsvSink(Path customers, Path orders, Path orderItems) throws IOException {
+            this.customers = Files.newBufferedWriter(customers, StandardCharsets.UTF_8);
+            this.orders = Files.newBufferedWriter(orders, StandardCharsets.UTF_8);
+            this.orderItems = Files.newBufferedWriter(orderItems, StandardCharsets.UTF_8);
+            this.customers.write("ID,NAME,EMAIL,PHONE,CITY,CREATED_AT\n");
+            this.orders.write("ID,CUSTOMER_ID,ORDER_DATE,TOTAL_AMOUNT,STATUS\n");
+            this.orderItems.write("ID,ORDER_ID,PRODUCT_NAME,QUANTITY,UNIT_PRICE,SUBTOTAL\n");
+        }
+
+        @Override
+        public void customer(long id, String name, String email, String phone, String city, LocalDateTime createdAt) {
+            write(customers, id + "," + quote(name) + "," + quote(email) + "," + quote(phone) + "," + quote(city)
+                    + "," + TIMESTAMP.format(createdAt) + "\n");
+        }
+
+        @Override
+        public void order(long id, long customerId, LocalDate orderDate, BigDecimal totalAmount, String status) {
+            write(orders, id + "," + customerId + "," + orderDate + "," + totalAmount.toPlainString()
+                    + "," + quote(status) + "\n");
+        }
+
+        @Override
+        public void orderItem(long id, long orderId, String productName, int quantity, BigDecimal unitPrice,
+                              BigDecimal subtotal) {
+            write(orderItems, id + "," + orderId + "," + quote(productName) + "," + quantity + ","
+                    + unitPrice.toPlainString() + "," + subtotal.toPlainString() + "\n");
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        private static void write(BufferedWriter writer, String line) {
+            try {
+                writer.write(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (customers; orders; orderItems) {
+                // 依次关闭三个文件
+            }
+        }
+    }
+
+    // === 批量 JDBC ===
+
+    private DatasetGenerator.Counts loadWithBatches(Connection con, DatasetGenerator generator) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (BatchSink sink = new BatchSink(con, batchSize)) {
+            DatasetGenerator.Counts counts = generator.generate(sink);
+            sink.flush();
+            con.commit();
+            return counts;
+        } catch (SQLException | RuntimeException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 三张表各一个 PreparedStatement，攒满一批执行一次 executeBatch
+     */
+    private static class BatchSink implements DatasetGenerator.Sink, AutoCloseable {
+
+        private final PreparedStatement customers;
+        private final PreparedStatement orders;
+        private final PreparedStatement orderItems;
+        private final int batchSize;
+        private int pendingCustomers;
+        private int pendingOrders;
+        private int pendingOrderItems;
+
+        BatchSink(Connection con, int batchSize) throws SQLException {
+            this.customers = con.prepareStatement(
+                    "INSERT INTO customers (id, name, email, phone, city, created_at) VALUES (?, ?, ?, ?, ?, ?)");
+            this.orders = con.prepareStatement(
+                    "INSERT INTO orders (id, customer_id, order_date, total_amount, status) VALUES (?, ?, ?, ?, ?)");
+            this.orderItems = con.prepareStatement(
+                    "INSERT INTO order_items (id, order_id, product_name, quantity, unit_price, subtotal) VALUES (?, ?, ?, ?, ?, ?)");
+            this.batchSize = Math.max(1, batchSize);
+        }
+
+        @Override
+        public void customer(long id, String name, String email, String phone, String city, LocalDateTime createdAt) {
+            try {
+                customers.setLong(1, id);
+                customers.setString(2, name);
+                customers.setString(3, email);
+                customers.setString(4, phone);
+                customers.setString(5, city);
+                customers.setTimestamp(6, Timestamp.valueOf(createdAt));
+                customers.addBatch();
+                if (++pendingCustomers == batchSize) {
+                    customers.executeBatch();
+                    pendingCustomers = 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("批量插入 customers 失败", e);
+            }
+        }
+
+        @Override
+        public void order(long id, long customerId, LocalDate orderDate, BigDecimal totalAmount, String status) {
+            try {
+                orders.setLong(1, id);
+                orders.setLong(2, customerId);
+                orders.setDate(3, Date.valueOf(orderDate));
+                orders.setBigDecimal(4, totalAmount);
+                orders.setString(5, status);
+                orders.addBatch();
+                if (++pendingOrders == batchSize) {
+                    orders.executeBatch();
+                    pendingOrders = 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("批量插入 orders 失败", e);
+            }
+        }
+
+        @Override
+        public void orderItem(long id, long orderId, String productName, int quantity, BigDecimal unitPrice,
+                              BigDecimal subtotal) {
+            try {
+                orderItems.setLong(1, id);
+                orderItems.setLong(2, orderId);
+                orderItems.setString(3, productName);
+                orderItems.setInt(4, quantity);
+                orderItems.setBigDecimal(5, unitPrice);
+                orderItems.setBigDecimal(6, subtotal);
+                orderItems.addBatch();
+                if (++pendingOrderItems == batchSize) {
+                    orderItems.executeBatch();
+                    pendingOrderItems = 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("批量插入 order_items 失败", e);
+            }
+        }
+
+        void flush() throws SQLException {
+            customers.executeBatch();
+            orders.executeBatch();
+            orderItems.executeBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (customers; orders; orderItems) {
+                // 依次关闭三个语句
+            }
+        }
+    }
+}
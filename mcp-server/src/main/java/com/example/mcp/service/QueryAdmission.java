@@ -0,0 +1,281 @@
+package com.example.mcp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.command.Prepared;
+import org.h2.command.query.Query;
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql.run 准入控制：执行前取 H2 优化器对查询的预估代价（与 EXPLAIN 选出的计划一致，只解析和规划，不扫描数据）
+ * - 代价不超过 interactive-max-cost：交互查询，直接执行
+ * - 介于 interactive-max-cost 和 max-cost 之间：降级为重查询，最多返回 heavy-max-rows 行，
+ *   且同时最多 heavy-concurrency 个在执行，排队超过 heavy-queue-timeout 返回 QUERY_THROTTLED，
+ *   避免少数重查询占满连接池和 CPU，拖慢廉价的交互查询
+ * - 超过 max-cost：拒绝执行，返回 QUERY_TOO_EXPENSIVE（常见于缺少关联条件的笛卡尔积）
+ * 代价的量级大致为「扫描行数 × 10」，三表全量关联在 SF1 数据集上约 2e9，两表笛卡尔积约 3e11
+ * 预估代价按规范化 SQL 缓存（cost-cache-size 条，LRU，带 TTL，表结构变化时清空）：
+ * H2 的 SessionLocal.prepare 不经过连接上的语句缓存（QUERY_CACHE_SIZE），每次预估都是一次完整的解析和规划，
+ * 重复的 SQL 命中缓存后准入不再占用连接，执行时的 prepareStatement 仍可复用连接上已解析的语句
+ */
+@Slf4j
+@Service
+public class QueryAdmission {
+
+    public enum Lane {
+        INTERACTIVE, HEAVY
+    }
+
+    /**
+     * 一次准入结果；HEAVY 通道的许可在 close 时归还
+     */
+    public static final class Ticket implements AutoCloseable {
+
+        private final Lane lane;
+        private final double estimatedCost;
+        private final int maxRows;
+        private final Semaphore permits;
+
+        private Ticket(Lane lane, double estimatedCost, int maxRows, Semaphore permits) {
+            this.lane = lane;
+            this.estimatedCost = estimatedCost;
+            this.maxRows = maxRows;
+            this.permits = permits;
+        }
+
+        public Lane lane() {
+            return lane;
+        }
+
+        public double estimatedCost() {
+            return estimatedCost;
+        }
+
+        /**
+         * 本次执行最多返回的行数，0 表示不限制
+         */
+        public int maxRows() {
+            return maxRows;
+        }
+
+        /**
+         * 返回的行数达到上限，结果可能被截断
+         */
+        public boolean truncated(long rowCount) {
+            return maxRows > 0 && rowCount >= maxRows;
+        }
+
+        @Override
+        public void close() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Semaphore heavyPermits;
+    private final boolean enabled;
+    private final double interactiveMaxCost;
+    private final double maxCost;
+    private final int heavyMaxRows;
+    private final Duration heavyQueueTimeout;
+    private final int costCacheSize;
+    private final Duration costCacheTtl;
+
+    /**
+     * 规范化 SQL → 预估代价；访问顺序的 LinkedHashMap，所有访问都在 costs 上同步
+     */
+    private final LinkedHashMap<String, CachedCost> costs = new LinkedHashMap<>(64, 0.75f, true);
+
+    private record CachedCost(double cost, long expiresAt) {
+    }
+
+    private final Counter interactive;
+    private final Counter heavy;
+    private final Counter tooExpensive;
+    private final Counter throttled;
+    private final Counter costHits;
+    private final Counter costMisses;
+
+    public QueryAdmission(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                          @Value("${mcp.sql.admission.enabled:true}") boolean enabled,
+                          @Value("${mcp.sql.admission.interactive-max-cost:1e8}") double interactiveMaxCost,
+                          @Value("${mcp.sql.admission.max-cost:1e11}") double maxCost,
+                          @Value("${mcp.sql.admission.heavy-concurrency:2}") int heavyConcurrency,
+                          @Value("${mcp.sql.admission.heavy-max-rows:10000}") int heavyMaxRows,
+                          @Value("${mcp.sql.admission.heavy-queue-timeout:2s}") Duration heavyQueueTimeout,
+                          @Value("${mcp.sql.admission.cost-cache-size:1024}") int costCacheSize,
+                          @Value("${mcp.sql.admission.cost-cache-ttl:1m}") Duration costCacheTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.heavyPermits = new Semaphore(Math.max(1, heavyConcurrency), true);
+        this.enabled = enabled;
+        this.interactiveMaxCost = interactiveMaxCost;
+        this.maxCost = maxCost;
+        this.heavyMaxRows = heavyMaxRows;
+        this.heavyQueueTimeout = heavyQueueTimeout;
+        this.costCacheSize = costCacheSize;
+        this.costCacheTtl = costCacheTtl;
+
+        this.interactive = decisionCounter(meterRegistry, "interactive");
+        this.heavy = decisionCounter(meterRegistry, "heavy");
+        this.tooExpensive = decisionCounter(meterRegistry, "rejected");
+        this.throttled = decisionCounter(meterRegistry, "throttled");
+        this.costHits = Counter.builder("mcp.sql.admission.cost-cache").tag("result", "hit")
+                .description("预估代价缓存命中次数").register(meterRegistry);
+        this.costMisses = Counter.builder("mcp.sql.admission.cost-cache").tag("result", "miss")
+                .description("预估代价缓存未命中次数（需要解析和规划 SQL）").register(meterRegistry);
+        Gauge.builder("mcp.sql.admission.heavy.active", heavyPermits,
+                        permits -> Math.max(1, heavyConcurrency) - permits.availablePermits())
+                .description("正在执行的重查询数").register(meterRegistry);
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("mcp.sql.admission")
+                .tag("decision", decision)
+                .description("sql.run 准入决策次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 表结构变化后旧的代价不再可信
+     */
+    @EventListener
+    public void onSchemaRefreshed(SchemaCatalog.Refreshed event) {
+        synchronized (costs) {
+            costs.clear();
+        }
+    }
+
+    /**
+     * 预估代价并决定执行通道；超出预算时抛出 QueryRejectedException
+     * 代价缓存命中时不占用连接；未命中时预估只短暂占用一个连接，排队等待重查询许可期间不持有连接
+     */
+    public Ticket admit(String sql) {
+        if (!enabled) {
+            return new Ticket(Lane.INTERACTIVE, -1, 0, null);
+        }
+        String key = QueryResultCache.normalize(sql);
+        Double cost = cachedCost(key);
+        if (cost == null) {
+            cost = jdbcTemplate.execute((ConnectionCallback<Double>) con -> estimateAndCache(con, sql, key));
+        }
+        return admit(cost != null ? cost : -1);
+    }
+
+    Ticket admit(double cost) {
+        String rejection = checkBudget(cost);
+        if (rejection != null) {
+            tooExpensive.increment();
+            log.warn("拒绝执行 SQL: {}", rejection);
+            throw new QueryRejectedException(QueryRejectedException.TOO_EXPENSIVE, rejection, cost, maxCost);
+        }
+        if (cost <= interactiveMaxCost) {
+            interactive.increment();
+            return new Ticket(Lane.INTERACTIVE, cost, 0, null);
+        }
+
+        boolean acquired;
+        try {
+            acquired = heavyPermits.tryAcquire(heavyQueueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throttled.increment();
+            throw new QueryRejectedException(QueryRejectedException.THROTTLED,
+                    String.format("查询预估代价 %.0f 较高，重查询通道繁忙（等待 %d ms 未获得执行许可），请稍后重试",
+                            cost, heavyQueueTimeout.toMillis()),
+                    cost, maxCost);
+        }
+        heavy.increment();
+        log.info("SQL 预估代价 {} 超过交互阈值 {}，按重查询执行（最多返回 {} 行）",
+                String.format("%.0f", cost), String.format("%.0f", interactiveMaxCost), heavyMaxRows);
+        return new Ticket(Lane.HEAVY, cost, heavyMaxRows, heavyPermits);
+    }
+
+    /**
+     * 代价超过 max-cost 时返回拒绝原因，否则返回 null（未启用或代价未知时总是 null）
+     */
+    public String checkBudget(double cost) {
+        if (!enabled || cost <= maxCost) {
+            return null;
+        }
+        return String.format("查询预估代价 %.0f 超过上限 %.0f，可能缺少表之间的关联条件（笛卡尔积）或过滤条件，"
+                + "请补充 JOIN 条件、WHERE 过滤或聚合后重试", cost, maxCost);
+    }
+
+    /**
+     * 预估代价：优先取缓存，未命中时在给定连接上规划 SQL 并缓存结果（sql.check 复用自己的连接）
+     */
+    public double estimateCost(Connection con, String sql) throws SQLException {
+        String key = QueryResultCache.normalize(sql);
+        Double cost = cachedCost(key);
+        return cost != null ? cost : estimateAndCache(con, sql, key);
+    }
+
+    private Double cachedCost(String key) {
+        synchronized (costs) {
+            CachedCost cached = costs.get(key);
+            if (cached != null && cached.expiresAt() >= System.currentTimeMillis()) {
+                costHits.increment();
+                return cached.cost();
+            }
+            if (cached != null) {
+                costs.remove(key);
+            }
+        }
+        costMisses.increment();
+        return null;
+    }
+
+    /**
+     * 无法预估（-1）的结果不缓存：语句可能引用稍后才创建的表，执行时会报告真正的错误
+     */
+    private double estimateAndCache(Connection con, String sql, String key) throws SQLException {
+        double cost = plan(con, sql);
+        if (cost >= 0 && costCacheSize > 0) {
+            synchronized (costs) {
+                costs.put(key, new CachedCost(cost, System.currentTimeMillis() + costCacheTtl.toMillis()));
+                while (costs.size() > costCacheSize) {
+                    costs.remove(costs.keySet().iterator().next());
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * 由 H2 解析并规划 SQL，返回优化器选出的计划的预估代价（不执行）
+     * 非 H2 连接、非查询语句或无法解析时返回 -1，由后续执行报告真正的错误
+     */
+    private double plan(Connection con, String sql) throws SQLException {
+        if (!con.isWrapperFor(JdbcConnection.class)
+                || !(con.unwrap(JdbcConnection.class).getSession() instanceof SessionLocal session)) {
+            return -1;
+        }
+        try {
+            Prepared prepared = session.prepare(sql);
+            return prepared instanceof Query query ? query.getCost() : -1;
+        } catch (RuntimeException e) {
+            log.debug("预估 SQL 代价失败: {}", e.getMessage());
+            return -1;
+        }
+    }
+}
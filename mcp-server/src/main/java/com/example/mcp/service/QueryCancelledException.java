@@ -0,0 +1,24 @@
+package com.example.mcp.service;
+
+import lombok.Getter;
+
+/**
+ * 查询执行中被取消（Statement.cancel）
+ * - QUERY_TIMEOUT：超过本次请求的超时时间（timeoutMs，受 mcp.sql.timeout.max 限制）
+ * - QUERY_CANCELLED：客户端已断开或请求被容器终止，结果不再有人接收
+ */
+@Getter
+public class QueryCancelledException extends RuntimeException {
+
+    public static final String TIMEOUT = "QUERY_TIMEOUT";
+    public static final String CANCELLED = "QUERY_CANCELLED";
+
+    private final String errorType;
+    private final long timeoutMs;
+
+    public QueryCancelledException(String errorType, String message, long timeoutMs, Throwable cause) {
+        super(message, cause);
+        this.errorType = errorType;
+        this.timeoutMs = timeoutMs;
+    }
+}
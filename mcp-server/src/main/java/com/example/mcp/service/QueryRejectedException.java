@@ -0,0 +1,26 @@
+package com.example.mcp.service;
+
+import lombok.Getter;
+
+/**
+ * 查询被准入控制拒绝（未执行）
+ * - QUERY_TOO_EXPENSIVE：预估代价超过 mcp.sql.admission.max-cost，需要改写 SQL
+ * - QUERY_THROTTLED：重查询通道已满，等待超时，可稍后重试
+ */
+@Getter
+public class QueryRejectedException extends RuntimeException {
+
+    public static final String TOO_EXPENSIVE = "QUERY_TOO_EXPENSIVE";
+    public static final String THROTTLED = "QUERY_THROTTLED";
+
+    private final String errorType;
+    private final double estimatedCost;
+    private final double maxCost;
+
+    public QueryRejectedException(String errorType, String message, double estimatedCost, double maxCost) {
+        super(message);
+        this.errorType = errorType;
+        this.estimatedCost = estimatedCost;
+        this.maxCost = maxCost;
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.mcp.service;
+
+import com.example.mcp.dto.SqlResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.tx.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * sql.run 查询结果缓存
+ * - 键：规范化后的 SQL（引号外的空白折叠、大小写统一）+ 绑定参数
+ * - 按估算字节数做 LRU 淘汰，并带 TTL
+ * - 通过 H2 触发器感知表数据变更，失效引用该表的所有条目；表结构内容变化时清空
+ * - 每张表维护失效代数，执行期间相关表发生过变更的结果不写入，避免旧结果在失效之后才被缓存
+ * - 触发器在语句执行时触发、早于提交：写事务结束前（非自动提交的 h2-console、JDBC 导入，
+ *   或自动提交语句触发后到提交之间）读到的仍是旧数据，因此相关表有未结束的写事务时结果不写入，
+ *   写事务提交或回滚后再失效一次该表（在下一次 generation / put 时检查）
+ * - 命中 / 未命中 / 淘汰次数通过 actuator metrics 暴露（mcp.sql.cache.*）
+ */
+@Slf4j
+@Service
+public class QueryResultCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchemaCatalog schemaCatalog;
+
+    @Value("${mcp.sql.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mcp.sql.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${mcp.sql.cache.ttl:5m}")
+    private Duration ttl;
+
+    /**
+     * 访问顺序的 LinkedHashMap，迭代顺序即 LRU 顺序；所有访问都在 this 上同步
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * 表名 → 被失效的次数；clearGeneration 为整体清空次数，二者都只增不减
+     */
+    private final Map<String, Long> tableGenerations = new HashMap<>();
+    private long clearGeneration;
+
+    /**
+     * 表名 → 写入过该表、可能尚未结束的事务（按对象身份去重）
+     */
+    private final Map<String, Set<Transaction>> pendingWrites = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong staleWrites = new AtomicLong();
+
+    private final Consumer<TableChangeTrigger.Change> tableChangeListener = this::onTableChanged;
+
+    private record Entry(SqlResponse response, long bytes, long expiresAt, Set<String> tables) {
+    }
+
+    public QueryResultCache(JdbcTemplate jdbcTemplate, SchemaCatalog schemaCatalog, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schemaCatalog = schemaCatalog;
+
+        FunctionCounter.builder("mcp.sql.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit").description("sql.run 结果缓存命中次数").register(meterRegistry);
+        FunctionCounter.builder("mcp.sql.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss").description("sql.run 结果缓存未命中次数").register(meterRegistry);
+        FunctionCounter.builder("mcp.sql.cache.evictions", evictions, AtomicLong::get)
+                .description("因容量或过期被淘汰的条目数").register(meterRegistry);
+        FunctionCounter.builder("mcp.sql.cache.invalidations", invalidations, AtomicLong::get)
+                .description("因表数据变更被失效的条目数").register(meterRegistry);
+        FunctionCounter.builder("mcp.sql.cache.stale-writes", staleWrites, AtomicLong::get)
+                .description("执行期间相关表发生变更而放弃写入的结果数").register(meterRegistry);
+        Gauge.builder("mcp.sql.cache.size", this, QueryResultCache::currentBytes)
+                .baseUnit("bytes").description("缓存结果的估算总字节数").register(meterRegistry);
+        Gauge.builder("mcp.sql.cache.entries", this, QueryResultCache::currentEntries)
+                .description("缓存条目数").register(meterRegistry);
+
+        TableChangeTrigger.addListener(tableChangeListener);
+    }
+
+    @PreDestroy
+    public void close() {
+        TableChangeTrigger.removeListener(tableChangeListener);
+    }
+
+    /**
+     * 表结构目录首次加载或内容变化后：清空缓存，并为每张表安装数据变更触发器
+     */
+    @EventListener
+    public void onSchemaRefreshed(SchemaCatalog.Refreshed event) {
+        clear();
+        for (String table : event.snapshot().tables().keySet()) {
+            String trigger = "MCP_CACHE_INVALIDATE_" + table.toUpperCase(Locale.ROOT);
+            jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS " + trigger
+                    + " AFTER INSERT, UPDATE, DELETE ON " + table
+                    + " FOR EACH STATEMENT CALL '" + TableChangeTrigger.class.getName() + "'");
+        }
+        log.info("结果缓存已清空，已为 {} 张表安装失效触发器", event.snapshot().tables().size());
+    }
+
+    /**
+     * 查询缓存；未启用、未命中或已过期时返回 null
+     */
+    public SqlResponse get(String sql, List<Object> params) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(normalize(sql), params);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() < System.currentTimeMillis()) {
+                removeEntry(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.response();
+        }
+    }
+
+    /**
+     * 当前失效代数：SQL 引用的各表的失效次数之和加上整体清空次数
+     * 执行前取一次并传给 {@link #put}，执行期间有相关表被失效时代数一定不同
+     */
+    public long generation(String sql) {
+        Set<String> tables = referencedTables(normalize(sql));
+        synchronized (this) {
+            settlePendingWrites();
+            return generation(tables);
+        }
+    }
+
+    private long generation(Set<String> tables) {
+        long generation = clearGeneration;
+        for (String table : tables) {
+            generation += tableGenerations.getOrDefault(table, 0L);
+        }
+        return generation;
+    }
+
+    /**
+     * 写入缓存；单条结果超过容量的 1/4 时不缓存，避免一次大查询冲掉整个缓存
+     * generation 为执行前 {@link #generation(String)} 的返回值，与当前代数不同时说明结果可能已过期，不写入；
+     * 相关表有未结束的写事务时同样不写入
+     */
+    public void put(String sql, List<Object> params, SqlResponse response, long generation) {
+        if (!enabled) {
+            return;
+        }
+        long bytes = estimateBytes(response);
+        if (bytes > maxBytes / 4) {
+            log.debug("结果过大（约 {} 字节），不缓存", bytes);
+            return;
+        }
+        String normalized = normalize(sql);
+        String key = key(normalized, params);
+        Entry entry = new Entry(response, bytes, System.currentTimeMillis() + ttl.toMillis(), referencedTables(normalized));
+        synchronized (this) {
+            settlePendingWrites();
+            if (generation(entry.tables()) != generation || hasPendingWrites(entry.tables())) {
+                staleWrites.incrementAndGet();
+                log.debug("执行期间表 {} 发生变更，结果不缓存", entry.tables());
+                return;
+            }
+            removeEntry(key);
+            entries.put(key, entry);
+            totalBytes += bytes;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                totalBytes -= eldest.bytes();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 失效所有引用了指定表的条目
+     */
+    public void invalidateTable(String table) {
+        synchronized (this) {
+            tableGenerations.merge(table, 1L, Long::sum);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next().getValue();
+                if (entry.tables().contains(table)) {
+                    it.remove();
+                    totalBytes -= entry.bytes();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+        log.debug("表 {} 数据变更，已失效相关缓存", table);
+    }
+
+    /**
+     * 触发器通知：立即失效该表，并记下写入所在的事务，事务结束后再失效一次
+     */
+    private void onTableChanged(TableChangeTrigger.Change change) {
+        invalidateTable(change.table());
+        if (change.transaction() == null) {
+            return;
+        }
+        synchronized (this) {
+            settlePendingWrites();
+            if (change.pending()) {
+                pendingWrites.computeIfAbsent(change.table(), t -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                        .add(change.transaction());
+            }
+        }
+    }
+
+    /**
+     * 写事务已提交或回滚的表再失效一次：此前读到旧数据的查询即使拿到了触发之后的代数，也无法再写入缓存
+     */
+    private void settlePendingWrites() {
+        Iterator<Map.Entry<String, Set<Transaction>>> it = pendingWrites.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Set<Transaction>> pending = it.next();
+            if (pending.getValue().removeIf(transaction -> transaction.getStatus() == Transaction.STATUS_CLOSED)) {
+                invalidateTable(pending.getKey());
+            }
+            if (pending.getValue().isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean hasPendingWrites(Set<String> tables) {
+        for (String table : tables) {
+            if (pendingWrites.containsKey(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        clearGeneration++;
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private void removeEntry(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalBytes -= old.bytes();
+        }
+    }
+
+    private synchronized double currentBytes() {
+        return totalBytes;
+    }
+
+    private synchronized double currentEntries() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存键：参数带上类型，避免 1 和 "1" 命中同一条目
+     */
+    private static String key(String normalizedSql, List<Object> params) {
+        if (params == null || params.isEmpty()) {
+            return normalizedSql;
+        }
+        StringBuilder sb = new StringBuilder(normalizedSql);
+        for (Object param : params) {
+            sb.append('\u0000');
+            if (param != null) {
+                sb.append(param.getClass().getSimpleName()).append(':');
+            }
+            sb.append(param);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * SQL 规范化：引号外连续空白折叠为一个空格并转大写，引号内原样保留，去掉末尾分号
+     */
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                    sb.append(c);
+                } else {
+                    sb.append(Character.toUpperCase(c));
+                }
+            }
+        }
+        int end = sb.length();
+        while (end > 0 && (sb.charAt(end - 1) == ';' || sb.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    /**
+     * 找出规范化 SQL 中出现的已知表名（按整词匹配，宁可多失效也不漏失效）
+     */
+    private Set<String> referencedTables(String normalizedSql) {
+        Set<String> tables = new HashSet<>();
+        for (String table : schemaCatalog.snapshot().tables().keySet()) {
+            Pattern word = Pattern.compile("\\b" + Pattern.quote(table.toUpperCase(Locale.ROOT)) + "\\b");
+            if (word.matcher(normalizedSql).find()) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 估算结果占用的堆内存（对象头 + 引用 + 字符串内容的粗略值）
+     */
+    private static long estimateBytes(SqlResponse response) {
+        long bytes = 64;
+        for (String column : response.getColumns()) {
+            bytes += 48 + column.length();
+        }
+        for (List<Object> row : response.getRows()) {
+            bytes += 40 + 8L * row.size();
+            for (Object value : row) {
+                if (value instanceof String str) {
+                    bytes += 48 + str.length();
+                } else if (value != null) {
+                    bytes += 32;
+                }
+            }
+        }
+        return bytes;
+    }
+}
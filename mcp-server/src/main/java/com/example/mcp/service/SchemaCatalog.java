@@ -0,0 +1,190 @@
+package com.example.mcp.service;
+
+import com.example.mcp.dto.SchemaResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 表结构目录（内存缓存）
+ * - 启动时一次查询 INFORMATION_SCHEMA.COLUMNS 加载全部表和列
+ * - 之后的 schema.get / schema.getMany / schema.getAll 都直接读内存
+ * - 通过 refresh() 重新加载；ETag 为表结构内容的 SHA-256，只有内容变化时才生成新的 version 并发布 {@link Refreshed} 事件
+ * - 查询不存在的表时按需重新加载一次（表可能是启动后创建的），但两次之间至少间隔 mcp.schema.miss-refresh-interval，
+ *   避免 LLM 臆造的表名或拼写错误反复触发全量扫描
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SchemaCatalog {
+
+    private static final String LOAD_SQL = """
+            SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_TYPE, c.REMARKS
+            FROM INFORMATION_SCHEMA.COLUMNS c
+            JOIN INFORMATION_SCHEMA.TABLES t
+              ON t.TABLE_SCHEMA = c.TABLE_SCHEMA AND t.TABLE_NAME = c.TABLE_NAME
+            WHERE c.TABLE_SCHEMA = CURRENT_SCHEMA AND t.TABLE_TYPE = 'BASE TABLE'
+            ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${mcp.schema.miss-refresh-interval:5s}")
+    private Duration missRefreshInterval;
+
+    private volatile Snapshot snapshot;
+    private volatile long lastRefreshAt;
+
+    /**
+     * 一份不可变的目录快照
+     *
+     * @param version 内容版本号（表结构每变化一次加一）
+     * @param etag    基于表结构内容的 ETag，内容不变则不变
+     * @param tables  表名（小写）→ 表结构，按表名排序
+     */
+    public record Snapshot(long version, String etag, Map<String, SchemaResponse> tables) {
+    }
+
+    /**
+     * 目录首次加载或表结构内容变化事件（依赖表结构的缓存据此失效）
+     */
+    public record Refreshed(Snapshot snapshot) {
+    }
+
+    /**
+     * 应用启动完成后预热（此时 schema.sql 已执行）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        snapshot();
+    }
+
+    /**
+     * 重新加载全部表结构；内容与当前快照一致时保留原快照，不发布事件
+     */
+    public synchronized Snapshot refresh() {
+        long start = System.currentTimeMillis();
+        lastRefreshAt = start;
+        Map<String, List<SchemaResponse.Column>> columnsByTable = new LinkedHashMap<>();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            String table = rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT);
+            String comment = rs.getString("REMARKS");
+            columnsByTable.computeIfAbsent(table, t -> new ArrayList<>())
+                    .add(new SchemaResponse.Column(rs.getString("COLUMN_NAME"), rs.getString("DATA_TYPE"),
+                            comment != null ? comment : ""));
+        });
+
+        Map<String, SchemaResponse> tables = new LinkedHashMap<>();
+        columnsByTable.forEach((table, columns) ->
+                tables.put(table, new SchemaResponse(table, Collections.unmodifiableList(columns))));
+
+        String etag = "\"" + digest(tables) + "\"";
+        Snapshot current = snapshot;
+        if (current != null && current.etag().equals(etag)) {
+            log.debug("表结构未变化: version={}, 耗时 {} ms", current.version(), System.currentTimeMillis() - start);
+            return current;
+        }
+
+        long version = current != null ? current.version() + 1 : 1;
+        snapshot = new Snapshot(version, etag, Collections.unmodifiableMap(tables));
+
+        log.info("表结构目录已加载: version={}, etag={}, 表={}, 耗时 {} ms",
+                version, etag, tables.keySet(), System.currentTimeMillis() - start);
+        eventPublisher.publishEvent(new Refreshed(snapshot));
+        return snapshot;
+    }
+
+    /**
+     * 查询未命中时的按需刷新：距上次加载不足 missRefreshInterval 时直接返回当前快照
+     */
+    private synchronized Snapshot refreshOnMiss() {
+        long interval = missRefreshInterval != null ? missRefreshInterval.toMillis() : 0;
+        if (snapshot != null && System.currentTimeMillis() - lastRefreshAt < interval) {
+            return snapshot;
+        }
+        return refresh();
+    }
+
+    /**
+     * 表结构内容摘要：按表名、列顺序拼出的规范化 DDL 的 SHA-256
+     */
+    private static String digest(Map<String, SchemaResponse> tables) {
+        StringBuilder ddl = new StringBuilder();
+        new TreeMap<>(tables).forEach((table, schema) -> {
+            ddl.append("CREATE TABLE ").append(table).append(" (");
+            for (SchemaResponse.Column column : schema.getColumns()) {
+                ddl.append(column.getName()).append(' ').append(column.getType())
+                        .append(" COMMENT '").append(column.getComment()).append("', ");
+            }
+            ddl.append(");\n");
+        });
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(ddl.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 当前快照（尚未加载时立即加载）
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    /**
+     * 获取单张表结构；内存中不存在时按需重新加载一次（受 missRefreshInterval 限制）
+     */
+    public SchemaResponse get(String tableName) {
+        String key = tableName.trim().toLowerCase(Locale.ROOT);
+        SchemaResponse schema = snapshot().tables().get(key);
+        if (schema == null) {
+            schema = refreshOnMiss().tables().get(key);
+        }
+        if (schema == null) {
+            throw new IllegalArgumentException("表 '" + tableName + "' 不存在，可用表："
+                    + String.join(", ", snapshot().tables().keySet()));
+        }
+        return schema;
+    }
+
+    /**
+     * 批量获取表结构，保持请求顺序，重复表名只返回一次
+     */
+    public List<SchemaResponse> getMany(List<String> tableNames) {
+        Map<String, SchemaResponse> result = new LinkedHashMap<>();
+        for (String tableName : tableNames) {
+            SchemaResponse schema = get(tableName);
+            result.putIfAbsent(schema.getTableName(), schema);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * 获取全部表结构
+     */
+    public List<SchemaResponse> getAll() {
+        return new ArrayList<>(snapshot().tables().values());
+    }
+}
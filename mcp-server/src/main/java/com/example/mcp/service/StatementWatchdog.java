@@ -0,0 +1,166 @@
+package com.example.mcp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql.run 的超时与取消：到达截止时间或客户端离开时对正在执行的语句调用 Statement.cancel()
+ * - 每次请求的超时取请求中的 timeoutMs（未提供时为 mcp.sql.timeout.default），不超过 mcp.sql.timeout.max
+ * - 截止时间从收到请求开始计算，包含准入排队的时间
+ * - H2 在扫描、排序和惰性游标读取中都会检查取消标记，取消后语句以 57014 结束，连接可继续使用
+ * JDBC 自带的 setQueryTimeout 只有秒级精度，且由驱动各自实现，这里统一用一个调度线程按毫秒取消
+ */
+@Slf4j
+@Service
+public class StatementWatchdog {
+
+    private final ScheduledExecutorService scheduler;
+    private final Counter timeouts;
+    private final Counter clientCancels;
+
+    @Value("${mcp.sql.timeout.default:30s}")
+    private Duration defaultTimeout;
+
+    @Value("${mcp.sql.timeout.max:60s}")
+    private Duration maxTimeout;
+
+    public StatementWatchdog(MeterRegistry meterRegistry) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-sql-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeouts = Counter.builder("mcp.sql.cancellations").tag("reason", "timeout")
+                .description("超过超时时间被取消的 SQL 执行次数").register(meterRegistry);
+        this.clientCancels = Counter.builder("mcp.sql.cancellations").tag("reason", "client")
+                .description("因客户端离开被取消的 SQL 执行次数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 本次请求实际使用的超时时间；未配置（不经过 Spring 注入）时为 Duration.ZERO，表示不限制
+     */
+    public Duration resolve(Long requestedMs) {
+        Duration timeout = requestedMs != null && requestedMs > 0 ? Duration.ofMillis(requestedMs) : defaultTimeout;
+        if (timeout == null) {
+            return Duration.ZERO;
+        }
+        return maxTimeout != null && timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+    }
+
+    /**
+     * 开始计时；返回的 Execution 需在执行结束后关闭
+     */
+    public Execution start(Long requestedMs) {
+        Duration timeout = resolve(requestedMs);
+        Execution execution = new Execution(timeout.toMillis());
+        if (!timeout.isZero()) {
+            execution.timer = scheduler.schedule(() -> execution.cancel(QueryCancelledException.TIMEOUT),
+                    timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return execution;
+    }
+
+    /**
+     * 一次 SQL 执行的取消句柄：执行线程 bind 语句，调度线程或请求回调线程 cancel
+     */
+    public final class Execution implements AutoCloseable {
+
+        private final long timeoutMs;
+        private ScheduledFuture<?> timer;
+        private Statement statement;
+        private String cancelReason;
+        private boolean closed;
+
+        private Execution(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public long timeoutMs() {
+            return timeoutMs;
+        }
+
+        /**
+         * 登记即将执行的语句；已经被取消时直接失败，不再开始执行
+         */
+        public synchronized void bind(Statement statement) {
+            if (cancelReason != null) {
+                throw failure(null);
+            }
+            this.statement = statement;
+        }
+
+        /**
+         * 客户端已断开或写出失败
+         */
+        public void cancelByClient() {
+            cancel(QueryCancelledException.CANCELLED);
+        }
+
+        /**
+         * 异步请求超过容器超时（spring.mvc.async.request-timeout）被终止，按超时计
+         */
+        public void cancelByTimeout() {
+            cancel(QueryCancelledException.TIMEOUT);
+        }
+
+        private synchronized void cancel(String reason) {
+            if (closed || cancelReason != null) {
+                return;
+            }
+            cancelReason = reason;
+            (QueryCancelledException.TIMEOUT.equals(reason) ? timeouts : clientCancels).increment();
+            log.warn("取消 SQL 执行: {}（超时 {} ms）", reason, timeoutMs);
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    log.warn("Statement.cancel 失败: {}", e.getMessage());
+                }
+            }
+        }
+
+        public synchronized String cancelReason() {
+            return cancelReason;
+        }
+
+        /**
+         * 执行失败时：由本次取消导致的转换为 QueryCancelledException，其余原样返回
+         */
+        public RuntimeException translate(RuntimeException e) {
+            return e instanceof QueryCancelledException || cancelReason() == null ? e : failure(e);
+        }
+
+        private QueryCancelledException failure(Throwable cause) {
+            String message = QueryCancelledException.TIMEOUT.equals(cancelReason)
+                    ? "SQL 执行超过 " + timeoutMs + " ms，已取消；请缩小查询范围或增大 timeoutMs（上限见 mcp.sql.timeout.max）"
+                    : "客户端已断开，SQL 执行已取消";
+            return new QueryCancelledException(cancelReason, message, timeoutMs, cause);
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            statement = null;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.mcp.service;
+
+import org.h2.api.Trigger;
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.tx.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * H2 语句级触发器：表数据发生 INSERT / UPDATE / DELETE 时通知监听者
+ * H2 通过类名自行实例化触发器，因此监听者注册在静态列表中
+ * 触发器在语句执行时触发，早于写事务提交；通知中带上写入所在的 H2 事务，监听者据此判断写入何时生效
+ */
+public class TableChangeTrigger implements Trigger {
+
+    private static final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+
+    private String tableName;
+
+    /**
+     * 一次表数据变更
+     *
+     * @param table       小写表名
+     * @param transaction 写入所在的事务，提交或回滚后状态变为 STATUS_CLOSED；不是嵌入式 H2 会话时为 null
+     */
+    public record Change(String table, Transaction transaction) {
+
+        /**
+         * 写入所在的事务是否还未结束
+         */
+        public boolean pending() {
+            return transaction != null && transaction.getStatus() != Transaction.STATUS_CLOSED;
+        }
+    }
+
+    /**
+     * 注册表变更监听
+     */
+    public static void addListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<Change> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) {
+        this.tableName = tableName.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        Change change = new Change(tableName, transaction(conn));
+        for (Consumer<Change> listener : listeners) {
+            listener.accept(change);
+        }
+    }
+
+    private static Transaction transaction(Connection conn) throws SQLException {
+        if (conn.isWrapperFor(JdbcConnection.class)
+                && conn.unwrap(JdbcConnection.class).getSession() instanceof SessionLocal session) {
+            return session.getTransaction();
+        }
+        return null;
+    }
+}
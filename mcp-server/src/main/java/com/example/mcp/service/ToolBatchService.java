@@ -0,0 +1,116 @@
+package com.example.mcp.service;
+
+import com.example.mcp.dto.ToolBatchRequest;
+import com.example.mcp.dto.ToolBatchResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量工具调用：一个请求携带多个工具调用，在有界线程池上并发执行，按请求顺序返回结果
+ * 支持的工具都是只读的，调用之间没有依赖，因此全部并发执行；单个调用失败不影响其他调用
+ */
+@Slf4j
+@Service
+public class ToolBatchService {
+
+    private final DatabaseService databaseService;
+    private final SchemaCatalog schemaCatalog;
+    private final ExecutorService executor;
+
+    @Value("${mcp.batch.max-calls:32}")
+    private int maxCalls;
+
+    public ToolBatchService(DatabaseService databaseService, SchemaCatalog schemaCatalog,
+                            @Value("${mcp.batch.max-concurrency:4}") int maxConcurrency) {
+        this.databaseService = databaseService;
+        this.schemaCatalog = schemaCatalog;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, r -> {
+            Thread thread = new Thread(r, "mcp-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public ToolBatchResponse execute(ToolBatchRequest request) {
+        List<ToolBatchRequest.Call> calls = request.getCalls() != null ? request.getCalls() : List.of();
+        if (calls.size() > maxCalls) {
+            throw new IllegalArgumentException("单次批量调用最多 " + maxCalls + " 个工具，实际 " + calls.size() + " 个");
+        }
+
+        List<CompletableFuture<ToolBatchResponse.Result>> futures = new ArrayList<>(calls.size());
+        for (ToolBatchRequest.Call call : calls) {
+            futures.add(CompletableFuture.supplyAsync(() -> invoke(call), executor));
+        }
+
+        List<ToolBatchResponse.Result> results = new ArrayList<>(calls.size());
+        for (CompletableFuture<ToolBatchResponse.Result> future : futures) {
+            results.add(future.join());
+        }
+        return new ToolBatchResponse(results);
+    }
+
+    private ToolBatchResponse.Result invoke(ToolBatchRequest.Call call) {
+        long start = System.currentTimeMillis();
+        ToolBatchResponse.Result result = new ToolBatchResponse.Result();
+        result.setId(call.getId());
+        result.setTool(call.getTool());
+        try {
+            result.setResult(dispatch(call.getTool(), call.getArguments() != null ? call.getArguments() : Map.of()));
+            result.setSuccess(true);
+        } catch (Exception e) {
+            log.warn("批量调用 {} 失败: {}", call.getTool(), e.getMessage());
+            result.setSuccess(false);
+            result.setError(e.getMessage());
+            if (e instanceof QueryRejectedException rejected) {
+                result.setErrorType(rejected.getErrorType());
+            } else if (e instanceof QueryCancelledException cancelled) {
+                result.setErrorType(cancelled.getErrorType());
+            }
+        }
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object dispatch(String tool, Map<String, Object> arguments) {
+        if (tool == null) {
+            throw new IllegalArgumentException("缺少 tool");
+        }
+        return switch (tool) {
+            case "schema.get" -> databaseService.getTableSchema(requireString(arguments, "table"));
+            case "schema.getMany" -> schemaCatalog.getMany((List<String>) arguments.getOrDefault("tables", List.of()));
+            case "sql.run" -> databaseService.executeSql(requireString(arguments, "sql"),
+                    (List<Object>) arguments.get("params"),
+                    arguments.get("timeoutMs") instanceof Number timeoutMs ? timeoutMs.longValue() : null);
+            case "sql.validate" -> databaseService.validateSqlResult(requireString(arguments, "sql"));
+            case "sql.check" -> databaseService.checkSql(requireString(arguments, "sql"),
+                    (List<Object>) arguments.get("params"), false);
+            case "sql.explain" -> databaseService.checkSql(requireString(arguments, "sql"),
+                    (List<Object>) arguments.get("params"), true);
+            default -> throw new IllegalArgumentException("不支持的工具: " + tool);
+        };
+    }
+
+    private static String requireString(Map<String, Object> arguments, String name) {
+        if (!(arguments.get(name) instanceof String value)) {
+            throw new IllegalArgumentException("缺少参数: " + name);
+        }
+        return value;
+    }
+}
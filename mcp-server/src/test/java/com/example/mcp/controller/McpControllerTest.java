@@ -0,0 +1,511 @@
+package com.example.mcp.controller;
+
+import com.example.mcp.dto.SqlResponse;
+import com.example.mcp.service.QueryResultCache;
+import com.example.mcp.service.SchemaCatalog;
+import com.example.mcp.service.StatementWatchdog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * McpController 接口测试（基于 data.sql 初始化的示例数据）
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class McpControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StatementWatchdog statementWatchdog;
+
+    @Autowired
+    private SchemaCatalog schemaCatalog;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Value("${spring.mvc.async.request-timeout}")
+    private Duration asyncRequestTimeout;
+
+    @Test
+    void sqlRunReturnsJsonByDefault() throws Exception {
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.ALL)
+                        .content("{\"sql\":\"SELECT ID, NAME FROM customers ORDER BY ID LIMIT 3\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.columns[0]").value("ID"))
+                .andExpect(jsonPath("$.rowCount").value(3));
+    }
+
+    @Test
+    void sqlRunStreamsNdjson() throws Exception {
+        MvcResult started = mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.APPLICATION_NDJSON_VALUE)
+                        .content("{\"sql\":\"SELECT ID, NAME FROM customers ORDER BY ID LIMIT 3\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.trim().split("\n");
+        assertEquals(5, lines.length, "表头 + 3 行数据 + 结尾行");
+        assertEquals("{\"columns\":[\"ID\",\"NAME\"]}", lines[0]);
+        assertTrue(lines[1].startsWith("[1,"));
+        assertEquals("{\"rowCount\":3}", lines[4]);
+    }
+
+    @Test
+    void sqlRunReturnsColumnarEncoding() throws Exception {
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.COLUMNAR_JSON_VALUE)
+                        .content("{\"sql\":\"SELECT o.ID, c.CITY, o.TOTAL_AMOUNT, o.ORDER_DATE FROM orders o "
+                                + "JOIN customers c ON c.ID = o.CUSTOMER_ID ORDER BY o.ID LIMIT 50\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowCount").value(50))
+                .andExpect(jsonPath("$.columns[0].type").value("int"))
+                .andExpect(jsonPath("$.columns[0].values.length()").value(50))
+                .andExpect(jsonPath("$.columns[1].type").value("string"))
+                .andExpect(jsonPath("$.columns[1].dictionary").isArray())
+                .andExpect(jsonPath("$.columns[2].type").value("decimal"))
+                .andExpect(jsonPath("$.columns[3].type").value("date"));
+    }
+
+    @Test
+    void sqlRunEncodesDecimalsLosslessly() throws Exception {
+        String sql = "SELECT CAST(1234.50 AS DECIMAL(18,2)) AS AMOUNT, CAST(NULL AS DECIMAL(18,2)) AS MISSING, "
+                + "CAST('123456789012345678901.5' AS DECIMAL(30,1)) AS HUGE";
+        String body = mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.COLUMNAR_JSON_VALUE)
+                        .content("{\"sql\":\"" + sql + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[0].type").value("decimal"))
+                .andExpect(jsonPath("$.columns[0].values[0]").value(123450))
+                .andExpect(jsonPath("$.columns[0].scale").value(2))
+                .andExpect(jsonPath("$.columns[1].nulls[0]").value(0))
+                // 超出 long 范围的取值改为十进制字符串字典
+                .andExpect(jsonPath("$.columns[2].type").value("decimal"))
+                .andExpect(jsonPath("$.columns[2].dictionary[0]").value("123456789012345678901.5"))
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode amount = new ObjectMapper().readTree(body).get("columns").get(0);
+        assertEquals(new BigDecimal("1234.50"),
+                BigDecimal.valueOf(amount.get("values").get(0).asLong(), amount.get("scale").asInt()));
+
+        // 与行式结果的 BigDecimal 一致
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"" + sql + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("[1234.50,null,123456789012345678901.5]")));
+    }
+
+    @Test
+    void sqlRunReturnsColumnarCbor() throws Exception {
+        byte[] body = mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.COLUMNAR_CBOR_VALUE)
+                        .content("{\"sql\":\"SELECT STATUS, COUNT(*) AS CNT FROM orders GROUP BY STATUS\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode decoded = new CBORMapper().readTree(body);
+        assertEquals("STATUS", decoded.get("columns").get(0).get("name").asText());
+        assertEquals(decoded.get("rowCount").asInt(), decoded.get("columns").get(1).get("values").size());
+    }
+
+    @Test
+    void schemaGetManyHonoursEtag() throws Exception {
+        MvcResult first = mockMvc.perform(post("/mcp/tools/schema.getMany")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tables\":[\"orders\",\"CUSTOMERS\",\"orders\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.tables.length()").value(2))
+                .andExpect(jsonPath("$.tables[0].tableName").value("orders"))
+                .andExpect(jsonPath("$.tables[1].tableName").value("customers"))
+                .andReturn();
+
+        String etag = first.getResponse().getHeader("ETag");
+        mockMvc.perform(post("/mcp/tools/schema.getMany")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-None-Match", etag)
+                        .content("{\"tables\":[\"orders\"]}"))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/mcp/tools/schema.getAll"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$.tables.length()").value(3));
+    }
+
+    @Test
+    void sqlRunStreamRejectsNonSelect() {
+        // 校验发生在响应提交之前，异常会交给常规的错误处理（MockMvc 中直接抛出）
+        ServletException e = assertThrows(ServletException.class, () -> mockMvc.perform(post("/mcp/tools/sql.run")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(McpController.APPLICATION_NDJSON_VALUE)
+                .content("{\"sql\":\"DELETE FROM customers\"}")));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+
+    @Test
+    void sqlRunCachesResultUntilTableChanges() throws Exception {
+        String first = "{\"sql\":\"SELECT NAME FROM customers WHERE ID = 1\"}";
+        // 仅空白和关键字大小写不同，规范化后命中同一条目
+        String second = "{\"sql\":\"select  NAME\\n from customers where ID = 1;\"}";
+
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(first))
+                .andExpect(status().isOk());
+        double hitsBefore = cacheHits();
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(second))
+                .andExpect(status().isOk());
+        assertEquals(hitsBefore + 1, cacheHits());
+
+        String original = jdbcTemplate.queryForObject("SELECT NAME FROM customers WHERE ID = 1", String.class);
+        try {
+            // 数据变更触发 H2 触发器，缓存失效后返回新值
+            jdbcTemplate.update("UPDATE customers SET NAME = 'cache-test' WHERE ID = 1");
+            mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(second))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.rows[0][0]").value("cache-test"));
+        } finally {
+            jdbcTemplate.update("UPDATE customers SET NAME = ? WHERE ID = 1", original);
+        }
+    }
+
+    @Test
+    void resultCacheDropsWritesRacingWithInvalidation() {
+        String sql = "SELECT NAME FROM customers WHERE ID = 3";
+        long generation = queryResultCache.generation(sql);
+        SqlResponse stale = new SqlResponse(List.of("NAME"), List.<List<Object>>of(List.of("stale")), 1, false);
+
+        // 查询执行期间表被写入（触发器已失效相关条目），执行结束后再写入的结果不能进入缓存
+        jdbcTemplate.update("UPDATE customers SET NAME = NAME WHERE ID = 3");
+        queryResultCache.put(sql, List.of(), stale, generation);
+        assertNull(queryResultCache.get(sql, List.of()));
+
+        queryResultCache.put(sql, List.of(), stale, queryResultCache.generation(sql));
+        assertSame(stale, queryResultCache.get(sql, List.of()));
+        queryResultCache.invalidateTable("customers");
+    }
+
+    @Test
+    void resultCacheInvalidatesAgainWhenWriterCommits() throws Exception {
+        String query = "{\"sql\":\"SELECT NAME FROM customers WHERE ID = 4\"}";
+        String original = jdbcTemplate.queryForObject("SELECT NAME FROM customers WHERE ID = 4", String.class);
+        try (Connection writer = jdbcTemplate.getDataSource().getConnection()) {
+            writer.setAutoCommit(false);
+            try (Statement statement = writer.createStatement()) {
+                statement.executeUpdate("UPDATE customers SET NAME = 'uncommitted' WHERE ID = 4");
+            }
+
+            // 触发器已在语句执行时触发，提交前读到的旧数据不能进入缓存
+            mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(query))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.rows[0][0]").value(original));
+
+            writer.commit();
+            mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(query))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.rows[0][0]").value("uncommitted"));
+        } finally {
+            jdbcTemplate.update("UPDATE customers SET NAME = ? WHERE ID = 4", original);
+        }
+    }
+
+    @Test
+    void unknownTableLookupsKeepSchemaAndResultCache() throws Exception {
+        String query = "{\"sql\":\"SELECT NAME FROM customers WHERE ID = 2\"}";
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(query))
+                .andExpect(status().isOk());
+        SchemaCatalog.Snapshot before = schemaCatalog.snapshot();
+        assertTrue(before.etag().matches("\"[0-9a-f]{64}\""), before.etag());
+
+        // 臆造的表名：按需刷新受间隔限制，表结构未变化时不发布事件，也就不会清空结果缓存
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class, () -> schemaCatalog.get("no_such_table"));
+        }
+        SchemaCatalog.Snapshot after = schemaCatalog.refresh();
+        assertSame(before, after);
+
+        double hitsBefore = cacheHits();
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(query))
+                .andExpect(status().isOk());
+        assertEquals(hitsBefore + 1, cacheHits());
+    }
+
+    @Test
+    void sqlRunBindsParams() throws Exception {
+        String page = "{\"sql\":\"SELECT ID FROM customers WHERE ID > ? ORDER BY ID LIMIT 2\",\"params\":[%s]}";
+
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(page.formatted("0")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows[0][0]").value(1))
+                .andExpect(jsonPath("$.rows[1][0]").value(2));
+        // 相同 SQL 文本、不同参数不能命中同一个缓存条目
+        mockMvc.perform(post("/mcp/tools/sql.run").contentType(MediaType.APPLICATION_JSON).content(page.formatted("2")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows[0][0]").value(3))
+                .andExpect(jsonPath("$.rows[1][0]").value(4));
+    }
+
+    @Test
+    void sqlRunRejectsNonScalarParams() {
+        assertThrows(ServletException.class, () -> mockMvc.perform(post("/mcp/tools/sql.run")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"sql\":\"SELECT ID FROM customers WHERE ID > ?\",\"params\":[[1]]}")));
+    }
+
+    @Test
+    void batchRunsCallsAndKeepsOrder() throws Exception {
+        String body = """
+                {"calls":[
+                  {"id":"a","tool":"schema.get","arguments":{"table":"orders"}},
+                  {"id":"b","tool":"sql.run","arguments":{"sql":"SELECT COUNT(*) FROM customers"}},
+                  {"id":"c","tool":"sql.run","arguments":{"sql":"DELETE FROM customers"}},
+                  {"id":"d","tool":"sql.validate","arguments":{"sql":"SELECT 1"}}
+                ]}
+                """;
+
+        mockMvc.perform(post("/mcp/tools/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(4))
+                .andExpect(jsonPath("$.results[0].id").value("a"))
+                .andExpect(jsonPath("$.results[0].result.tableName").value("orders"))
+                .andExpect(jsonPath("$.results[1].success").value(true))
+                .andExpect(jsonPath("$.results[1].result.rowCount").value(1))
+                // 单个调用失败不影响其他调用
+                .andExpect(jsonPath("$.results[2].success").value(false))
+                .andExpect(jsonPath("$.results[2].error").exists())
+                .andExpect(jsonPath("$.results[3].result.valid").value(true));
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("mcp.sql.cache.requests").tag("result", "hit").functionCounter().count();
+    }
+
+    @Test
+    void sqlCheckReturnsColumnsWithoutExecuting() throws Exception {
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT CITY, COUNT(*) AS CNT FROM customers GROUP BY CITY\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(true))
+                .andExpect(jsonPath("$.columns[0].name").value("CITY"))
+                .andExpect(jsonPath("$.columns[1].name").value("CNT"))
+                .andExpect(jsonPath("$.columns[1].type").value("BIGINT"))
+                .andExpect(jsonPath("$.plan").doesNotExist());
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT NAME FROM products\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.errorType").value("TABLE_NOT_FOUND"));
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT NO_SUCH_COLUMN FROM customers\"}"))
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.errorType").value("FIELD_NOT_FOUND"));
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"DELETE FROM customers\"}"))
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.errorType").value("NOT_READ_ONLY"));
+    }
+
+    @Test
+    void sqlExplainReturnsPlan() throws Exception {
+        mockMvc.perform(post("/mcp/tools/sql.explain")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT ID FROM customers WHERE ID > ?\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(true))
+                .andExpect(jsonPath("$.parameterCount").value(1))
+                .andExpect(jsonPath("$.plan").value(containsString("CUSTOMERS")));
+    }
+
+    @Test
+    void sqlRunDowngradesHeavyQueries() throws Exception {
+        // orders × order_items 的笛卡尔积约 38 万行：预估代价介于交互阈值和上限之间，按重查询截断返回
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT o.ID, i.ID FROM orders o, order_items i\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowCount").value(10000))
+                .andExpect(jsonPath("$.truncated").value(true));
+
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT ID FROM customers WHERE ID = 1\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.truncated").doesNotExist());
+
+        assertTrue(meterRegistry.get("mcp.sql.admission").tag("decision", "heavy").counter().count() >= 1);
+    }
+
+    @Test
+    void sqlRunReusesCostEstimatedBySqlCheck() throws Exception {
+        double hitsBefore = meterRegistry.get("mcp.sql.admission.cost-cache").tag("result", "hit").counter().count();
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT NAME FROM customers WHERE ID = 2 AND CITY IS NOT NULL\"}"))
+                .andExpect(jsonPath("$.valid").value(true))
+                .andExpect(jsonPath("$.estimatedCost").isNumber());
+        double missesAfterCheck = meterRegistry.get("mcp.sql.admission.cost-cache").tag("result", "miss").counter().count();
+
+        // 空白和大小写不同的同一条 SQL：准入直接取缓存的代价，不再规划
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"select name from customers   where id = 2 and city is not null\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowCount").value(1));
+
+        assertEquals(hitsBefore + 1, meterRegistry.get("mcp.sql.admission.cost-cache").tag("result", "hit").counter().count());
+        assertEquals(missesAfterCheck, meterRegistry.get("mcp.sql.admission.cost-cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void sqlRunRejectsExpensiveQueries() throws Exception {
+        String crossJoin = "{\"sql\":\"SELECT c.ID, o.ID, i.ID FROM customers c, orders o, order_items i\"}";
+        double rejectedBefore = meterRegistry.get("mcp.sql.admission").tag("decision", "rejected").counter().count();
+
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(crossJoin))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.errorType").value("QUERY_TOO_EXPENSIVE"))
+                .andExpect(jsonPath("$.message").value(containsString("预估代价")))
+                .andExpect(jsonPath("$.maxCost").value(1e11));
+
+        // 流式请求在响应提交前被拒绝，同样返回 JSON 错误体
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.APPLICATION_NDJSON_VALUE)
+                        .content(crossJoin))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.errorType").value("QUERY_TOO_EXPENSIVE"));
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(crossJoin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid").value(false))
+                .andExpect(jsonPath("$.errorType").value("QUERY_TOO_EXPENSIVE"))
+                .andExpect(jsonPath("$.estimatedCost").isNumber());
+
+        mockMvc.perform(post("/mcp/tools/sql.check")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT ID FROM customers WHERE ID = 1\"}"))
+                .andExpect(jsonPath("$.valid").value(true))
+                .andExpect(jsonPath("$.estimatedCost").isNumber());
+
+        mockMvc.perform(post("/mcp/tools/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"calls\":[{\"id\":\"a\",\"tool\":\"sql.run\",\"arguments\":" + crossJoin + "}]}"))
+                .andExpect(jsonPath("$.results[0].success").value(false))
+                .andExpect(jsonPath("$.results[0].errorType").value("QUERY_TOO_EXPENSIVE"));
+
+        assertEquals(rejectedBefore + 3,
+                meterRegistry.get("mcp.sql.admission").tag("decision", "rejected").counter().count());
+    }
+
+    /**
+     * 约 900 万行的连接，执行需要数秒，预估代价低于准入上限
+     */
+    private static final String SLOW_SQL = "SELECT a.X, b.X FROM SYSTEM_RANGE(1, 3000) a, SYSTEM_RANGE(1, 3000) b "
+            + "WHERE MOD(a.X * b.X, 1000003) = 7";
+
+    @Test
+    void sqlRunCancelsStatementAfterTimeout() throws Exception {
+        double before = meterRegistry.get("mcp.sql.cancellations").tag("reason", "timeout").counter().count();
+        long start = System.currentTimeMillis();
+
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"" + SLOW_SQL + "\",\"timeoutMs\":200}"))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.errorType").value("QUERY_TIMEOUT"))
+                .andExpect(jsonPath("$.timeoutMs").value(200));
+
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(before + 1, meterRegistry.get("mcp.sql.cancellations").tag("reason", "timeout").counter().count());
+
+        // 连接归还连接池后可继续使用
+        mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sql\":\"SELECT COUNT(*) AS CNT FROM orders WHERE ID > 0\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowCount").value(1));
+    }
+
+    @Test
+    void sqlRunStreamReportsTimeoutInTrailer() throws Exception {
+        MvcResult started = mockMvc.perform(post("/mcp/tools/sql.run")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(McpController.APPLICATION_NDJSON_VALUE)
+                        .content("{\"sql\":\"" + SLOW_SQL + "\",\"timeoutMs\":200}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertTrue(lines[lines.length - 1].contains("\"errorType\":\"QUERY_TIMEOUT\""), body);
+    }
+
+    @Test
+    void sqlRunTimeoutIsCappedByServerMaximum() {
+        assertEquals(Duration.ofSeconds(30), statementWatchdog.resolve(null));
+        assertEquals(Duration.ofMillis(500), statementWatchdog.resolve(500L));
+        assertEquals(Duration.ofSeconds(60), statementWatchdog.resolve(3_600_000L));
+
+        // 流式请求的容器超时要长于任何语句超时，否则长查询会先被容器终止
+        assertTrue(asyncRequestTimeout.compareTo(statementWatchdog.resolve(Long.MAX_VALUE)) > 0);
+    }
+}
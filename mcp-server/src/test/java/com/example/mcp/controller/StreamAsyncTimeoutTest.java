@@ -0,0 +1,59 @@
+package com.example.mcp.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式 sql.run 在真实容器中超过异步请求超时（此处缩短为 500ms）：按超时取消语句，而不是记为客户端取消
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.mvc.async.request-timeout=500ms")
+class StreamAsyncTimeoutTest {
+
+    /**
+     * 约 900 万行的连接，执行需要数秒，预估代价低于准入上限
+     */
+    private static final String SLOW_SQL = "SELECT a.X, b.X FROM SYSTEM_RANGE(1, 3000) a, SYSTEM_RANGE(1, 3000) b "
+            + "WHERE MOD(a.X * b.X, 1000003) = 7";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void containerTimeoutCancelsStreamAsTimeout() throws Exception {
+        double timeouts = cancellations("timeout");
+        double clientCancels = cancellations("client");
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/mcp/tools/sql.run"))
+                .header("Content-Type", "application/json")
+                .header("Accept", McpController.APPLICATION_NDJSON_VALUE)
+                .timeout(Duration.ofSeconds(20))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"sql\":\"" + SLOW_SQL + "\",\"timeoutMs\":20000}"))
+                .build();
+        long start = System.currentTimeMillis();
+        HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+        // 语句在容器超时后被取消，而不是执行到 20s 的语句超时
+        assertTrue(System.currentTimeMillis() - start < 10_000);
+        assertEquals(timeouts + 1, cancellations("timeout"));
+        assertEquals(clientCancels, cancellations("client"));
+    }
+
+    private double cancellations(String reason) {
+        return meterRegistry.get("mcp.sql.cancellations").tag("reason", reason).counter().count();
+    }
+}
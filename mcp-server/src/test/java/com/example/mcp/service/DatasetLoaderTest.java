@@ -0,0 +1,73 @@
+package com.example.mcp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DatasetGenerator / DatasetLoader 测试（独立的 H2 内存库，SF 0.01 = 100 客户、2500 订单）
+ */
+class DatasetLoaderTest {
+
+    @Test
+    void csvAndJdbcLoadersProduceIdenticalData() {
+        JdbcTemplate csv = database();
+        JdbcTemplate jdbc = database();
+        DatasetGenerator.Counts counts = loader(csv, "csv").load(new DatasetGenerator(0.01, 7));
+        assertEquals(counts, loader(jdbc, "jdbc").load(new DatasetGenerator(0.01, 7)));
+
+        assertEquals(100, counts.customers());
+        assertEquals(2500, counts.orders());
+        assertEquals(counts.orderItems(), csv.queryForObject("SELECT COUNT(*) FROM order_items", Long.class));
+        String digest = "SELECT SUM(o.total_amount), COUNT(DISTINCT o.customer_id), MAX(c.name), MIN(o.order_date) "
+                + "FROM orders o JOIN customers c ON c.id = o.customer_id";
+        assertEquals(csv.queryForMap(digest), jdbc.queryForMap(digest));
+    }
+
+    @Test
+    void generatedDataIsConsistentAndSkewed() {
+        JdbcTemplate jdbcTemplate = database();
+        loader(jdbcTemplate, "csv").load(new DatasetGenerator(0.01, 42));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders o WHERE o.total_amount <> "
+                + "(SELECT SUM(i.subtotal) FROM order_items i WHERE i.order_id = o.id)", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders o "
+                + "LEFT JOIN customers c ON c.id = o.customer_id WHERE c.id IS NULL", Long.class));
+
+        // 城市 / 商品按 Zipf 分布：排名第一的远多于排名最后的
+        List<Long> cities = jdbcTemplate.queryForList(
+                "SELECT COUNT(*) FROM customers GROUP BY city ORDER BY 1 DESC", Long.class);
+        assertTrue(cities.get(0) > 3 * cities.get(cities.size() - 1));
+        List<Map<String, Object>> products = jdbcTemplate.queryForList(
+                "SELECT product_name, COUNT(*) AS cnt FROM order_items GROUP BY product_name ORDER BY cnt DESC LIMIT 1");
+        assertEquals("无线蓝牙耳机", products.get(0).get("PRODUCT_NAME"));
+
+        // 自增 ID 已重置，后续插入不冲突
+        jdbcTemplate.update("INSERT INTO customers (name, email) VALUES ('测试', 'new@example.com')");
+        assertEquals(101, jdbcTemplate.queryForObject(
+                "SELECT id FROM customers WHERE email = 'new@example.com'", Long.class));
+    }
+
+    private static DatasetLoader loader(JdbcTemplate jdbcTemplate, String mode) {
+        DatasetLoader loader = new DatasetLoader(jdbcTemplate);
+        ReflectionTestUtils.setField(loader, "loader", mode);
+        ReflectionTestUtils.setField(loader, "batchSize", 500);
+        ReflectionTestUtils.setField(loader, "csvDir", "");
+        return loader;
+    }
+
+    private static JdbcTemplate database() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:dataset-" + UUID.randomUUID() + ";MODE=MySQL", "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("RUNSCRIPT FROM 'classpath:schema.sql'");
+        return jdbcTemplate;
+    }
+}
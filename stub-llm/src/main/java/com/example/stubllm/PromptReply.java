@@ -0,0 +1,61 @@
+package com.example.stubllm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按提示词模板匹配的脚本化回答
+ * - 模板直接引用调用方的提示词常量，提示词改动后桩模型自动跟随，不依赖其中的某句措辞
+ * - {name} 占位符按非贪婪方式提取为变量，其余文本逐字匹配；模板之后追加的内容（如重试反馈）不影响匹配
+ *
+ * @param kind      回答类型，作为 text2sql.stub-llm.simulated 的 kind 标签
+ * @param pattern   由模板生成的正则
+ * @param variables 模板中的占位符名
+ * @param reply     由占位符变量生成回答文本
+ */
+public record PromptReply(String kind, Pattern pattern, List<String> variables,
+                          Function<Map<String, String>, String> reply) {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z][A-Za-z0-9]*)}");
+
+    public static PromptReply forTemplate(String kind, String template, Function<Map<String, String>, String> reply) {
+        StringBuilder regex = new StringBuilder();
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        int last = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(template.substring(last, matcher.start())));
+            String name = matcher.group(1);
+            // 同一占位符再次出现时必须与第一次的取值相同
+            if (names.contains(name)) {
+                regex.append("\\k<").append(name).append('>');
+            } else {
+                names.add(name);
+                regex.append("(?<").append(name).append(">.*?)");
+            }
+            last = matcher.end();
+        }
+        regex.append(Pattern.quote(template.substring(last)));
+        return new PromptReply(kind, Pattern.compile(regex.toString(), Pattern.DOTALL), List.copyOf(names), reply);
+    }
+
+    /**
+     * 提示词以该模板开头时返回回答文本，否则返回 null
+     */
+    public String apply(String promptText) {
+        Matcher matcher = pattern.matcher(promptText);
+        if (!matcher.lookingAt()) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String name : variables) {
+            values.put(name, matcher.group(name).trim());
+        }
+        return reply.apply(values);
+    }
+}
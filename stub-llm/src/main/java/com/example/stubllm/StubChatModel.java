@@ -0,0 +1,269 @@
+package com.example.stubllm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.model.tool.DefaultToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 离线压测用的 ChatModel 桩（stub-llm profile 下替换真实模型，不访问外部模型）
+ * - 提示词与某个 {@link PromptReply} 模板匹配时返回其脚本化回答（demo-saia 的 Graph 节点）
+ * - 带工具的请求依次返回 schemaGet、sqlRun 工具调用，由 ToolCallingManager 执行真实的 MCP 工具后给出最终回答
+ * - 按 {@link StubLatency} 模拟模型延迟，并记录到 text2sql.stub-llm.simulated，压测时据此把模型耗时从端到端延迟中扣除
+ */
+@Slf4j
+public class StubChatModel implements ChatModel {
+
+    public static final String SIMULATED_METRIC = "text2sql.stub-llm.simulated";
+
+    private static final Pattern FROM_TABLE = Pattern.compile("(?i)\\bFROM\\s+(\\w+)");
+
+    /**
+     * 依次调用的工具（只调用请求中提供了的工具）
+     */
+    private static final List<String> TOOL_SEQUENCE = List.of("schemaGet", "sqlRun");
+
+    private final ToolCallingManager toolCallingManager;
+    private final ToolExecutionEligibilityPredicate toolExecutionEligibilityPredicate =
+            new DefaultToolExecutionEligibilityPredicate();
+    private final MeterRegistry meterRegistry;
+    private final StubLatency latency;
+    private final List<PromptReply> promptReplies;
+    private final Function<StubScripts.Scripted, String> agentAnswer;
+
+    /**
+     * @param promptReplies 按顺序匹配最后一条用户消息的模板回答
+     * @param agentAnswer   工具调用结束后的最终回答
+     */
+    public StubChatModel(ToolCallingManager toolCallingManager, MeterRegistry meterRegistry, StubLatency latency,
+                         List<PromptReply> promptReplies, Function<StubScripts.Scripted, String> agentAnswer) {
+        this.toolCallingManager = toolCallingManager;
+        this.meterRegistry = meterRegistry;
+        this.latency = latency;
+        this.promptReplies = List.copyOf(promptReplies);
+        this.agentAnswer = agentAnswer;
+        log.info("[StubChatModel] 使用离线桩模型: latency={}, promptReplies={}",
+                latency, this.promptReplies.stream().map(PromptReply::kind).toList());
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // 返回 ToolCallingChatOptions，ChatClient 才会把 toolNames 等工具配置带进 Prompt
+        return ToolCallingChatOptions.builder().model("stub").build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (prompt.getOptions() == null) {
+            // 与真实模型一致：未带选项的 Prompt 使用默认选项
+            prompt = new Prompt(prompt.getInstructions(), getDefaultOptions());
+        }
+        Reply reply = reply(prompt);
+        Duration simulated = latency.sample(reply.completionTokens());
+        sleep(simulated);
+        record(reply.kind(), simulated);
+
+        ChatResponse response = reply.toResponse();
+        if (toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response)) {
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(prompt, response);
+            if (result.returnDirect()) {
+                return ChatResponse.builder()
+                        .from(response)
+                        .generations(ToolExecutionResult.buildGenerations(result))
+                        .build();
+            }
+            return call(new Prompt(result.conversationHistory(), prompt.getOptions()));
+        }
+        return response;
+    }
+
+    /**
+     * 流式输出：把回答切成若干片，总耗时与 call 相同，均匀分摊到每一片（首片也要等一个间隔）
+     */
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        Reply reply = reply(prompt);
+        Duration simulated = latency.sample(reply.completionTokens());
+        List<String> chunks = chunks(reply.text(), 8);
+        Duration interval = simulated.dividedBy(chunks.size());
+        return Flux.range(0, chunks.size())
+                .delayElements(interval)
+                .map(i -> i == chunks.size() - 1
+                        ? new Reply(reply.kind(), chunks.get(i), List.of(), reply.promptTokens(), reply.completionTokens()).toResponse()
+                        : ChatResponse.builder().generations(List.of(new Generation(new AssistantMessage(chunks.get(i))))).build())
+                .doOnComplete(() -> record(reply.kind(), simulated));
+    }
+
+    // === 脚本化回答 ===
+
+    private record Reply(String kind, String text, List<AssistantMessage.ToolCall> toolCalls,
+                         int promptTokens, int completionTokens) {
+
+        ChatResponse toResponse() {
+            AssistantMessage message = new AssistantMessage(text, Map.of(), toolCalls);
+            return ChatResponse.builder()
+                    .generations(List.of(new Generation(message)))
+                    .metadata(ChatResponseMetadata.builder()
+                            .model("stub")
+                            .usage(new DefaultUsage(promptTokens, completionTokens))
+                            .build())
+                    .build();
+        }
+    }
+
+    private Reply reply(Prompt prompt) {
+        String question = lastUserText(prompt);
+        int promptTokens = estimateTokens(promptText(prompt));
+
+        for (PromptReply promptReply : promptReplies) {
+            String text = promptReply.apply(question);
+            if (text != null) {
+                return new Reply(promptReply.kind(), text, List.of(), promptTokens, estimateTokens(text));
+            }
+        }
+
+        String kind;
+        String text;
+        List<AssistantMessage.ToolCall> toolCalls = List.of();
+        if (!toolNames(prompt.getOptions()).isEmpty()) {
+            kind = "agent";
+            String nextTool = nextTool(prompt);
+            StubScripts.Scripted scripted = StubScripts.script(question);
+            if (nextTool != null) {
+                toolCalls = List.of(toolCall(nextTool, scripted.sql()));
+                text = "";
+            } else {
+                text = agentAnswer.apply(scripted);
+            }
+        } else {
+            kind = "chat";
+            text = "这是离线桩模型的回答。";
+        }
+        return new Reply(kind, text, toolCalls, promptTokens, estimateTokens(text));
+    }
+
+    // === 工具调用 ===
+
+    private static Set<String> toolNames(ChatOptions options) {
+        Set<String> names = new LinkedHashSet<>();
+        if (options instanceof ToolCallingChatOptions toolOptions) {
+            names.addAll(toolOptions.getToolNames());
+            for (ToolCallback callback : toolOptions.getToolCallbacks()) {
+                names.add(callback.getToolDefinition().name());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 按对话中已有的工具结果数决定下一步调用哪个工具，全部调用过后返回 null（给出最终回答）
+     */
+    private static String nextTool(Prompt prompt) {
+        Set<String> available = toolNames(prompt.getOptions());
+        List<String> sequence = TOOL_SEQUENCE.stream().filter(available::contains).toList();
+        long done = prompt.getInstructions().stream()
+                .filter(message -> message.getMessageType() == MessageType.TOOL)
+                .count();
+        return done < sequence.size() ? sequence.get((int) done) : null;
+    }
+
+    private static AssistantMessage.ToolCall toolCall(String tool, String sql) {
+        String arguments;
+        if ("sqlRun".equals(tool)) {
+            arguments = ModelOptionsUtils.toJsonString(Map.of("sql", sql));
+        } else {
+            Matcher matcher = FROM_TABLE.matcher(sql);
+            arguments = ModelOptionsUtils.toJsonString(Map.of("table", matcher.find() ? matcher.group(1) : "customers"));
+        }
+        return new AssistantMessage.ToolCall("call_" + UUID.randomUUID(), "function", tool, arguments);
+    }
+
+    // === 提示词解析 ===
+
+    private static String promptText(Prompt prompt) {
+        StringBuilder text = new StringBuilder();
+        for (Message message : prompt.getInstructions()) {
+            if (message.getText() != null) {
+                text.append(message.getText()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 最后一条用户消息：Graph 节点的完整提示词，或单 Agent 模式下的用户问题
+     */
+    private static String lastUserText(Prompt prompt) {
+        String text = "";
+        for (Message message : prompt.getInstructions()) {
+            if (message instanceof UserMessage && message.getText() != null) {
+                text = message.getText();
+            }
+        }
+        return text;
+    }
+
+    private static int estimateTokens(String text) {
+        // 中文约 1.5 字符/token，英文和代码约 4 字符/token，压测只需量级正确
+        return Math.max(1, text.length() / 2);
+    }
+
+    private static List<String> chunks(String text, int count) {
+        List<String> chunks = new ArrayList<>();
+        int size = Math.max(1, (text.length() + count - 1) / count);
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        if (chunks.isEmpty()) {
+            chunks.add("");
+        }
+        return chunks;
+    }
+
+    // === 延迟模拟 ===
+
+    private static void sleep(Duration latency) {
+        try {
+            Thread.sleep(latency.toMillis(), latency.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(String kind, Duration latency) {
+        Timer.builder(SIMULATED_METRIC)
+                .description("离线桩模型模拟的模型耗时")
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .record(latency);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.stubllm;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 桩模型的延迟模拟参数（text2sql.stub-llm.latency.*）
+ */
+public record StubLatency(Distribution distribution, Duration mean, Duration jitter, Duration perOutputToken) {
+
+    /**
+     * 延迟分布：fixed（固定为 mean）、uniform（mean ± jitter）、normal（标准差 jitter）、
+     * lognormal（中位数 mean，长尾程度由 jitter/mean 决定，最接近真实模型的延迟形状）
+     */
+    public enum Distribution { FIXED, UNIFORM, NORMAL, LOGNORMAL }
+
+    public static final StubLatency NONE = new StubLatency(Distribution.FIXED, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+    /**
+     * 按配置文本解析分布（大小写不敏感）
+     */
+    public static StubLatency of(String distribution, Duration mean, Duration jitter, Duration perOutputToken) {
+        return new StubLatency(Distribution.valueOf(distribution.trim().toUpperCase()), mean, jitter, perOutputToken);
+    }
+
+    /**
+     * 抽取一次模型调用的延迟：按分布取基础延迟，再按输出 token 数追加
+     */
+    public Duration sample(int completionTokens) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double meanMs = mean.toNanos() / 1e6;
+        double jitterMs = jitter.toNanos() / 1e6;
+        double ms = switch (distribution) {
+            case FIXED -> meanMs;
+            case UNIFORM -> meanMs + (random.nextDouble() * 2 - 1) * jitterMs;
+            case NORMAL -> meanMs + random.nextGaussian() * jitterMs;
+            case LOGNORMAL -> meanMs <= 0 ? 0 : meanMs * Math.exp(random.nextGaussian() * jitterMs / meanMs);
+        };
+        Duration latency = Duration.ofNanos((long) (Math.max(0, ms) * 1e6));
+        return latency.plus(perOutputToken.multipliedBy(completionTokens));
+    }
+}
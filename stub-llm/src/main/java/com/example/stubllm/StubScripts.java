@@ -0,0 +1,90 @@
+package com.example.stubllm;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 桩模型的脚本表：问题关键词决定 SQL、展示组件和说明文字
+ * - 两个应用共用同一张表，压测结果可以直接对比
+ */
+public final class StubScripts {
+
+    /**
+     * 问题关键词对应的 SQL 和展示组件
+     */
+    public record Scripted(String sql, String componentType, String explanation) {}
+
+    private static final List<Map.Entry<List<String>, Scripted>> SCRIPTS = List.of(
+            Map.entry(List.of("趋势", "每月", "月度", "按月"), new Scripted(
+                    "SELECT MONTH(ORDER_DATE) AS ORDER_MONTH, SUM(TOTAL_AMOUNT) AS TOTAL FROM orders GROUP BY MONTH(ORDER_DATE) ORDER BY ORDER_MONTH",
+                    "LineChart", "按月统计订单金额，以折线图展示变化趋势。")),
+            Map.entry(List.of("城市"), new Scripted(
+                    "SELECT CITY, COUNT(*) AS CUSTOMER_COUNT FROM customers GROUP BY CITY ORDER BY CUSTOMER_COUNT DESC",
+                    "BarChart", "统计各城市的客户数量，以柱状图对比展示。")),
+            Map.entry(List.of("状态", "占比", "比例"), new Scripted(
+                    "SELECT STATUS, COUNT(*) AS ORDER_COUNT FROM orders GROUP BY STATUS",
+                    "PieChart", "统计各状态的订单数量，以饼图展示占比。")),
+            Map.entry(List.of("产品", "商品", "销量"), new Scripted(
+                    "SELECT PRODUCT_NAME, SUM(QUANTITY) AS TOTAL_QTY FROM order_items GROUP BY PRODUCT_NAME ORDER BY TOTAL_QTY DESC LIMIT 10",
+                    "BarChart", "统计销量最高的 10 个商品，以柱状图展示排行。")),
+            Map.entry(List.of("总金额", "总额", "多少"), new Scripted(
+                    "SELECT SUM(TOTAL_AMOUNT) AS TOTAL FROM orders",
+                    "DataPoint", "计算全部订单的总金额。")),
+            Map.entry(List.of("订单"), new Scripted(
+                    "SELECT * FROM orders ORDER BY ID LIMIT 200",
+                    "Table", "查询订单记录，以表格形式展示，最多显示200条。")));
+
+    private static final Scripted DEFAULT_SCRIPT = new Scripted(
+            "SELECT * FROM customers ORDER BY ID LIMIT 200",
+            "Table", "查询所有客户信息，以表格形式展示，最多显示200条。");
+
+    private static final List<String> COMPLEX_KEYWORDS = List.of("每", "各", "统计", "趋势", "分布", "占比", "排行", "对比");
+
+    private StubScripts() {
+    }
+
+    public static Scripted script(String question) {
+        for (Map.Entry<List<String>, Scripted> entry : SCRIPTS) {
+            if (entry.getKey().stream().anyMatch(question::contains)) {
+                return entry.getValue();
+            }
+        }
+        return DEFAULT_SCRIPT;
+    }
+
+    /**
+     * 路由分类：问题含聚合/分组类关键词时为复杂查询
+     */
+    public static boolean isComplex(String question) {
+        return COMPLEX_KEYWORDS.stream().anyMatch(question::contains);
+    }
+
+    /**
+     * 说明文字 + ```javascript 脚本（与 RendererNode / 单 Agent 提示词要求的格式一致）
+     */
+    public static String javascriptAnswer(Scripted scripted, String sql) {
+        String sqlLiteral = sql.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ");
+        String body = switch (scripted.componentType()) {
+            case "Table" -> """
+                        const rows = result.rows.map((row, index) => ({ key: index + 1, ...row }));
+                        return { componentType: 'Table', propertyData: { rows: rows } };""";
+            case "DataPoint" -> """
+                        const value = result.rows.length > 0 ? result.rows[0][result.columns[0]] : 0;
+                        return { componentType: 'DataPoint', propertyData: { value: value, label: '%s' } };"""
+                    .formatted(scripted.explanation().replace("。", ""));
+            default -> """
+                        const chartData = result.rows.map(row => ({
+                            name: String(row[result.columns[0]]),
+                            value: row[result.columns[1]] || 0
+                        }));
+                        return { componentType: '%s', propertyData: chartData };"""
+                    .formatted(scripted.componentType());
+        };
+        return scripted.explanation() + "\n\n```javascript\n"
+                + "async function generateData(mcpClient) {\n"
+                + "    const sql = \"" + sqlLiteral + "\";\n"
+                + "    const result = await mcpClient.executeSql(sql);\n"
+                + body.indent(4)
+                + "}\n```";
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.stubllm;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.function.FunctionToolCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StubChatModel / PromptReply 单元测试（固定 0 延迟）
+ */
+public class StubChatModelTest {
+
+    private static final String TEMPLATE = """
+            你是测试助手。
+
+            【已生成的 SQL】
+            {sql}
+
+            【用户问题】
+            {question}
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final StubChatModel model = new StubChatModel(ToolCallingManager.builder().build(), registry,
+            StubLatency.NONE,
+            List.of(PromptReply.forTemplate("echo", TEMPLATE, vars -> vars.get("sql") + " | " + vars.get("question"))),
+            scripted -> scripted.explanation());
+
+    record SchemaGetRequest(String table) {}
+
+    record SqlRunRequest(String sql) {}
+
+    @Test
+    public void testTemplateVariablesAndAppendedFeedback() {
+        String prompt = TEMPLATE.replace("{sql}", "SELECT 1").replace("{question}", "各城市的客户数量")
+                + "\n【上次生成的 SQL 校验失败】\n语法错误\n";
+
+        assertEquals("SELECT 1 | 各城市的客户数量", model.call(new Prompt(prompt)).getResult().getOutput().getText());
+
+        // 措辞不同的提示词不匹配模板，按普通对话回答
+        assertEquals("这是离线桩模型的回答。",
+                model.call(new Prompt(prompt.replace("测试助手", "另一个助手"))).getResult().getOutput().getText());
+    }
+
+    @Test
+    public void testToolCallsFollowAvailableTools() {
+        List<String> calls = new ArrayList<>();
+        FunctionToolCallback<SchemaGetRequest, String> schemaGet = FunctionToolCallback
+                .builder("schemaGet", (SchemaGetRequest request) -> {
+                    calls.add("schemaGet:" + request.table());
+                    return "CREATE TABLE " + request.table() + " (...)";
+                })
+                .inputType(SchemaGetRequest.class)
+                .build();
+        FunctionToolCallback<SqlRunRequest, String> sqlRun = FunctionToolCallback
+                .builder("sqlRun", (SqlRunRequest request) -> {
+                    calls.add("sqlRun:" + request.sql());
+                    return "{\"rows\":[]}";
+                })
+                .inputType(SqlRunRequest.class)
+                .build();
+
+        ChatResponse response = model.call(new Prompt("统计每个城市的客户数量",
+                ToolCallingChatOptions.builder().toolCallbacks(schemaGet, sqlRun).build()));
+
+        StubScripts.Scripted scripted = StubScripts.script("统计每个城市的客户数量");
+        assertEquals(List.of("schemaGet:customers", "sqlRun:" + scripted.sql()), calls);
+        assertEquals(scripted.explanation(), response.getResult().getOutput().getText());
+
+        // 两次工具调用 + 一次最终回答
+        Timer timer = registry.get(StubChatModel.SIMULATED_METRIC).tag("kind", "agent").timer();
+        assertEquals(3, timer.count());
+    }
+
+    @Test
+    public void testStreamMatchesCall() {
+        String prompt = TEMPLATE.replace("{sql}", "SELECT * FROM orders").replace("{question}", "查询所有订单");
+
+        String streamed = model.stream(new Prompt(prompt))
+                .map(response -> response.getResult().getOutput().getText())
+                .collect(Collectors.joining())
+                .block();
+
+        assertEquals(model.call(new Prompt(prompt)).getResult().getOutput().getText(), streamed);
+        assertEquals(2, registry.get(StubChatModel.SIMULATED_METRIC).tag("kind", "echo").timer().count());
+    }
+}